@@ -17,25 +17,40 @@
  */
 package com.hotcoffee.staticmap;
 
+import com.hotcoffee.staticmap.canvas.CanvasPool;
 import com.hotcoffee.staticmap.geo.Location;
 import com.hotcoffee.staticmap.geo.LocationBounds;
 import com.hotcoffee.staticmap.geo.PointF;
+import com.hotcoffee.staticmap.geo.Tile;
 import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
 import com.hotcoffee.staticmap.layers.CenterOffset;
 import com.hotcoffee.staticmap.layers.Layer;
 import com.hotcoffee.staticmap.layers.Padding;
 import com.hotcoffee.staticmap.layers.TMSLayer;
+import com.hotcoffee.staticmap.layers.TileLayer;
 import com.hotcoffee.staticmap.layers.WMSLayer;
+import com.hotcoffee.staticmap.tiles.ScopedTileCache;
+import com.hotcoffee.staticmap.tiles.TileHandle;
+import com.hotcoffee.staticmap.tiles.TileKey;
+import com.hotcoffee.staticmap.tiles.TileRateLimiter;
 
 import javax.imageio.ImageIO;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 /**
@@ -43,7 +58,7 @@ import java.util.stream.IntStream;
  */
 public class StaticMap {
 
-	private final ArrayList<Layer> mLayers = new ArrayList<>();
+	private final ArrayList<Layer> mLayers;
 	private Location mLocation;
 	private int mZoom = 3;
 	private int mWidth;
@@ -51,11 +66,28 @@ public class StaticMap {
 	private BufferedImage mImage = null;
 	private MercatorProjection mProjection = new MercatorProjection();
 	private PointF mOffset;
+	private CanvasPool mCanvasPool = CanvasPool.NONE;
+	private int mRegionSize = 0;
+	private ScopedTileCache mTileScope;
 
 	/**
 	 * Build a static map with the specified width and height. In pixels.
 	 */
 	public StaticMap(int width, int height) {
+		mLayers = new ArrayList<>();
+		mWidth = width;
+		mHeight = height;
+	}
+
+	/**
+	 * Build a view of another map, sharing its layers, used to draw one region of it.
+	 */
+	private StaticMap(StaticMap source, int width, int height) {
+		mLayers = source.mLayers;
+		mLocation = source.mLocation;
+		mZoom = source.mZoom;
+		mProjection = source.mProjection;
+		mTileScope = source.mTileScope;
 		mWidth = width;
 		mHeight = height;
 	}
@@ -181,20 +213,148 @@ public class StaticMap {
 		return mOffset;
 	}
 
+	/**
+	 * Computes the offset the map will be drawn with, for the specified {@link CenterOffset},
+	 * without drawing it. See {@link #getOffset()}.
+	 */
+	public PointF computeOffset(CenterOffset centerOffset) {
+		return computeRatioPixels(getZoom(), centerOffset);
+	}
+
+	/**
+	 * Returns the image the map is currently being drawn into, or <code>null</code> when
+	 * drawing into a caller-supplied {@link Graphics2D} or outside of a draw. Layers may use
+	 * it to write pixels directly instead of going through the {@link Graphics2D}.
+	 */
+	public BufferedImage getCanvas() {
+		return mImage;
+	}
+
+	/**
+	 * Returns the {@link CanvasPool} providing the images drawn by {@link #drawInto(File)}
+	 * and {@link #drawInto(OutputStream)}.
+	 */
+	public CanvasPool getCanvasPool() {
+		return mCanvasPool;
+	}
+
+	/**
+	 * Sets the {@link CanvasPool} providing the images drawn by {@link #drawInto(File)}
+	 * and {@link #drawInto(OutputStream)}. Defaults to {@link CanvasPool#NONE}.
+	 */
+	public void setCanvasPool(CanvasPool canvasPool) {
+		mCanvasPool = canvasPool;
+	}
+
+	/**
+	 * Returns the size of the square regions the map is split in when drawn in parallel,
+	 * in pixels. <code>0</code> means the map is drawn as a whole.
+	 */
+	public int getRegionSize() {
+		return mRegionSize;
+	}
+
+	/**
+	 * Splits the map in square regions of the specified size, in pixels, drawn in parallel
+	 * by the common {@link java.util.concurrent.ForkJoinPool}. Each region draws every layer
+	 * with its own {@link Graphics2D}, through a view shifted like a {@link CenterOffset}.
+	 * Layers must then support concurrent draws. The tiles of each band of regions are fetched
+	 * once, before the band is drawn, and kept until the last region drawing them is done. Applies to maps drawn into an image, not
+	 * to {@link #drawInto(Graphics2D, CenterOffset)}. <code>0</code> disables it, which is
+	 * the default.
+	 */
+	public void setRegionSize(int regionSize) {
+		if (regionSize < 0)
+			throw new IllegalArgumentException("regionSize must be positive");
+		mRegionSize = regionSize;
+	}
+
+	/**
+	 * Returns the {@link ScopedTileCache} the tile layers of this map are drawn through, or
+	 * <code>null</code> if they use their own cache.
+	 */
+	public ScopedTileCache getTileScope() {
+		return mTileScope;
+	}
+
+	/**
+	 * Returns a copy of this map, sharing its layers, whose tile layers are drawn through the
+	 * specified {@link ScopedTileCache}. Renders drawing several maps, or a map several times,
+	 * draw these copies so each tile is fetched once. The layers aren't modified, so they can
+	 * still be drawn concurrently by other maps.
+	 */
+	public StaticMap withTileScope(ScopedTileCache tileScope) {
+		StaticMap map = new StaticMap(this, mWidth, mHeight);
+		map.mTileScope = tileScope;
+		map.mCanvasPool = mCanvasPool;
+		map.mRegionSize = mRegionSize;
+		return map;
+	}
+
 	/**
 	 * Runs the procedure of drawing. Stores the result into the specified {@link File}.
 	 */
 	public void drawInto(File file) throws IOException {
-		proceedDraw(new CenterOffset(0, 0));
-		ImageIO.write(mImage, "PNG", file);
+		BufferedImage canvas = mCanvasPool.acquire(mWidth, mHeight, BufferedImage.TYPE_INT_ARGB);
+		try {
+			drawInto(canvas);
+			ImageIO.write(canvas, "PNG", file);
+		} finally {
+			mCanvasPool.release(canvas);
+		}
 	}
 
 	/**
 	 * Runs the procedure of drawing. Stores the result into the specified {@link OutputStream}.
 	 */
 	public void drawInto(OutputStream os) throws IOException {
-		proceedDraw(new CenterOffset(0, 0));
-		ImageIO.write(mImage, "PNG", os);
+		BufferedImage canvas = mCanvasPool.acquire(mWidth, mHeight, BufferedImage.TYPE_INT_ARGB);
+		try {
+			drawInto(canvas);
+			ImageIO.write(canvas, "PNG", os);
+		} finally {
+			mCanvasPool.release(canvas);
+		}
+	}
+
+	/**
+	 * Runs the procedure of drawing into a caller-supplied {@link BufferedImage}. The image
+	 * must be at least as large as the map; the map is drawn in its top left corner.
+	 */
+	public void drawInto(BufferedImage canvas) {
+		drawInto(canvas, new CenterOffset(0, 0));
+	}
+
+	/**
+	 * Runs the procedure of drawing into a caller-supplied {@link BufferedImage}, with the center
+	 * of the map shifted by the specified {@link CenterOffset}, in pixels.
+	 */
+	public void drawInto(BufferedImage canvas, CenterOffset centerOffset) {
+		if (canvas.getWidth() < mWidth || canvas.getHeight() < mHeight)
+			throw new IllegalArgumentException("Canvas is smaller than the map: "
+					+ canvas.getWidth() + "x" + canvas.getHeight());
+
+		if (mRegionSize > 0 && (mWidth > mRegionSize || mHeight > mRegionSize)) {
+			proceedDrawRegions(canvas, centerOffset);
+			return;
+		}
+
+		mImage = canvas;
+		Graphics2D graphics = canvas.createGraphics();
+		try {
+			proceedDraw(graphics, centerOffset);
+		} finally {
+			graphics.dispose();
+			mImage = null;
+		}
+	}
+
+	/**
+	 * Runs the procedure of drawing into a caller-supplied {@link WritableRaster}. The raster
+	 * must hold packed ARGB integer pixels, as described by {@link ColorModel#getRGBdefault()}.
+	 */
+	public void drawInto(WritableRaster raster) {
+		drawInto(new BufferedImage(ColorModel.getRGBdefault(), raster, false, null));
 	}
 
 	/**
@@ -204,6 +364,7 @@ public class StaticMap {
 	 * @param graphics2D any suitable {@link Graphics2D} object (eg. {@link BufferedImage})
 	 */
 	public void drawInto(Graphics2D graphics2D, CenterOffset centerOffset) {
+		mImage = null;
 		proceedDraw(graphics2D, centerOffset);
 	}
 
@@ -225,6 +386,13 @@ public class StaticMap {
 		mLayers.add(index, layer);
 	}
 
+	/**
+	 * Returns the layers of the map, in drawing order. The returned list can't be modified.
+	 */
+	public List<Layer> getLayers() {
+		return Collections.unmodifiableList(mLayers);
+	}
+
 	/**
 	 * Removes the spceified {@link Layer} from the map. The removed layer will
 	 * not been drawn anymore.
@@ -309,7 +477,7 @@ public class StaticMap {
 	}
 
 	private void prepare(CenterOffset centerOffset) {
-		mOffset = computeRatioPixels(getZoom(), centerOffset);
+		mOffset = computeOffset(centerOffset);
 	}
 
 	private void proceedDraw(Graphics2D graphics, CenterOffset centerOffset) {
@@ -328,12 +496,88 @@ public class StaticMap {
 		}
 	}
 
-	private void proceedDraw(CenterOffset centerOffset) {
-		mImage = new BufferedImage(mWidth, mHeight,
-		                           BufferedImage.TYPE_INT_ARGB);
+	private void proceedDrawRegions(BufferedImage canvas, CenterOffset centerOffset) {
+		prepare(centerOffset);
+
+		// Regions are drawn band by band, and share the tiles they overlap through a cache scoped to the draw.
+		// A scope set on the map belongs to the render drawing it, which releases its tiles.
+		ScopedTileCache scope = (mTileScope != null) ? mTileScope : new ScopedTileCache();
+		List<List<Region>> bands = new ArrayList<>();
+		Map<TileKey, AtomicInteger> users = new HashMap<>();
+		for (int y = 0; y < mHeight; y += mRegionSize) {
+			List<Region> band = new ArrayList<>();
+			for (int x = 0; x < mWidth; x += mRegionSize) {
+				Region region = new Region(canvas, centerOffset, scope, new Rectangle(x, y,
+				                           Math.min(mRegionSize, mWidth - x), Math.min(mRegionSize, mHeight - y)));
+				region.mTiles.keySet().forEach(key -> users.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet());
+				band.add(region);
+			}
+			bands.add(band);
+		}
 
-		Graphics2D graphics = mImage.createGraphics();
-		proceedDraw(graphics, centerOffset);
+		StaticMap scoped = withTileScope(scope);
+		try {
+			for (List<Region> band : bands) {
+				// Fetch each tile of the band once, before its regions draw it.
+				Map<TileKey, TileLayer> tiles = new LinkedHashMap<>();
+				band.forEach(region -> region.mTiles.forEach(tiles::putIfAbsent));
+				tiles.entrySet().parallelStream().forEach(tile -> {
+					TileKey key = tile.getKey();
+					TileHandle handle = tile.getValue().acquireTile(scoped, key.x(), key.y(), key.z(),
+					                                                TileRateLimiter.Priority.INTERACTIVE);
+					if (handle != null)
+						handle.close();
+				});
+
+				band.parallelStream().forEach(Region::draw);
+				if (scope == mTileScope)
+					continue;
+				for (Region region : band) {
+					for (TileKey key : region.mTiles.keySet()) {
+						if (users.get(key).decrementAndGet() == 0)
+							scope.release(key);
+					}
+				}
+			}
+		} finally {
+			if (scope != mTileScope)
+				scope.close();
+		}
+	}
+
+	/**
+	 * Region of a map drawn in regions, through a view shifted so its offset is the offset of the
+	 * map plus the region origin.
+	 */
+	private class Region {
+		private final StaticMap mView;
+		private final CenterOffset mViewOffset;
+		private final Map<TileKey, TileLayer> mTiles = new LinkedHashMap<>();
+
+		Region(BufferedImage canvas, CenterOffset centerOffset, ScopedTileCache scope, Rectangle bounds) {
+			mView = new StaticMap(StaticMap.this, bounds.width, bounds.height);
+			mView.mTileScope = scope;
+			mViewOffset = new CenterOffset(centerOffset.x() + bounds.x + bounds.width / 2 - mWidth / 2,
+			                               centerOffset.y() + bounds.y + bounds.height / 2 - mHeight / 2);
+			mView.mImage = canvas.getSubimage(bounds.x, bounds.y, bounds.width, bounds.height);
+
+			PointF offset = mView.computeOffset(mViewOffset);
+			for (Layer layer : mLayers) {
+				if (layer instanceof TileLayer tileLayer) {
+					for (Tile tile : tileLayer.getTiles(mView, offset))
+						mTiles.putIfAbsent(new TileKey(tileLayer.getSourceKey(), tile.x(), tile.y(), tile.z()), tileLayer);
+				}
+			}
+		}
+
+		void draw() {
+			Graphics2D graphics = mView.mImage.createGraphics();
+			try {
+				mView.proceedDraw(graphics, mViewOffset);
+			} finally {
+				graphics.dispose();
+			}
+		}
 	}
 
 	private PointF computeRatioPixels(int zoom, CenterOffset centerOffset) {
@@ -0,0 +1,99 @@
+package com.hotcoffee.staticmap.canvas;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CanvasPool} keeping released canvases by width, height and type, up to a maximum
+ * number of bytes. Canvases released while the pool is full are left to the garbage collector,
+ * and sizes no longer pooled are forgotten, so maps of ever changing sizes don't grow the pool.
+ * Safe for use by concurrent renders.
+ */
+public class BoundedCanvasPool implements CanvasPool {
+
+    private final Map<CanvasKey, Queue<BufferedImage>> mCanvases = new ConcurrentHashMap<>();
+    private final AtomicLong mPooledBytes = new AtomicLong();
+    private final long mMaxBytes;
+
+    /**
+     * Creates a pool keeping at most <code>maxBytes</code> bytes of pixel data.
+     */
+    public BoundedCanvasPool(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("maxBytes must be positive");
+        mMaxBytes = maxBytes;
+    }
+
+    @Override
+    public BufferedImage acquire(int width, int height, int type) {
+        // Queues are only read and written while the map holds their key, so an emptied queue can be removed.
+        BufferedImage[] pooled = new BufferedImage[1];
+        mCanvases.computeIfPresent(new CanvasKey(width, height, type), (key, queue) -> {
+            pooled[0] = queue.poll();
+            return queue.isEmpty() ? null : queue;
+        });
+        BufferedImage canvas = pooled[0];
+        if (canvas == null)
+            return new BufferedImage(width, height, type);
+
+        mPooledBytes.addAndGet(-sizeOf(canvas));
+        return canvas;
+    }
+
+    @Override
+    public void release(BufferedImage canvas) {
+        long size = sizeOf(canvas);
+        if (mPooledBytes.addAndGet(size) > mMaxBytes) {
+            mPooledBytes.addAndGet(-size);
+            return;
+        }
+
+        mCanvases.compute(new CanvasKey(canvas.getWidth(), canvas.getHeight(), canvas.getType()), (key, queue) -> {
+            if (queue == null)
+                queue = new ArrayDeque<>();
+            queue.add(canvas);
+            return queue;
+        });
+    }
+
+    /**
+     * Returns the number of bytes of pixel data currently held by the pool.
+     */
+    public long getPooledBytes() {
+        return mPooledBytes.get();
+    }
+
+    /**
+     * Drops every pooled canvas.
+     */
+    public void clear() {
+        for (CanvasKey key : mCanvases.keySet()) {
+            mCanvases.computeIfPresent(key, (k, queue) -> {
+                for (BufferedImage canvas : queue)
+                    mPooledBytes.addAndGet(-sizeOf(canvas));
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Returns the number of distinct sizes and types of the pooled canvases.
+     */
+    int getKindCount() {
+        return mCanvases.size();
+    }
+
+    private static long sizeOf(BufferedImage canvas) {
+        DataBuffer buffer = canvas.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    private record CanvasKey(int width, int height, int type) {
+    }
+
+}
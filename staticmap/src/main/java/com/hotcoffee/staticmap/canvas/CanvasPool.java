@@ -0,0 +1,38 @@
+package com.hotcoffee.staticmap.canvas;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Provides the images a {@link com.hotcoffee.staticmap.StaticMap} draws into. Canvases are
+ * acquired at the start of a draw and released once the result has been encoded, so an
+ * implementation can hand the same image to several successive renders.
+ */
+public interface CanvasPool {
+
+    /**
+     * Pool that allocates a new canvas for each render and never keeps any of them.
+     */
+    CanvasPool NONE = new CanvasPool() {
+        @Override
+        public BufferedImage acquire(int width, int height, int type) {
+            return new BufferedImage(width, height, type);
+        }
+
+        @Override
+        public void release(BufferedImage canvas) {
+        }
+    };
+
+    /**
+     * Returns a canvas of the specified size and {@link BufferedImage} type. The content of
+     * the canvas is undefined.
+     */
+    BufferedImage acquire(int width, int height, int type);
+
+    /**
+     * Gives back a canvas previously returned by {@link #acquire(int, int, int)}. The caller
+     * must not use it anymore.
+     */
+    void release(BufferedImage canvas);
+
+}
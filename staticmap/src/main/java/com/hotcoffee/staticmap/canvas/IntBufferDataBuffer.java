@@ -0,0 +1,77 @@
+package com.hotcoffee.staticmap.canvas;
+
+import java.awt.image.DataBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * {@link DataBuffer} of integer elements stored in {@link IntBuffer}s instead of a Java array,
+ * so pixels can live off-heap or in a memory-mapped file. The elements are split in chunks of
+ * consecutive buffers, which allows more data than a single {@link java.nio.ByteBuffer} can hold.
+ */
+public class IntBufferDataBuffer extends DataBuffer {
+
+    private final IntBuffer[] mChunks;
+    private final int mChunkShift;
+    private final int mChunkMask;
+
+    /**
+     * Creates a data buffer of <code>size</code> elements over the specified chunks. Every
+     * chunk but the last must hold exactly <code>1 &lt;&lt; chunkShift</code> elements.
+     */
+    public IntBufferDataBuffer(IntBuffer[] chunks, int chunkShift, int size) {
+        super(TYPE_INT, size);
+        mChunks = chunks;
+        mChunkShift = chunkShift;
+        mChunkMask = (1 << chunkShift) - 1;
+    }
+
+    /**
+     * Creates a data buffer of <code>size</code> elements over a single buffer.
+     */
+    public IntBufferDataBuffer(IntBuffer buffer, int size) {
+        this(new IntBuffer[]{buffer}, 31, size);
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+        return mChunks[i >>> mChunkShift].get(i & mChunkMask);
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+        mChunks[i >>> mChunkShift].put(i & mChunkMask, val);
+    }
+
+    /**
+     * Copies <code>length</code> elements of <code>src</code>, starting at <code>offset</code>,
+     * into this buffer starting at element <code>index</code>.
+     */
+    public void setElems(int index, int[] src, int offset, int length) {
+        while (length > 0) {
+            IntBuffer chunk = mChunks[index >>> mChunkShift];
+            int position = index & mChunkMask;
+            int count = Math.min(length, chunk.capacity() - position);
+            chunk.put(position, src, offset, count);
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Copies <code>length</code> elements of this buffer, starting at element <code>index</code>,
+     * into <code>dst</code> starting at <code>offset</code>.
+     */
+    public void getElems(int index, int[] dst, int offset, int length) {
+        while (length > 0) {
+            IntBuffer chunk = mChunks[index >>> mChunkShift];
+            int position = index & mChunkMask;
+            int count = Math.min(length, chunk.capacity() - position);
+            chunk.get(position, dst, offset, count);
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.hotcoffee.staticmap.canvas;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Canvas whose pixels are stored in a memory-mapped file rather than on the heap. This allows
+ * drawing maps larger than the heap: the operating system pages the pixels in and out as
+ * needed. Pass {@link #getImage()} to {@link com.hotcoffee.staticmap.StaticMap#drawInto(BufferedImage)}.
+ */
+public class MappedCanvas implements Closeable {
+
+    // 2^28 pixels, i.e. 1 GiB per mapping.
+    private static final int CHUNK_SHIFT = 28;
+
+    private final FileChannel mChannel;
+    private final MappedByteBuffer[] mMappings;
+    private final BufferedImage mImage;
+
+    private MappedCanvas(FileChannel channel, MappedByteBuffer[] mappings, BufferedImage image) {
+        mChannel = channel;
+        mMappings = mappings;
+        mImage = image;
+    }
+
+    /**
+     * Creates a canvas of the specified size backed by <code>file</code>, which is created
+     * or truncated. Pixels are packed ARGB integers, as {@link BufferedImage#TYPE_INT_ARGB}.
+     */
+    public static MappedCanvas create(Path file, int width, int height) throws IOException {
+        long pixels = (long) width * height;
+        if (width <= 0 || height <= 0 || pixels > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unsupported canvas size: " + width + "x" + height);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            int chunkCount = (int) ((pixels + (1L << CHUNK_SHIFT) - 1) >>> CHUNK_SHIFT);
+            MappedByteBuffer[] mappings = new MappedByteBuffer[chunkCount];
+            IntBuffer[] chunks = new IntBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long start = (long) i << CHUNK_SHIFT;
+                long count = Math.min(1L << CHUNK_SHIFT, pixels - start);
+                mappings[i] = channel.map(FileChannel.MapMode.READ_WRITE, start * 4, count * 4);
+                chunks[i] = mappings[i].order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+
+            DataBuffer buffer = new IntBufferDataBuffer(chunks, CHUNK_SHIFT, (int) pixels);
+            return new MappedCanvas(channel, mappings, createImage(buffer, width, height));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns an image of the specified size whose pixels are stored in <code>buffer</code>,
+     * laid out as {@link BufferedImage#TYPE_INT_ARGB}.
+     */
+    public static BufferedImage createImage(DataBuffer buffer, int width, int height) {
+        return createImage(buffer, width, height, true);
+    }
+
+    /**
+     * Returns an image of the specified size whose pixels are stored in <code>buffer</code>,
+     * laid out as {@link BufferedImage#TYPE_INT_ARGB}, or as {@link BufferedImage#TYPE_INT_RGB}
+     * if the image has no alpha.
+     */
+    public static BufferedImage createImage(DataBuffer buffer, int width, int height, boolean hasAlpha) {
+        DirectColorModel colorModel = hasAlpha
+                ? (DirectColorModel) ColorModel.getRGBdefault()
+                : new DirectColorModel(24, 0x00FF0000, 0x0000FF00, 0x000000FF);
+        SinglePixelPackedSampleModel sampleModel = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT,
+                width, height, colorModel.getMasks());
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, buffer, null);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    /**
+     * Returns the image backed by the mapped file.
+     */
+    public BufferedImage getImage() {
+        return mImage;
+    }
+
+    /**
+     * Writes the pixels to the file and releases it. The image must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer mapping : mMappings)
+            mapping.force();
+        mChannel.close();
+    }
+
+}
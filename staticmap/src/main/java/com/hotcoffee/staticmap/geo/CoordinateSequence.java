@@ -0,0 +1,35 @@
+package com.hotcoffee.staticmap.geo;
+
+/**
+ * Read-only sequence of coordinates, accessed as primitive values so that drawing it doesn't
+ * require a {@link Location} per point.
+ */
+public interface CoordinateSequence {
+
+    int getSize();
+
+    double getLatitude(int index);
+
+    double getLongitude(int index);
+
+    /**
+     * Copies <code>count</code> coordinates from <code>start</code> into the specified arrays, from index 0.
+     */
+    default void getCoordinates(int start, int count, double[] latitudes, double[] longitudes) {
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = getLatitude(start + i);
+            longitudes[i] = getLongitude(start + i);
+        }
+    }
+
+    /**
+     * Returns the bounds of the sequence, or <code>null</code> if it is empty.
+     */
+    LocationBounds getBounds();
+
+    /**
+     * Returns the spatial index of the sequence.
+     */
+    LocationPathIndex getIndex();
+
+}
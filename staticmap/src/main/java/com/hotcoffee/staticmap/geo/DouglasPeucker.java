@@ -0,0 +1,97 @@
+package com.hotcoffee.staticmap.geo;
+
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker simplification of polylines given as primitive coordinate arrays.
+ */
+public final class DouglasPeucker {
+
+    private DouglasPeucker() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Returns the indexes of the points to keep, in increasing order, so that no removed point
+     * lies further than <code>tolerance</code> from the simplified line. The first and last
+     * points are always kept.
+     *
+     * @param x     x coordinates of the points
+     * @param y     y coordinates of the points
+     * @param count number of points to simplify, from index 0
+     */
+    public static int[] simplify(double[] x, double[] y, int count, double tolerance) {
+        if (count <= 2) {
+            int[] all = new int[count];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        double sqTolerance = tolerance * tolerance;
+
+        // Ranges still to be simplified, as pairs of first and last index.
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+
+            double maxDistance = sqTolerance;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = sqSegmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    index = i;
+                }
+            }
+
+            if (index < 0)
+                continue;
+
+            keep[index] = true;
+            if (top + 4 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = first;
+            stack[top++] = index;
+            stack[top++] = index;
+            stack[top++] = last;
+        }
+
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k)
+                kept++;
+        }
+        int[] result = new int[kept];
+        for (int i = 0, j = 0; i < count; i++) {
+            if (keep[i])
+                result[j++] = i;
+        }
+        return result;
+    }
+
+    private static double sqSegmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        if (dx != 0 || dy != 0) {
+            double t = ((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy);
+            if (t > 1) {
+                ax = bx;
+                ay = by;
+            } else if (t > 0) {
+                ax += dx * t;
+                ay += dy * t;
+            }
+        }
+        dx = px - ax;
+        dy = py - ay;
+        return dx * dx + dy * dy;
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.hotcoffee.staticmap.geo;
+
+/**
+ * Encoded polyline algorithm format, as used by Google Maps and many routing services.
+ * Coordinates are decoded straight into a {@link LocationPath}, without a {@link Location} per point.
+ */
+public final class EncodedPolyline {
+    /**
+     * Precision of the original format, 1e-5 degree. Some services use 6 instead.
+     */
+    public static final int DEFAULT_PRECISION = 5;
+
+    // Coordinates read at once when encoding.
+    private static final int BATCH_SIZE = 256;
+
+    private EncodedPolyline() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static LocationPath decode(CharSequence encoded) {
+        return decode(encoded, DEFAULT_PRECISION);
+    }
+
+    /**
+     * Decodes a polyline whose coordinates have the specified number of decimals.
+     *
+     * @throws IllegalArgumentException if the polyline is malformed
+     */
+    public static LocationPath decode(CharSequence encoded, int precision) {
+        double factor = Math.pow(10, precision);
+        int length = encoded.length();
+        // A point takes at least two characters, usually a few more.
+        LocationPath path = new LocationPath(length / 4 + 1);
+
+        int index = 0;
+        long latitude = 0;
+        long longitude = 0;
+        while (index < length) {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = readChunk(encoded, index++);
+                value |= (long) (b & 0x1F) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            latitude += (value & 1) != 0 ? ~(value >> 1) : value >> 1;
+
+            value = 0;
+            shift = 0;
+            do {
+                b = readChunk(encoded, index++);
+                value |= (long) (b & 0x1F) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            longitude += (value & 1) != 0 ? ~(value >> 1) : value >> 1;
+
+            path.addLocation(latitude / factor, longitude / factor);
+        }
+        return path;
+    }
+
+    public static String encode(CoordinateSequence coordinates) {
+        return encode(coordinates, DEFAULT_PRECISION);
+    }
+
+    /**
+     * Encodes the specified coordinates, rounded to the specified number of decimals.
+     */
+    public static String encode(CoordinateSequence coordinates, int precision) {
+        double factor = Math.pow(10, precision);
+        int size = coordinates.getSize();
+        StringBuilder result = new StringBuilder(size * 6);
+
+        double[] latitudes = new double[Math.min(size, BATCH_SIZE)];
+        double[] longitudes = new double[latitudes.length];
+        long previousLatitude = 0;
+        long previousLongitude = 0;
+        for (int start = 0; start < size; start += BATCH_SIZE) {
+            int count = Math.min(BATCH_SIZE, size - start);
+            coordinates.getCoordinates(start, count, latitudes, longitudes);
+            for (int i = 0; i < count; i++) {
+                long latitude = Math.round(latitudes[i] * factor);
+                long longitude = Math.round(longitudes[i] * factor);
+                appendValue(result, latitude - previousLatitude);
+                appendValue(result, longitude - previousLongitude);
+                previousLatitude = latitude;
+                previousLongitude = longitude;
+            }
+        }
+        return result.toString();
+    }
+
+    private static void appendValue(StringBuilder result, long delta) {
+        long value = delta < 0 ? ~(delta << 1) : delta << 1;
+        while (value >= 0x20) {
+            result.append((char) ((0x20 | (value & 0x1F)) + 63));
+            value >>= 5;
+        }
+        result.append((char) (value + 63));
+    }
+
+    private static int readChunk(CharSequence encoded, int index) {
+        if (index >= encoded.length())
+            throw new IllegalArgumentException("Truncated polyline at index " + index);
+        int b = encoded.charAt(index) - 63;
+        if (b < 0 || b > 0x3F)
+            throw new IllegalArgumentException("Invalid polyline character at index " + index);
+        return b;
+    }
+
+}
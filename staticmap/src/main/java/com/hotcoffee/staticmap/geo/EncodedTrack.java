@@ -0,0 +1,196 @@
+package com.hotcoffee.staticmap.geo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Track written by {@link TrackWriter}, read in place from a {@link ByteBuffer}: coordinates are
+ * decoded from the buffer when they are accessed, one block at most per access, and never
+ * copied into {@link Location}s. Instances are immutable and can be shared between threads.
+ */
+public final class EncodedTrack implements CoordinateSequence {
+    static final int MAGIC = 0x5354524B;
+    static final int VERSION = 1;
+    static final int FLAG_ELEVATIONS = 1;
+    static final int FLAG_TIMES = 2;
+    static final int HEADER_SIZE = 42;
+    // Points per block of each column.
+    static final int BLOCK_SIZE = 128;
+    static final double DEGREE_SCALE = 1e7;
+    static final double ELEVATION_SCALE = 100;
+
+    private final ByteBuffer mBuffer;
+    private final int mSize;
+    private final int mBlockCount;
+    private final LocationBounds mBounds;
+    // Index of the offset table of each column in the buffer, or -1 if the column is missing.
+    private final int mCoordinateOffsets;
+    private final int mElevationOffsets;
+    private final int mTimeOffsets;
+
+    private volatile LocationPathIndex mIndex;
+
+    private EncodedTrack(ByteBuffer buffer) {
+        mBuffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("Not an encoded track");
+        int version = buffer.get(4);
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported encoded track version " + version);
+
+        int flags = buffer.get(5);
+        mSize = buffer.getInt(6);
+        mBlockCount = (mSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        mBounds = mSize == 0 ? null
+                : new LocationBounds(buffer.getDouble(10), buffer.getDouble(18), buffer.getDouble(26), buffer.getDouble(34));
+
+        int tableSize = mBlockCount * Integer.BYTES;
+        int next = HEADER_SIZE;
+        mCoordinateOffsets = next;
+        next += tableSize;
+        mElevationOffsets = (flags & FLAG_ELEVATIONS) != 0 ? next : -1;
+        next += mElevationOffsets >= 0 ? tableSize : 0;
+        mTimeOffsets = (flags & FLAG_TIMES) != 0 ? next : -1;
+        next += mTimeOffsets >= 0 ? tableSize : 0;
+        if (buffer.limit() < next)
+            throw new IllegalArgumentException("Truncated encoded track");
+    }
+
+    /**
+     * Reads the track starting at the position of the specified buffer. The buffer isn't copied:
+     * it must not be modified while the track is used.
+     */
+    public static EncodedTrack wrap(ByteBuffer buffer) {
+        return new EncodedTrack(buffer.slice());
+    }
+
+    /**
+     * Maps the specified file in memory and reads the track it holds.
+     */
+    public static EncodedTrack map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return mSize;
+    }
+
+    @Override
+    public double getLatitude(int index) {
+        return decodeCoordinate(index, 0);
+    }
+
+    @Override
+    public double getLongitude(int index) {
+        return decodeCoordinate(index, 1);
+    }
+
+    @Override
+    public void getCoordinates(int start, int count, double[] latitudes, double[] longitudes) {
+        checkRange(start, count);
+        int written = 0;
+        while (written < count) {
+            int index = start + written;
+            int block = index / BLOCK_SIZE;
+            int skip = index - block * BLOCK_SIZE;
+            int end = Math.min(count, written + BLOCK_SIZE - skip);
+
+            ByteBuffer in = blockData(mCoordinateOffsets, block);
+            long latitude = 0;
+            long longitude = 0;
+            for (int i = 0; i < skip; i++) {
+                latitude += Varints.readSigned(in);
+                longitude += Varints.readSigned(in);
+            }
+            for (; written < end; written++) {
+                latitude += Varints.readSigned(in);
+                longitude += Varints.readSigned(in);
+                latitudes[written] = latitude / DEGREE_SCALE;
+                longitudes[written] = longitude / DEGREE_SCALE;
+            }
+        }
+    }
+
+    @Override
+    public LocationBounds getBounds() {
+        return mBounds == null ? null : new LocationBounds(mBounds.xmin, mBounds.xmax, mBounds.ymin, mBounds.ymax);
+    }
+
+    @Override
+    public LocationPathIndex getIndex() {
+        LocationPathIndex index = mIndex;
+        if (index == null) {
+            index = new LocationPathIndex(this);
+            mIndex = index;
+        }
+        return index;
+    }
+
+    public boolean hasElevations() {
+        return mElevationOffsets >= 0;
+    }
+
+    /**
+     * Returns the elevation of the specified point, in metres.
+     */
+    public double getElevation(int index) {
+        if (!hasElevations())
+            throw new IllegalStateException("The track has no elevations");
+        return decodeColumn(mElevationOffsets, index) / ELEVATION_SCALE;
+    }
+
+    public boolean hasTimes() {
+        return mTimeOffsets >= 0;
+    }
+
+    /**
+     * Returns the time of the specified point, in milliseconds since the epoch.
+     */
+    public long getTime(int index) {
+        if (!hasTimes())
+            throw new IllegalStateException("The track has no times");
+        return decodeColumn(mTimeOffsets, index);
+    }
+
+    private double decodeCoordinate(int index, int component) {
+        checkRange(index, 1);
+        int block = index / BLOCK_SIZE;
+        ByteBuffer in = blockData(mCoordinateOffsets, block);
+        long latitude = 0;
+        long longitude = 0;
+        for (int i = block * BLOCK_SIZE; i <= index; i++) {
+            latitude += Varints.readSigned(in);
+            longitude += Varints.readSigned(in);
+        }
+        return (component == 0 ? latitude : longitude) / DEGREE_SCALE;
+    }
+
+    private long decodeColumn(int table, int index) {
+        checkRange(index, 1);
+        int block = index / BLOCK_SIZE;
+        ByteBuffer in = blockData(table, block);
+        long value = 0;
+        for (int i = block * BLOCK_SIZE; i <= index; i++)
+            value += Varints.readSigned(in);
+        return value;
+    }
+
+    /**
+     * Returns a view of the buffer positioned at the start of the specified block.
+     */
+    private ByteBuffer blockData(int table, int block) {
+        return mBuffer.duplicate().position(mBuffer.getInt(table + block * Integer.BYTES));
+    }
+
+    private void checkRange(int start, int count) {
+        if (start < 0 || count < 0 || start + count > mSize)
+            throw new IndexOutOfBoundsException("Range " + start + "+" + count + " out of bounds for size " + mSize);
+    }
+
+}
@@ -18,7 +18,6 @@
 package com.hotcoffee.staticmap.geo;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 public class LocationBounds {
 
@@ -45,31 +44,24 @@ public class LocationBounds {
     /**
      * Creates a {@link LocationBounds} given a list of location. The bounds are automatically calculated.
      *
-     * @param locations a {@link List} of {@link Location}
+     * @param locations a non empty {@link List} of {@link Location}
      */
     public LocationBounds(List<Location> locations) {
-        AtomicReference<Double> xmin = new AtomicReference<>();
-        AtomicReference<Double> xmax = new AtomicReference<>();
-        AtomicReference<Double> ymin = new AtomicReference<>();
-        AtomicReference<Double> ymax = new AtomicReference<>();
-        locations.forEach(location -> {
-            if (xmin.get() == null || location.mLongitude() < xmin.get()) {
-                xmin.set(location.mLongitude());
-            }
-            if (xmax.get() == null || location.mLongitude() > xmax.get()) {
-                xmax.set(location.mLongitude());
-            }
-            if (ymin.get() == null || location.mLatitude() < ymin.get()) {
-                ymin.set(location.mLatitude());
-            }
-            if (ymax.get() == null || location.mLatitude() > ymax.get()) {
-                ymax.set(location.mLatitude());
-            }
-        });
-        this.xmin = xmin.get();
-        this.xmax = xmax.get();
-        this.ymin = ymin.get();
-        this.ymax = ymax.get();
+        if (locations.isEmpty())
+            throw new IllegalArgumentException("Cannot compute the bounds of an empty list of locations");
+
+        double xmin = Double.MAX_VALUE, xmax = -Double.MAX_VALUE;
+        double ymin = Double.MAX_VALUE, ymax = -Double.MAX_VALUE;
+        for (Location location : locations) {
+            xmin = Math.min(xmin, location.mLongitude());
+            xmax = Math.max(xmax, location.mLongitude());
+            ymin = Math.min(ymin, location.mLatitude());
+            ymax = Math.max(ymax, location.mLatitude());
+        }
+        this.xmin = xmin;
+        this.xmax = xmax;
+        this.ymin = ymin;
+        this.ymax = ymax;
     }
 
     public static LocationBounds parseBBOX(String string) {
@@ -17,39 +17,173 @@
  */
 package com.hotcoffee.staticmap.geo;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 
 /**
  * @author Christophe
  */
-public class LocationPath {
+public class LocationPath implements CoordinateSequence {
 
-    private final ArrayList<Location> mPath = new ArrayList<Location>();
+    private double[] mLatitudes = new double[16];
+    private double[] mLongitudes = new double[16];
+    private int mSize;
+
+    // Bounds of the locations, kept up to date while locations are added.
+    private double mMinLatitude = Double.MAX_VALUE;
+    private double mMaxLatitude = -Double.MAX_VALUE;
+    private double mMinLongitude = Double.MAX_VALUE;
+    private double mMaxLongitude = -Double.MAX_VALUE;
+    private boolean mBoundsValid = true;
+
+    private LocationPathIndex mIndex;
 
     public LocationPath() {
 
     }
 
+    /**
+     * Creates an empty path with room for the specified number of locations.
+     */
+    public LocationPath(int capacity) {
+        mLatitudes = new double[Math.max(capacity, 1)];
+        mLongitudes = new double[mLatitudes.length];
+    }
+
+    /**
+     * Creates a path from a polyline encoded with the Encoded Polyline Algorithm Format.
+     *
+     * @see EncodedPolyline
+     */
+    public static LocationPath fromPolyline(CharSequence encoded) {
+        return EncodedPolyline.decode(encoded);
+    }
+
+    @Override
     public int getSize() {
-        return mPath.size();
+        return mSize;
     }
 
     public void addLocation(Location l) {
-        mPath.add(l);
+        addLocation(l.mLatitude(), l.mLongitude());
+    }
+
+    /**
+     * Adds a location given its coordinates, without creating a {@link Location}.
+     */
+    public void addLocation(double latitude, double longitude) {
+        if (mSize == mLatitudes.length) {
+            mLatitudes = Arrays.copyOf(mLatitudes, mSize * 2);
+            mLongitudes = Arrays.copyOf(mLongitudes, mSize * 2);
+        }
+        mLatitudes[mSize] = latitude;
+        mLongitudes[mSize] = longitude;
+        mSize++;
+
+        if (mBoundsValid)
+            extendBounds(latitude, longitude);
+        mIndex = null;
     }
 
     public void removeLocation(Location l) {
-        mPath.remove(l);
+        for (int i = 0; i < mSize; i++) {
+            if (mLatitudes[i] == l.mLatitude() && mLongitudes[i] == l.mLongitude()) {
+                System.arraycopy(mLatitudes, i + 1, mLatitudes, i, mSize - i - 1);
+                System.arraycopy(mLongitudes, i + 1, mLongitudes, i, mSize - i - 1);
+                mSize--;
+                // The removed location may have been on the bounds: compute them again when needed.
+                mBoundsValid = false;
+                mIndex = null;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void getCoordinates(int start, int count, double[] latitudes, double[] longitudes) {
+        if (start < 0 || count < 0 || start + count > mSize)
+            throw new IndexOutOfBoundsException("Range " + start + "+" + count + " out of bounds for size " + mSize);
+        System.arraycopy(mLatitudes, start, latitudes, 0, count);
+        System.arraycopy(mLongitudes, start, longitudes, 0, count);
     }
 
     public Location getLocationAtIndex(int index) {
-        return mPath.get(index);
+        checkIndex(index);
+        return new Location(mLatitudes[index], mLongitudes[index]);
+    }
+
+    /**
+     * Returns the latitude of the location at the specified index, without creating a {@link Location}.
+     */
+    @Override
+    public double getLatitude(int index) {
+        checkIndex(index);
+        return mLatitudes[index];
+    }
+
+    /**
+     * Returns the longitude of the location at the specified index, without creating a {@link Location}.
+     */
+    @Override
+    public double getLongitude(int index) {
+        checkIndex(index);
+        return mLongitudes[index];
     }
 
     public void reverse() {
-        Collections.reverse(mPath);
+        for (int i = 0, j = mSize - 1; i < j; i++, j--) {
+            double latitude = mLatitudes[i];
+            mLatitudes[i] = mLatitudes[j];
+            mLatitudes[j] = latitude;
+            double longitude = mLongitudes[i];
+            mLongitudes[i] = mLongitudes[j];
+            mLongitudes[j] = longitude;
+        }
+        mIndex = null;
+    }
+
+    /**
+     * Returns the bounds of the path, or <code>null</code> if it is empty. Bounds are kept up to
+     * date while locations are added, so this doesn't walk the path.
+     */
+    @Override
+    public LocationBounds getBounds() {
+        if (mSize == 0)
+            return null;
+        if (!mBoundsValid) {
+            mMinLatitude = Double.MAX_VALUE;
+            mMaxLatitude = -Double.MAX_VALUE;
+            mMinLongitude = Double.MAX_VALUE;
+            mMaxLongitude = -Double.MAX_VALUE;
+            for (int i = 0; i < mSize; i++)
+                extendBounds(mLatitudes[i], mLongitudes[i]);
+            mBoundsValid = true;
+        }
+        return new LocationBounds(mMinLongitude, mMaxLongitude, mMinLatitude, mMaxLatitude);
     }
 
+    /**
+     * Returns the spatial index of the path, built on the first call following a change of the path.
+     */
+    @Override
+    public LocationPathIndex getIndex() {
+        LocationPathIndex index = mIndex;
+        if (index == null) {
+            index = new LocationPathIndex(this);
+            mIndex = index;
+        }
+        return index;
+    }
+
+    private void extendBounds(double latitude, double longitude) {
+        mMinLatitude = Math.min(mMinLatitude, latitude);
+        mMaxLatitude = Math.max(mMaxLatitude, latitude);
+        mMinLongitude = Math.min(mMinLongitude, longitude);
+        mMaxLongitude = Math.max(mMaxLongitude, longitude);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + mSize);
+    }
 
 }
@@ -0,0 +1,96 @@
+package com.hotcoffee.staticmap.geo;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index of a {@link CoordinateSequence}: the path is cut into chunks of consecutive locations,
+ * each with its bounds, so only the chunks crossing an area have to be looked at. Consecutive
+ * chunks share their boundary location, so every segment of the path belongs to a chunk.
+ */
+public final class LocationPathIndex {
+    // Locations per chunk, boundary location included.
+    static final int CHUNK_SIZE = 64;
+
+    private final int mSize;
+    private final int mChunkCount;
+    // Bounds of chunk c: mMinLongitudes[c] to mMaxLongitudes[c], mMinLatitudes[c] to mMaxLatitudes[c].
+    private final double[] mMinLatitudes;
+    private final double[] mMaxLatitudes;
+    private final double[] mMinLongitudes;
+    private final double[] mMaxLongitudes;
+
+    LocationPathIndex(CoordinateSequence coordinates) {
+        int size = coordinates.getSize();
+        mSize = size;
+        mChunkCount = size <= 1 ? size : (size - 2) / (CHUNK_SIZE - 1) + 1;
+        mMinLatitudes = new double[mChunkCount];
+        mMaxLatitudes = new double[mChunkCount];
+        mMinLongitudes = new double[mChunkCount];
+        mMaxLongitudes = new double[mChunkCount];
+
+        double[] latitudes = new double[CHUNK_SIZE];
+        double[] longitudes = new double[CHUNK_SIZE];
+        for (int c = 0; c < mChunkCount; c++) {
+            int start = getChunkStart(c);
+            int count = getChunkEnd(c) - start;
+            coordinates.getCoordinates(start, count, latitudes, longitudes);
+
+            double minLatitude = Double.MAX_VALUE, maxLatitude = -Double.MAX_VALUE;
+            double minLongitude = Double.MAX_VALUE, maxLongitude = -Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                minLatitude = Math.min(minLatitude, latitudes[i]);
+                maxLatitude = Math.max(maxLatitude, latitudes[i]);
+                minLongitude = Math.min(minLongitude, longitudes[i]);
+                maxLongitude = Math.max(maxLongitude, longitudes[i]);
+            }
+            mMinLatitudes[c] = minLatitude;
+            mMaxLatitudes[c] = maxLatitude;
+            mMinLongitudes[c] = minLongitude;
+            mMaxLongitudes[c] = maxLongitude;
+        }
+    }
+
+    public int getChunkCount() {
+        return mChunkCount;
+    }
+
+    /**
+     * Returns the index of the first location of the specified chunk.
+     */
+    public int getChunkStart(int chunk) {
+        return chunk * (CHUNK_SIZE - 1);
+    }
+
+    /**
+     * Returns the index following the last location of the specified chunk.
+     */
+    public int getChunkEnd(int chunk) {
+        return Math.min(getChunkStart(chunk) + CHUNK_SIZE, mSize);
+    }
+
+    /**
+     * Returns the ranges of locations whose chunks intersect the specified bounds, as pairs of
+     * start (inclusive) and end (exclusive) indices. Adjacent chunks are merged in a single range.
+     */
+    public int[] query(LocationBounds bounds) {
+        int[] ranges = new int[8];
+        int size = 0;
+        for (int c = 0; c < mChunkCount; c++) {
+            if (mMaxLongitudes[c] < bounds.xmin || mMinLongitudes[c] > bounds.xmax
+                    || mMaxLatitudes[c] < bounds.ymin || mMinLatitudes[c] > bounds.ymax)
+                continue;
+
+            int start = getChunkStart(c);
+            if (size > 0 && ranges[size - 1] > start) {
+                ranges[size - 1] = getChunkEnd(c);
+            } else {
+                if (size == ranges.length)
+                    ranges = Arrays.copyOf(ranges, size * 2);
+                ranges[size++] = start;
+                ranges[size++] = getChunkEnd(c);
+            }
+        }
+        return Arrays.copyOf(ranges, size);
+    }
+
+}
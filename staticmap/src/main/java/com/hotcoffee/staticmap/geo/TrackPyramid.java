@@ -0,0 +1,226 @@
+package com.hotcoffee.staticmap.geo;
+
+import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A path projected once at zoom 0 and simplified for a range of zoom levels, so it can be drawn
+ * at any of them by scaling, without walking the original path again. Each zoom
+ * level is simplified from the full path to half a pixel at that zoom, so errors don't add up
+ * from level to level; it keeps a subset of the points of the next one.
+ * <br/>
+ * Zoom levels below the range use its lowest level, and those above it use its highest one.
+ */
+public final class TrackPyramid {
+    private static final int MAGIC = 0x54505952;
+    private static final int VERSION = 1;
+    public static final int MAX_ZOOM = 24;
+    // Largest distance, in pixels, between the path and its simplified version at each zoom.
+    private static final double SIMPLIFY_TOLERANCE = 0.5;
+    // Serialized coordinates are rounded to 1/2^QUANTIZATION_BITS pixel of the highest zoom.
+    private static final int QUANTIZATION_BITS = 8;
+
+    private final int mMinZoom;
+    private final int mMaxZoom;
+    // Points kept at the highest zoom, in pixels at zoom 0.
+    private final double[] mX;
+    private final double[] mY;
+    // Indexes of the points kept at each zoom, from the lowest.
+    private final int[][] mLevels;
+
+    private TrackPyramid(int minZoom, int maxZoom, double[] x, double[] y, int[][] levels) {
+        mMinZoom = minZoom;
+        mMaxZoom = maxZoom;
+        mX = x;
+        mY = y;
+        mLevels = levels;
+    }
+
+    /**
+     * Projects and simplifies the specified path for each zoom level from <code>minZoom</code>
+     * to <code>maxZoom</code>.
+     */
+    public static TrackPyramid build(CoordinateSequence path, MercatorProjection proj, int minZoom, int maxZoom) {
+        if (minZoom < 0 || maxZoom > MAX_ZOOM || minZoom > maxZoom)
+            throw new IllegalArgumentException("Invalid zoom range " + minZoom + "-" + maxZoom);
+
+        int size = path.getSize();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        path.getCoordinates(0, size, y, x);
+        for (int i = 0; i < size; i++) {
+            x[i] = proj.unprojectX(x[i], 0);
+            y[i] = proj.unprojectY(y[i], 0);
+        }
+
+        // Only keep the points drawn at the highest zoom.
+        int[] kept = DouglasPeucker.simplify(x, y, size, SIMPLIFY_TOLERANCE / (1 << maxZoom));
+        double[] keptX = new double[kept.length];
+        double[] keptY = new double[kept.length];
+        for (int i = 0; i < kept.length; i++) {
+            keptX[i] = x[kept[i]];
+            keptY[i] = y[kept[i]];
+        }
+
+        // Simplify each level from the full path. A larger tolerance keeps a subset of the points
+        // kept by a smaller one, so every point of a level is among the points kept.
+        int[] positions = new int[size];
+        for (int i = 0; i < kept.length; i++)
+            positions[kept[i]] = i;
+        int[][] levels = new int[maxZoom - minZoom + 1][];
+        int[] all = new int[kept.length];
+        for (int i = 0; i < all.length; i++)
+            all[i] = i;
+        levels[maxZoom - minZoom] = all;
+        for (int zoom = minZoom; zoom < maxZoom; zoom++) {
+            int[] level = DouglasPeucker.simplify(x, y, size, SIMPLIFY_TOLERANCE / (1 << zoom));
+            for (int i = 0; i < level.length; i++)
+                level[i] = positions[level[i]];
+            levels[zoom - minZoom] = level;
+        }
+        return new TrackPyramid(minZoom, maxZoom, keptX, keptY, levels);
+    }
+
+    public int getMinZoom() {
+        return mMinZoom;
+    }
+
+    public int getMaxZoom() {
+        return mMaxZoom;
+    }
+
+    /**
+     * Returns the number of points drawn at the specified zoom.
+     */
+    public int getPointCount(int zoom) {
+        return getLevel(zoom).length;
+    }
+
+    /**
+     * Writes the points drawn at the specified zoom into <code>x</code> and <code>y</code>, in
+     * pixels at that zoom minus the specified offset, and returns their number. The arrays must
+     * hold at least {@link #getPointCount(int)} points.
+     */
+    public int getPoints(int zoom, double offsetX, double offsetY, double[] x, double[] y) {
+        int[] level = getLevel(zoom);
+        double scale = 1 << zoom;
+        for (int i = 0; i < level.length; i++) {
+            x[i] = mX[level[i]] * scale - offsetX;
+            y[i] = mY[level[i]] * scale - offsetY;
+        }
+        return level.length;
+    }
+
+    /**
+     * Writes the pyramid in a compact binary form: coordinates are rounded to 1/256 pixel of the
+     * highest zoom and stored once, as variable length deltas, and each level lists the indexes
+     * of its points the same way.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(mMinZoom);
+        out.writeByte(mMaxZoom);
+
+        double quantization = Math.scalb(1.0, mMaxZoom + QUANTIZATION_BITS);
+        Varints.writeUnsigned(out, mX.length);
+        long previousX = 0;
+        long previousY = 0;
+        for (int i = 0; i < mX.length; i++) {
+            long x = Math.round(mX[i] * quantization);
+            long y = Math.round(mY[i] * quantization);
+            Varints.writeSigned(out, x - previousX);
+            Varints.writeSigned(out, y - previousY);
+            previousX = x;
+            previousY = y;
+        }
+
+        // The highest level keeps every point.
+        for (int z = 0; z < mLevels.length - 1; z++) {
+            int[] level = mLevels[z];
+            Varints.writeUnsigned(out, level.length);
+            int previous = 0;
+            for (int index : level) {
+                Varints.writeUnsigned(out, index - previous);
+                previous = index;
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a pyramid written by {@link #writeTo(OutputStream)}. The stream isn't buffered by
+     * this method.
+     */
+    public static TrackPyramid readFrom(InputStream is) throws IOException {
+        DataInput in = new DataInputStream(is);
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a track pyramid");
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported track pyramid version " + version);
+        int minZoom = in.readUnsignedByte();
+        int maxZoom = in.readUnsignedByte();
+        if (minZoom > maxZoom || maxZoom > MAX_ZOOM)
+            throw new IOException("Invalid zoom range " + minZoom + "-" + maxZoom);
+
+        double quantization = Math.scalb(1.0, maxZoom + QUANTIZATION_BITS);
+        int count = readCount(in, Integer.MAX_VALUE - 8);
+        // Grow the arrays while reading, so a corrupt count fails on the end of the stream instead of allocating it.
+        double[] x = new double[Math.min(count, 1024)];
+        double[] y = new double[x.length];
+        long previousX = 0;
+        long previousY = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == x.length) {
+                int capacity = (int) Math.min(count, 2L * x.length);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+            }
+            previousX += Varints.readSigned(in);
+            previousY += Varints.readSigned(in);
+            x[i] = previousX / quantization;
+            y[i] = previousY / quantization;
+        }
+
+        int[][] levels = new int[maxZoom - minZoom + 1][];
+        for (int z = 0; z < levels.length - 1; z++) {
+            int[] level = new int[readCount(in, count)];
+            int previous = 0;
+            for (int i = 0; i < level.length; i++) {
+                // Checked before adding, so a corrupt delta can't wrap the index around.
+                long delta = Varints.readUnsigned(in);
+                if (delta < 0 || delta >= count - previous)
+                    throw new IOException("Point index out of range");
+                previous += (int) delta;
+                level[i] = previous;
+            }
+            levels[z] = level;
+        }
+        int[] all = new int[count];
+        for (int i = 0; i < count; i++)
+            all[i] = i;
+        levels[levels.length - 1] = all;
+        return new TrackPyramid(minZoom, maxZoom, x, y, levels);
+    }
+
+    private int[] getLevel(int zoom) {
+        return mLevels[Math.max(mMinZoom, Math.min(mMaxZoom, zoom)) - mMinZoom];
+    }
+
+    private static int readCount(DataInput in, int max) throws IOException {
+        long count = Varints.readUnsigned(in);
+        if (count > max)
+            throw new IOException("Invalid point count " + count);
+        return (int) count;
+    }
+
+}
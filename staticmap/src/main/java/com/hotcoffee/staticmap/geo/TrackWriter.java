@@ -0,0 +1,120 @@
+package com.hotcoffee.staticmap.geo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a {@link CoordinateSequence} in the compact binary form read by {@link EncodedTrack}.
+ * <br/>
+ * Latitudes and longitudes are stored as fixed-point integers of 1e-7 degree, elevations as
+ * centimetres and times as milliseconds. Each column is cut into blocks of {@link EncodedTrack#BLOCK_SIZE}
+ * points, stored as zigzag encoded variable length deltas starting from zero at each block, so
+ * any block can be decoded on its own. The header holds the bounds of the track and the offset
+ * of each block.
+ */
+public class TrackWriter {
+
+    private final CoordinateSequence mCoordinates;
+    private double[] mElevations;
+    private long[] mTimes;
+
+    public TrackWriter(CoordinateSequence coordinates) {
+        mCoordinates = coordinates;
+    }
+
+    /**
+     * Adds an elevation column, in metres, with one value per coordinate.
+     */
+    public TrackWriter elevations(double[] elevations) {
+        if (elevations != null && elevations.length != mCoordinates.getSize())
+            throw new IllegalArgumentException("Expected " + mCoordinates.getSize() + " elevations, got " + elevations.length);
+        mElevations = elevations;
+        return this;
+    }
+
+    /**
+     * Adds a time column, in milliseconds since the epoch, with one value per coordinate.
+     */
+    public TrackWriter times(long[] times) {
+        if (times != null && times.length != mCoordinates.getSize())
+            throw new IllegalArgumentException("Expected " + mCoordinates.getSize() + " times, got " + times.length);
+        mTimes = times;
+        return this;
+    }
+
+    public void writeTo(OutputStream os) throws IOException {
+        int size = mCoordinates.getSize();
+        int blockCount = (size + EncodedTrack.BLOCK_SIZE - 1) / EncodedTrack.BLOCK_SIZE;
+        int columnCount = 1 + (mElevations != null ? 1 : 0) + (mTimes != null ? 1 : 0);
+
+        // Encode the blocks first, to know their offsets.
+        ByteArrayOutputStream data = new ByteArrayOutputStream(size * 4 * columnCount);
+        DataOutputStream out = new DataOutputStream(data);
+        int[] offsets = new int[blockCount * columnCount];
+        int dataStart = EncodedTrack.HEADER_SIZE + offsets.length * Integer.BYTES;
+        int column = 0;
+
+        double[] latitudes = new double[EncodedTrack.BLOCK_SIZE];
+        double[] longitudes = new double[EncodedTrack.BLOCK_SIZE];
+        for (int b = 0; b < blockCount; b++) {
+            offsets[column * blockCount + b] = dataStart + out.size();
+            int start = b * EncodedTrack.BLOCK_SIZE;
+            int count = Math.min(EncodedTrack.BLOCK_SIZE, size - start);
+            mCoordinates.getCoordinates(start, count, latitudes, longitudes);
+            long previousLatitude = 0;
+            long previousLongitude = 0;
+            for (int i = 0; i < count; i++) {
+                long latitude = Math.round(latitudes[i] * EncodedTrack.DEGREE_SCALE);
+                long longitude = Math.round(longitudes[i] * EncodedTrack.DEGREE_SCALE);
+                Varints.writeSigned(out, latitude - previousLatitude);
+                Varints.writeSigned(out, longitude - previousLongitude);
+                previousLatitude = latitude;
+                previousLongitude = longitude;
+            }
+        }
+        column++;
+
+        if (mElevations != null) {
+            for (int b = 0; b < blockCount; b++) {
+                offsets[column * blockCount + b] = dataStart + out.size();
+                long previous = 0;
+                for (int i = b * EncodedTrack.BLOCK_SIZE; i < Math.min((b + 1) * EncodedTrack.BLOCK_SIZE, size); i++) {
+                    long elevation = Math.round(mElevations[i] * EncodedTrack.ELEVATION_SCALE);
+                    Varints.writeSigned(out, elevation - previous);
+                    previous = elevation;
+                }
+            }
+            column++;
+        }
+
+        if (mTimes != null) {
+            for (int b = 0; b < blockCount; b++) {
+                offsets[column * blockCount + b] = dataStart + out.size();
+                long previous = 0;
+                for (int i = b * EncodedTrack.BLOCK_SIZE; i < Math.min((b + 1) * EncodedTrack.BLOCK_SIZE, size); i++) {
+                    Varints.writeSigned(out, mTimes[i] - previous);
+                    previous = mTimes[i];
+                }
+            }
+        }
+
+        DataOutputStream header = new DataOutputStream(os);
+        header.writeInt(EncodedTrack.MAGIC);
+        header.writeByte(EncodedTrack.VERSION);
+        header.writeByte((mElevations != null ? EncodedTrack.FLAG_ELEVATIONS : 0)
+                | (mTimes != null ? EncodedTrack.FLAG_TIMES : 0));
+        header.writeInt(size);
+        LocationBounds bounds = mCoordinates.getBounds();
+        header.writeDouble(bounds != null ? bounds.xmin : 0);
+        header.writeDouble(bounds != null ? bounds.xmax : 0);
+        header.writeDouble(bounds != null ? bounds.ymin : 0);
+        header.writeDouble(bounds != null ? bounds.ymax : 0);
+        for (int offset : offsets)
+            header.writeInt(offset);
+        data.writeTo(header);
+        header.flush();
+    }
+
+}
@@ -28,20 +28,28 @@ public final class MercatorProjection implements GeographicalProjection<PointF>
 
     @Override
     public PointF unproject(Location location, int zoom) {
-        double lat = location.mLatitude();
-        double lng = location.mLongitude();
+        return new PointF(unprojectX(location.mLongitude(), zoom), unprojectY(location.mLatitude(), zoom));
+    }
 
+    /**
+     * Gets the x coordinate of a longitude, like {@link #unproject(Location, int)} without
+     * allocating a point.
+     */
+    public double unprojectX(double lng, int zoom) {
         double x = _pixelOrigin.x() + lng * _pixelsPerLonDegree;
+        return x * (1 << zoom);
+    }
 
+    /**
+     * Gets the y coordinate of a latitude, like {@link #unproject(Location, int)} without
+     * allocating a point.
+     */
+    public double unprojectY(double lat, int zoom) {
         // Truncating to 0.9999 effectively limits latitude to 89.189. This is
         // about a third of a tile past the edge of the world tile.
         double siny = bound(Math.sin(Math.toRadians(lat)));
         double y = _pixelOrigin.y() + 0.5 * Math.log((1 + siny) / (1 - siny)) * -_pixelsPerLonRadian;
-
-        int numTiles = 1 << zoom;
-        x = x * numTiles;
-        y = y * numTiles;
-        return new PointF(x, y);
+        return y * (1 << zoom);
     }
 
     @Override
@@ -0,0 +1,271 @@
+package com.hotcoffee.staticmap.layers;
+
+import com.hotcoffee.staticmap.geo.Tile;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Terrain shading computed from elevation tiles, read from a URL pattern like {@link TMSLayer}
+ * (local tile folders are read with a <code>file:</code> pattern). Slopes are computed with
+ * Horn's method, lit from the north-west: shadows are drawn in black and lit slopes in white,
+ * flat areas staying transparent.
+ * <br/>
+ * Shading is computed from each elevation tile and the edges of its eight neighbours, so shaded
+ * tiles join without seams, rows in parallel. The last elevation tiles read are kept, as each one
+ * borders the next tiles shaded. Missing elevations, like the voids of SRTM tiles, are left
+ * transparent. Set a {@link #setTileCache(com.hotcoffee.staticmap.tiles.TileCache) tile cache} to
+ * keep the shaded tiles between draws.
+ */
+public class HillshadeLayer extends TMSLayer {
+    private static final double EARTH_CIRCUMFERENCE = 40075016.686;
+    // Value of the voids of SRTM tiles.
+    private static final short RAW_NO_DATA = Short.MIN_VALUE;
+    // Elevation tiles kept to shade the borders of their neighbours: enough for a few rows of a map.
+    private static final int DEM_CACHE_SIZE = 64;
+
+    /**
+     * Encodings of elevation tiles.
+     */
+    public enum Encoding {
+        /**
+         * Mapbox Terrain-RGB images: <code>-10000 + (R * 65536 + G * 256 + B) * 0.1</code> metres.
+         */
+        TERRAIN_RGB,
+        /**
+         * Terrarium images: <code>R * 256 + G + B / 256 - 32768</code> metres.
+         */
+        TERRARIUM,
+        /**
+         * Square grids of big-endian signed 16 bits integers, in metres, such as SRTM tiles.
+         */
+        RAW_INT16
+    }
+
+    private final Encoding mEncoding;
+    private double mExaggeration = 1;
+    private double mAzimuth = 315;
+    private double mAltitude = 45;
+    private final Map<Tile, float[]> mElevations = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Tile, float[]> eldest) {
+            return size() > DEM_CACHE_SIZE;
+        }
+    };
+
+    public HillshadeLayer(String pattern, Encoding encoding) {
+        super(pattern);
+        mEncoding = encoding;
+    }
+
+    /**
+     * Sets the factor applied to elevations, making relief stand out more above 1. Defaults to 1.
+     */
+    public void setExaggeration(double exaggeration) {
+        mExaggeration = exaggeration;
+    }
+
+    /**
+     * Sets the direction of the light, in degrees: its azimuth clockwise from the north, and its
+     * altitude above the horizon. Default to 315 and 45.
+     */
+    public void setLight(double azimuth, double altitude) {
+        mAzimuth = azimuth;
+        mAltitude = altitude;
+    }
+
+    @Override
+    public String getSourceKey() {
+        return mPattern + "#hillshade=" + mEncoding + "," + mExaggeration + "," + mAzimuth + "," + mAltitude;
+    }
+
+    @Override
+    protected Image requestTile(int tileX, int tileY, int tileZ) throws IOException {
+        float[] elevations = requestElevations(tileX, tileY, tileZ);
+        if (elevations == null)
+            return null;
+        int size = (int) Math.sqrt(elevations.length);
+
+        // Borders are read from the neighbours, wrapping around the antimeridian; a neighbour out of
+        // the world, missing or failing is replaced by the edge of the tile.
+        int count = 1 << tileZ;
+        float[][] neighbours = new float[9][];
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int y = tileY + dy;
+                if ((dx == 0 && dy == 0) || y < 0 || y >= count)
+                    continue;
+                try {
+                    float[] neighbour = requestElevations(Math.floorMod(tileX + dx, count), y, tileZ);
+                    if (neighbour != null && neighbour.length == elevations.length)
+                        neighbours[(dy + 1) * 3 + dx + 1] = neighbour;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        // Size of a pixel, in metres, at the latitude of the center of the tile.
+        double latitude = latitudeFromTile(2 * tileY + 1, tileZ + 1);
+        double cellSize = EARTH_CIRCUMFERENCE * Math.cos(Math.toRadians(latitude)) / ((double) size * (1 << tileZ));
+        return shadePadded(pad(elevations, neighbours, size), size, cellSize / mExaggeration, mAzimuth, mAltitude);
+    }
+
+    /**
+     * Returns the elevations of the specified tile, from the recently read tiles or from its URL,
+     * or <code>null</code> if the tile doesn't exist.
+     */
+    private float[] requestElevations(int tileX, int tileY, int tileZ) throws IOException {
+        Tile tile = new Tile(tileX, tileY, tileZ);
+        synchronized (mElevations) {
+            float[] elevations = mElevations.get(tile);
+            if (elevations != null)
+                return elevations;
+        }
+
+        String url = buildURL(tileX, tileY, tileZ);
+        float[] elevations;
+        if (mEncoding == Encoding.RAW_INT16) {
+            byte[] data = requestBytes(url);
+            if (data == null)
+                return null;
+            elevations = decodeRaw(data, (int) Math.sqrt(data.length / 2.0));
+        } else {
+            Image image = requestImage(url);
+            if (!(image instanceof BufferedImage dem) || dem.getWidth() != dem.getHeight())
+                return null;
+            elevations = decodeImage(dem, mEncoding);
+        }
+        synchronized (mElevations) {
+            mElevations.put(tile, elevations);
+        }
+        return elevations;
+    }
+
+    static float[] decodeImage(BufferedImage dem, Encoding encoding) {
+        int size = dem.getWidth();
+        int[] pixels = dem.getRGB(0, 0, size, size, null, 0, size);
+        float[] elevations = new float[size * size];
+        for (int i = 0; i < pixels.length; i++) {
+            int r = (pixels[i] >> 16) & 0xFF;
+            int g = (pixels[i] >> 8) & 0xFF;
+            int b = pixels[i] & 0xFF;
+            elevations[i] = encoding == Encoding.TERRAIN_RGB
+                    ? -10000f + (r * 65536 + g * 256 + b) * 0.1f
+                    : r * 256f + g + b / 256f - 32768f;
+        }
+        return elevations;
+    }
+
+    /**
+     * Decodes a grid of signed 16 bits integers, voids being decoded as NaN.
+     */
+    static float[] decodeRaw(byte[] data, int size) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        float[] elevations = new float[size * size];
+        for (int i = 0; i < elevations.length; i++) {
+            short value = buffer.getShort(i * 2);
+            elevations[i] = (value == RAW_NO_DATA) ? Float.NaN : value;
+        }
+        return elevations;
+    }
+
+    /**
+     * Shades a square grid of elevations whose cells are <code>cellSize</code> metres wide, its
+     * borders continuing its edges.
+     */
+    static BufferedImage shade(float[] elevations, int size, double cellSize, double azimuth, double altitude) {
+        return shadePadded(pad(elevations, new float[9][], size), size, cellSize, azimuth, altitude);
+    }
+
+    /**
+     * Borders a square grid of elevations with the nearest rows and columns of its neighbours, so the
+     * kernel runs without bounds checks. Neighbours are given row by row from the north-west, the
+     * grid itself in the middle being ignored; a missing neighbour is replaced by the edge of the grid.
+     */
+    static float[] pad(float[] elevations, float[][] neighbours, int size) {
+        int stride = size + 2;
+        int last = size - 1;
+        float[] padded = new float[stride * stride];
+        float[] north = neighbours[1], south = neighbours[7], west = neighbours[3], east = neighbours[5];
+        for (int y = 0; y < size; y++) {
+            System.arraycopy(elevations, y * size, padded, (y + 1) * stride + 1, size);
+            padded[(y + 1) * stride] = (west == null) ? elevations[y * size] : west[y * size + last];
+            padded[(y + 1) * stride + size + 1] = (east == null) ? elevations[y * size + last] : east[y * size];
+        }
+        for (int x = 0; x < size; x++) {
+            padded[x + 1] = (north == null) ? elevations[x] : north[last * size + x];
+            padded[(size + 1) * stride + x + 1] = (south == null) ? elevations[last * size + x] : south[x];
+        }
+        padded[0] = corner(neighbours[0], size * size - 1, elevations, 0);
+        padded[size + 1] = corner(neighbours[2], last * size, elevations, last);
+        padded[(size + 1) * stride] = corner(neighbours[6], last, elevations, last * size);
+        padded[(size + 1) * stride + size + 1] = corner(neighbours[8], 0, elevations, size * size - 1);
+        return padded;
+    }
+
+    private static float corner(float[] neighbour, int index, float[] elevations, int edge) {
+        return (neighbour == null) ? elevations[edge] : neighbour[index];
+    }
+
+    /**
+     * Shades a grid of elevations bordered by {@link #pad(float[], float[][], int)}. Missing
+     * elevations are replaced by the elevation of the shaded cell, and missing cells are left
+     * transparent.
+     */
+    private static BufferedImage shadePadded(float[] padded, int size, double cellSize, double azimuth, double altitude) {
+        int stride = size + 2;
+
+        double zenith = Math.toRadians(90 - altitude);
+        // Azimuth of the light as an angle of the grid, counter-clockwise from the east.
+        double angle = Math.toRadians(360 - azimuth + 90);
+        float cosZenith = (float) Math.cos(zenith);
+        float sinZenith = (float) Math.sin(zenith);
+        float lightX = (float) Math.cos(angle) * sinZenith;
+        float lightY = (float) Math.sin(angle) * sinZenith;
+        float scale = (float) (1 / (8 * cellSize));
+        float flat = cosZenith;
+
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        IntStream.range(0, size).parallel().forEach(y -> {
+            int above = y * stride + 1;
+            int row = above + stride;
+            int below = row + stride;
+            for (int x = 0; x < size; x++) {
+                float center = padded[row + x];
+                if (Float.isNaN(center)) {
+                    pixels[y * size + x] = 0;
+                    continue;
+                }
+                float nw = or(padded[above + x - 1], center), n = or(padded[above + x], center), ne = or(padded[above + x + 1], center);
+                float w = or(padded[row + x - 1], center), e = or(padded[row + x + 1], center);
+                float sw = or(padded[below + x - 1], center), s = or(padded[below + x], center), se = or(padded[below + x + 1], center);
+
+                // Horn's weighted differences, positive towards the east and the north.
+                float dzdx = ((ne + 2 * e + se) - (nw + 2 * w + sw)) * scale;
+                float dzdy = ((nw + 2 * n + ne) - (sw + 2 * s + se)) * scale;
+
+                // Cosine of the angle between the light and the normal (-dzdx, -dzdy, 1).
+                float shade = (cosZenith - lightX * dzdx - lightY * dzdy)
+                        / (float) Math.sqrt(1 + dzdx * dzdx + dzdy * dzdy);
+                shade = Math.max(0, shade);
+                pixels[y * size + x] = shade < flat
+                        ? (int) ((flat - shade) / flat * 255) << 24
+                        : (int) ((shade - flat) / (1 - flat) * 255) << 24 | 0xFFFFFF;
+            }
+        });
+        return image;
+    }
+
+    private static float or(float elevation, float fallback) {
+        return Float.isNaN(elevation) ? fallback : elevation;
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.hotcoffee.staticmap.layers;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fetches the same tiles from several mirrors. Each tile is requested from the first available
+ * mirror, in order of preference; if it hasn't answered once most of its recent requests had (see {@link #setHedgePercentile(double)}),
+ * the next mirror is asked too, and the first tile received is kept. Hedged requests are limited
+ * to a share of the requests (see {@link #setHedgeRatio(double)}), so a slow mirror doesn't double
+ * the load of the others. A mirror failing is replaced by the next one at once, and a mirror
+ * failing repeatedly is left aside for a while, before a single request checks whether it recovered.
+ * Only I/O errors and server errors count as failures: a tile the first mirror doesn't have, like
+ * a 404, is reported as missing without asking the others.
+ */
+public class MirroredTileLayer extends TileLayer {
+    // Requests are run on a bounded pool of daemon threads per mirror, so a slow mirror never blocks a draw
+    // thread nor the requests to the other mirrors; requests beyond its size wait for a thread of their mirror.
+    private static final int MIRROR_THREADS = 8;
+    private static final long IDLE_THREAD_SECONDS = 30;
+    // Hedged requests saved up while no request is slow, so a burst of slow requests can still be hedged.
+    private static final double MAX_HEDGE_BUDGET = 10;
+    private static final int LATENCY_SAMPLES = 64;
+    // Requests needed before the percentile of a mirror is trusted.
+    private static final int MIN_LATENCY_SAMPLES = 8;
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 300;
+    private static final long MIN_HEDGE_DELAY_MILLIS = 20;
+
+    private final List<Mirror> mMirrors = new ArrayList<>();
+    private final String mSourceKey;
+    private double mHedgePercentile = 0.95;
+    private double mHedgeRatio = 0.05;
+    // Hedged requests allowed, earned by each request at the hedge ratio.
+    private double mHedgeBudget = 1;
+    private int mFailureThreshold = 5;
+    private long mOpenMillis = 30000;
+
+    /**
+     * Creates a layer fetching the tiles of the specified {@link TMSLayer} patterns, in order of preference.
+     */
+    public MirroredTileLayer(String... patterns) {
+        this(Arrays.stream(patterns).map(TMSLayer::new).toList());
+    }
+
+    /**
+     * Creates a layer fetching the tiles of the specified layers, in order of preference. The layers
+     * must serve the same tiles; their timeouts bound the requests.
+     */
+    public MirroredTileLayer(List<? extends TileLayer> mirrors) {
+        if (mirrors.isEmpty())
+            throw new IllegalArgumentException("At least one mirror is needed");
+        for (TileLayer mirror : mirrors)
+            mMirrors.add(new Mirror(mirror));
+        mSourceKey = mirrors.get(0).getSourceKey();
+    }
+
+    /**
+     * Sets the percentile of the latencies of a mirror after which the next mirror is asked too.
+     * Defaults to 0.95.
+     */
+    public void setHedgePercentile(double percentile) {
+        if (percentile <= 0 || percentile > 1)
+            throw new IllegalArgumentException("Invalid percentile " + percentile);
+        mHedgePercentile = percentile;
+    }
+
+    /**
+     * Sets the largest share of requests hedged on the next mirror, over time. Requests slower than
+     * the percentile beyond that share wait for their mirror alone. Defaults to 0.05.
+     */
+    public void setHedgeRatio(double ratio) {
+        if (ratio < 0 || ratio > 1)
+            throw new IllegalArgumentException("Invalid ratio " + ratio);
+        mHedgeRatio = ratio;
+    }
+
+    /**
+     * Sets how many consecutive failures leave a mirror aside, and for how long, in milliseconds.
+     * Default to 5 failures and 30 seconds.
+     */
+    public void setCircuitBreaker(int failureThreshold, long openMillis) {
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+    }
+
+    /**
+     * Returns whether the specified mirror is currently asked for tiles.
+     */
+    public boolean isAvailable(int mirror) {
+        return mMirrors.get(mirror).isAvailable(System.nanoTime());
+    }
+
+    /**
+     * Returns the key of the first mirror: all the mirrors serve the same tiles.
+     */
+    @Override
+    public String getSourceKey() {
+        return mSourceKey;
+    }
+
+    @Override
+    public Image getTile(int tileX, int tileY, int tileZ) {
+        long now = System.nanoTime();
+        List<Mirror> candidates = new ArrayList<>(mMirrors.size());
+        for (Mirror mirror : mMirrors) {
+            if (mirror.isAvailable(now))
+                candidates.add(mirror);
+        }
+        if (candidates.isEmpty())
+            return null;
+
+        earnHedge();
+        Request request = new Request(candidates, tileX, tileY, tileZ);
+        request.launchNext();
+        try {
+            try {
+                // The delay runs once the request is sent, not while it waits for a thread of its mirror.
+                CompletableFuture.anyOf(request.mStarted, request.mResult).get();
+                return request.mResult.get(candidates.get(0).hedgeDelayMillis(mHedgePercentile), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // The first mirror is slower than usual: ask the next one too, unless enough requests were hedged.
+                if (tryHedge())
+                    request.launchNext();
+                return request.mResult.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private synchronized void earnHedge() {
+        mHedgeBudget = Math.min(MAX_HEDGE_BUDGET, mHedgeBudget + mHedgeRatio);
+    }
+
+    private synchronized boolean tryHedge() {
+        if (mHedgeBudget < 1)
+            return false;
+        mHedgeBudget--;
+        return true;
+    }
+
+    /**
+     * Requests of a tile to the mirrors, completed by the first tile received, or by
+     * <code>null</code> once every mirror failed.
+     */
+    private final class Request {
+        private final List<Mirror> mCandidates;
+        private final int mTileX;
+        private final int mTileY;
+        private final int mTileZ;
+        private final CompletableFuture<Image> mResult = new CompletableFuture<>();
+        // Completed once a mirror starts fetching the tile.
+        private final CompletableFuture<Void> mStarted = new CompletableFuture<>();
+        private int mNext;
+        private int mLaunched;
+        private int mFailed;
+
+        Request(List<Mirror> candidates, int tileX, int tileY, int tileZ) {
+            mCandidates = candidates;
+            mTileX = tileX;
+            mTileY = tileY;
+            mTileZ = tileZ;
+        }
+
+        /**
+         * Asks the next available mirror, or completes the request with <code>null</code> if none
+         * is left and every mirror asked failed.
+         */
+        synchronized void launchNext() {
+            while (mNext < mCandidates.size() && !mResult.isDone()) {
+                Mirror mirror = mCandidates.get(mNext++);
+                if (mirror.tryAcquire(System.nanoTime())) {
+                    mLaunched++;
+                    CompletableFuture.runAsync(() -> fetch(mirror), mirror.mExecutor);
+                    return;
+                }
+            }
+            if (mFailed == mLaunched)
+                mResult.complete(null);
+        }
+
+        private void fetch(Mirror mirror) {
+            mStarted.complete(null);
+            long start = System.nanoTime();
+            try {
+                Image tile = mirror.mLayer.requestTile(mTileX, mTileY, mTileZ);
+                // A tile the mirror doesn't have is missing from the others too.
+                mirror.recordSuccess(System.nanoTime() - start);
+                mResult.complete(tile);
+                return;
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+
+            mirror.recordFailure(System.nanoTime(), mFailureThreshold, mOpenMillis);
+            synchronized (this) {
+                mFailed++;
+                launchNext();
+            }
+        }
+    }
+
+    /**
+     * Health of a mirror: its recent latencies, and its circuit breaker.
+     */
+    private static final class Mirror {
+        private final TileLayer mLayer;
+        private final ThreadPoolExecutor mExecutor;
+        private final long[] mLatencies = new long[LATENCY_SAMPLES];
+        private int mLatencyCount;
+        private int mConsecutiveFailures;
+        // While open, the mirror isn't asked until this time, then once to check it recovered.
+        private boolean mOpen;
+        private long mOpenUntil;
+        private boolean mProbing;
+
+        Mirror(TileLayer layer) {
+            mLayer = layer;
+            // Idle threads end, so the pools of layers no longer used don't keep threads alive.
+            mExecutor = new ThreadPoolExecutor(MIRROR_THREADS, MIRROR_THREADS, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "tile-mirror-fetcher");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        synchronized boolean isAvailable(long now) {
+            return !mOpen || (now - mOpenUntil >= 0 && !mProbing);
+        }
+
+        /**
+         * Returns whether the mirror can be asked for a tile, taking the single probe of an open
+         * breaker whose delay expired.
+         */
+        synchronized boolean tryAcquire(long now) {
+            if (!isAvailable(now))
+                return false;
+            if (mOpen)
+                mProbing = true;
+            return true;
+        }
+
+        synchronized void recordSuccess(long latency) {
+            mLatencies[mLatencyCount % LATENCY_SAMPLES] = latency;
+            mLatencyCount++;
+            mConsecutiveFailures = 0;
+            mOpen = false;
+            mProbing = false;
+        }
+
+        synchronized void recordFailure(long now, int threshold, long openMillis) {
+            mConsecutiveFailures++;
+            if (mProbing || mConsecutiveFailures >= threshold) {
+                mOpen = true;
+                mOpenUntil = now + TimeUnit.MILLISECONDS.toNanos(openMillis);
+            }
+            mProbing = false;
+        }
+
+        synchronized long hedgeDelayMillis(double percentile) {
+            int count = Math.min(mLatencyCount, LATENCY_SAMPLES);
+            if (count < MIN_LATENCY_SAMPLES)
+                return DEFAULT_HEDGE_DELAY_MILLIS;
+            long[] sorted = Arrays.copyOf(mLatencies, count);
+            Arrays.sort(sorted);
+            long latency = sorted[Math.min(count - 1, (int) Math.ceil(percentile * count) - 1)];
+            return Math.max(MIN_HEDGE_DELAY_MILLIS, TimeUnit.NANOSECONDS.toMillis(latency));
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.hotcoffee.staticmap.layers;
+
+/**
+ * Describes the tiles to fetch ahead of the next renders of a map, with
+ * {@link TileLayer#prefetch(com.hotcoffee.staticmap.StaticMap, PrefetchHint)}: the tiles of the
+ * map, rings of neighbouring tiles, and the tiles covering the map at lower and higher zoom levels.
+ */
+public class PrefetchHint {
+
+    private int mRing = 1;
+    private int mParentZooms = 0;
+    private int mChildZooms = 0;
+
+    /**
+     * Sets the number of rings of tiles fetched around the tiles of the map, for maps panned
+     * next. Defaults to 1.
+     */
+    public PrefetchHint ring(int ring) {
+        if (ring < 0)
+            throw new IllegalArgumentException("Invalid ring " + ring);
+        mRing = ring;
+        return this;
+    }
+
+    /**
+     * Sets the number of lower zoom levels whose tiles covering the map are fetched, for maps
+     * zoomed out next, like smaller versions of the same map. Defaults to 0.
+     */
+    public PrefetchHint parentZooms(int zooms) {
+        if (zooms < 0)
+            throw new IllegalArgumentException("Invalid zoom count " + zooms);
+        mParentZooms = zooms;
+        return this;
+    }
+
+    /**
+     * Sets the number of higher zoom levels whose tiles covering the map are fetched, for maps
+     * zoomed in next, like larger versions of the same map. Each level fetches 4 times the tiles
+     * of the previous one. Defaults to 0.
+     */
+    public PrefetchHint childZooms(int zooms) {
+        if (zooms < 0)
+            throw new IllegalArgumentException("Invalid zoom count " + zooms);
+        mChildZooms = zooms;
+        return this;
+    }
+
+    public int getRing() {
+        return mRing;
+    }
+
+    public int getParentZooms() {
+        return mParentZooms;
+    }
+
+    public int getChildZooms() {
+        return mChildZooms;
+    }
+
+}
@@ -17,39 +17,240 @@
  */
 package com.hotcoffee.staticmap.layers;
 
+import com.hotcoffee.staticmap.tiles.TileCache;
+import com.hotcoffee.staticmap.tiles.TileFreshness;
+import com.hotcoffee.staticmap.tiles.TileKey;
+import com.hotcoffee.staticmap.tiles.TileRateLimitException;
+import com.hotcoffee.staticmap.tiles.TileRateLimiter;
+
 import javax.imageio.ImageIO;
 
 import java.awt.*;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Layer fetching its tiles from a URL pattern, where <code>{x}</code>, <code>{y}</code> and
+ * <code>{z}</code> are replaced by the coordinates of the tile and <code>{s}</code> by a subdomain.
+ * <br/>
+ * When the layer has a {@link TileCache}, the HTTP validators and lifetime of each tile are kept
+ * with it. Stale tiles are still drawn, and revalidated in the background with a conditional
+ * request, so a tile that didn't change isn't downloaded again.
+ */
 public class TMSLayer extends TileLayer {
     private static final String[] SUBDOMAINS = new String[]{"a", "b", "c"};
     private static final Random RANDOM = new Random();
+    // Delay before retrying a tile whose revalidation failed, in milliseconds.
+    private static final long REVALIDATION_RETRY_DELAY = 60000;
 
+    private static final Set<TileKey> REVALIDATING = ConcurrentHashMap.newKeySet();
+    private static final ExecutorService REVALIDATOR = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "tile-revalidator");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // Freshness of the tiles fetched, until the cache stored them.
+    private final Map<TileKey, TileFreshness> mFetchedFreshness = new ConcurrentHashMap<>();
     protected String mPattern;
+    protected int mConnectTimeout = 10000;
+    protected int mReadTimeout = 30000;
 
     public TMSLayer(String pattern) {
         mPattern = pattern;
     }
 
+    /**
+     * Sets the timeouts of tile requests, in milliseconds. A tile not received in time is
+     * left blank. Default to 10 seconds to connect and 30 seconds to read.
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout) {
+        mConnectTimeout = connectTimeout;
+        mReadTimeout = readTimeout;
+    }
+
+    @Override
+    public String getSourceKey() {
+        return mPattern;
+    }
+
     @Override
     public Image getTile(int tileX, int tileY, int tileZ) {
         try {
-            String buildedUrl = buildURL(tileX, tileY, tileZ);
-            URL url = new URI(buildedUrl).toURL();
-            return ImageIO.read(url);
+            return requestTile(tileX, tileY, tileZ);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
+    }
+
+    /**
+     * Requests the specified tile. Returns <code>null</code> if the server doesn't have it, and
+     * throws an IOException if it couldn't be fetched, server errors included.
+     */
+    @Override
+    protected Image requestTile(int tileX, int tileY, int tileZ) throws IOException {
+        URLConnection connection = openConnection(buildURL(tileX, tileY, tileZ));
+        Image tile = readImage(connection);
+        if (tile != null && getTileCache() != null)
+            mFetchedFreshness.put(new TileKey(getSourceKey(), tileX, tileY, tileZ),
+                    TileFreshness.fromHeaders(connection::getHeaderField, System.currentTimeMillis(), null));
+        return tile;
+    }
+
+    @Override
+    protected void onFetchedTile(TileCache cache, TileKey key) {
+        TileFreshness freshness = mFetchedFreshness.remove(key);
+        if (freshness != null)
+            cache.setFreshness(key, freshness);
+    }
+
+    @Override
+    protected void onCachedTile(TileCache cache, TileKey key) {
+        TileFreshness freshness = cache.getFreshness(key);
+        if (freshness == null || !freshness.isStale(System.currentTimeMillis()) || !REVALIDATING.add(key))
+            return;
+
+        REVALIDATOR.execute(() -> {
+            try {
+                revalidate(cache, key, freshness);
+            } finally {
+                REVALIDATING.remove(key);
+            }
+        });
+    }
+
+    private void revalidate(TileCache cache, TileKey key, TileFreshness freshness) {
+        long now = System.currentTimeMillis();
+        try {
+            TileRateLimiter limiter = getRateLimiter();
+            if (limiter != null)
+                limiter.acquire(TileRateLimiter.Priority.BACKGROUND);
+
+            URLConnection connection = openConnection(buildURL(key.x(), key.y(), key.z()));
+            if (connection instanceof HttpURLConnection http) {
+                if (freshness.etag() != null)
+                    http.setRequestProperty("If-None-Match", freshness.etag());
+                if (freshness.lastModified() != null)
+                    http.setRequestProperty("If-Modified-Since", freshness.lastModified());
+                if (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    http.disconnect();
+                    cache.setFreshness(key, TileFreshness.fromHeaders(http::getHeaderField, now, freshness));
+                    return;
+                }
+            }
+
+            try (InputStream is = connection.getInputStream()) {
+                Image tile = ImageIO.read(is);
+                if (tile == null) {
+                    cache.setFreshness(key, freshness.expiringAt(now + REVALIDATION_RETRY_DELAY));
+                    return;
+                }
+                cache.put(key, TileCompositor.toIntPixels(tile));
+                cache.setFreshness(key, TileFreshness.fromHeaders(connection::getHeaderField, now, null));
+            }
+        } catch (TileRateLimitException e) {
+            // Tried again the next time the tile is drawn.
+        } catch (Exception e) {
+            // The stale tile is kept, and revalidated again later.
+            e.printStackTrace();
+            cache.setFreshness(key, freshness.expiringAt(now + REVALIDATION_RETRY_DELAY));
+        }
+    }
+
+    /**
+     * Downloads and decodes the image at the specified URL, with the timeouts of the layer.
+     * Returns <code>null</code> if it is not available.
+     */
+    protected Image fetchImage(String url) {
+        try {
+            return requestImage(url);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Downloads the content at the specified URL, with the timeouts of the layer. Returns
+     * <code>null</code> if it is not available.
+     */
+    protected byte[] fetchBytes(String url) {
+        try {
+            return requestBytes(url);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Same as {@link #fetchImage(String)}, returning <code>null</code> if the server doesn't have
+     * the image, and throwing an IOException if it couldn't be fetched.
+     */
+    protected Image requestImage(String url) throws IOException {
+        return readImage(openConnection(url));
+    }
+
+    /**
+     * Same as {@link #fetchBytes(String)}, returning <code>null</code> if the server doesn't have
+     * the content, and throwing an IOException if it couldn't be fetched.
+     */
+    protected byte[] requestBytes(String url) throws IOException {
+        try (InputStream is = openStream(openConnection(url))) {
+            return (is == null) ? null : is.readAllBytes();
+        }
+    }
+
+    private static Image readImage(URLConnection connection) throws IOException {
+        try (InputStream is = openStream(connection)) {
+            return (is == null) ? null : ImageIO.read(is);
+        }
+    }
+
+    /**
+     * Opens the content of a connection, or returns <code>null</code> if it doesn't exist: client
+     * errors, like 404, and missing files. Server errors throw an IOException.
+     */
+    private static InputStream openStream(URLConnection connection) throws IOException {
+        if (connection instanceof HttpURLConnection http) {
+            int code = http.getResponseCode();
+            if (code >= 500)
+                throw new IOException("Server error " + code + " for " + http.getURL());
+            if (code >= 400) {
+                http.disconnect();
+                return null;
+            }
+            return http.getInputStream();
+        }
+        try {
+            return connection.getInputStream();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
 
+    private URLConnection openConnection(String url) throws IOException {
+        URLConnection connection = URI.create(url).toURL().openConnection();
+        connection.setConnectTimeout(mConnectTimeout);
+        connection.setReadTimeout(mReadTimeout);
+        return connection;
     }
 
     protected String buildURL(int tileX, int tileY, int tileZ) {
         String pattern = mPattern;
-        int subDomainRandom = RANDOM.nextInt() * SUBDOMAINS.length;
+        int subDomainRandom = RANDOM.nextInt(SUBDOMAINS.length);
         pattern = pattern.replace("{s}", SUBDOMAINS[subDomainRandom]);
         pattern = pattern.replace("{x}", "" + tileX);
         pattern = pattern.replace("{y}", "" + tileY);
@@ -0,0 +1,205 @@
+package com.hotcoffee.staticmap.layers;
+
+import com.hotcoffee.staticmap.canvas.IntBufferDataBuffer;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Copies opaque, unscaled tiles straight into the pixels of the canvas, bypassing
+ * the Java2D compositing pipeline. Only used when the result is guaranteed to be
+ * identical to a <code>SRC_OVER</code> draw at full opacity.
+ */
+final class TileCompositor {
+
+    private static final int OPAQUE_ALPHA = 0xFF000000;
+
+    // Either the array of a heap canvas or the buffer of an off-heap one.
+    private final int[] mCanvasData;
+    private final IntBufferDataBuffer mCanvasBuffer;
+    private final int mCanvasOffset;
+    private final int mCanvasStride;
+    private final Rectangle mBounds;
+    private int[] mRow;
+
+    private TileCompositor(int[] canvasData, IntBufferDataBuffer canvasBuffer, int canvasOffset, int canvasStride,
+                           Rectangle bounds) {
+        mCanvasData = canvasData;
+        mCanvasBuffer = canvasBuffer;
+        mCanvasOffset = canvasOffset;
+        mCanvasStride = canvasStride;
+        mBounds = bounds;
+    }
+
+    /**
+     * Returns a compositor writing into the specified canvas, or <code>null</code> if the
+     * graphics state requires Java2D (transform, non rectangular clip, unsupported pixel layout).
+     */
+    static TileCompositor forCanvas(BufferedImage canvas, Graphics2D graphics) {
+        if (canvas == null || !graphics.getTransform().isIdentity())
+            return null;
+
+        Raster raster = canvas.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel))
+            return null;
+
+        int type = canvas.getType();
+        if (buffer instanceof DataBufferInt) {
+            if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_ARGB_PRE
+                    && type != BufferedImage.TYPE_INT_RGB)
+                return null;
+        } else if (!(buffer instanceof IntBufferDataBuffer)
+                || !ColorModel.getRGBdefault().equals(canvas.getColorModel())) {
+            return null;
+        }
+
+        Rectangle bounds = new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight());
+        Shape clip = graphics.getClip();
+        if (clip != null) {
+            if (!(clip instanceof Rectangle2D rectangle) || !rectangle.equals(clip.getBounds()))
+                return null;
+            bounds = bounds.intersection(clip.getBounds());
+        }
+
+        int offset = buffer.getOffset()
+                - raster.getSampleModelTranslateY() * sampleModel.getScanlineStride()
+                - raster.getSampleModelTranslateX();
+        if (buffer instanceof DataBufferInt intBuffer)
+            return new TileCompositor(intBuffer.getData(), null, offset, sampleModel.getScanlineStride(), bounds);
+        return new TileCompositor(null, (IntBufferDataBuffer) buffer, offset, sampleModel.getScanlineStride(), bounds);
+    }
+
+    /**
+     * Copies the tile at the specified position of the canvas. Returns <code>false</code>
+     * without touching the canvas if the tile must be drawn by Java2D instead.
+     */
+    boolean draw(Image tile, int x, int y, int tileSize) {
+        if (!(tile instanceof BufferedImage image)
+                || image.getWidth() != tileSize || image.getHeight() != tileSize)
+            return false;
+
+        Raster raster = image.getRaster();
+        if (raster.getDataBuffer() instanceof IntBufferDataBuffer buffer)
+            return drawOffHeap(image, buffer, x, y, tileSize);
+
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB)
+            return false;
+
+        if (!(raster.getDataBuffer() instanceof DataBufferInt buffer)
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel))
+            return false;
+
+        int[] tileData = buffer.getData();
+        int tileStride = sampleModel.getScanlineStride();
+        int tileOffset = buffer.getOffset()
+                - raster.getSampleModelTranslateY() * tileStride
+                - raster.getSampleModelTranslateX();
+
+        if (type == BufferedImage.TYPE_INT_ARGB && !isOpaque(tileData, tileOffset, tileStride, tileSize))
+            return false;
+
+        Rectangle target = mBounds.intersection(new Rectangle(x, y, tileSize, tileSize));
+        if (target.isEmpty())
+            return true;
+
+        boolean forceAlpha = type == BufferedImage.TYPE_INT_RGB;
+        for (int row = target.y; row < target.y + target.height; row++) {
+            int src = tileOffset + (row - y) * tileStride + (target.x - x);
+            int dst = mCanvasOffset + row * mCanvasStride + target.x;
+            if (mCanvasData != null) {
+                System.arraycopy(tileData, src, mCanvasData, dst, target.width);
+                if (forceAlpha) {
+                    for (int i = dst; i < dst + target.width; i++)
+                        mCanvasData[i] |= OPAQUE_ALPHA;
+                }
+            } else if (forceAlpha) {
+                if (mRow == null || mRow.length < target.width)
+                    mRow = new int[tileSize];
+                for (int i = 0; i < target.width; i++)
+                    mRow[i] = tileData[src + i] | OPAQUE_ALPHA;
+                mCanvasBuffer.setElems(dst, mRow, 0, target.width);
+            } else {
+                mCanvasBuffer.setElems(dst, tileData, src, target.width);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a tile whose pixels are stored off-heap, as made by {@link com.hotcoffee.staticmap.tiles.OffHeapTileCache}.
+     * Only opaque tiles, whose color model has no alpha, are copied: their pixels are stored with
+     * an opaque alpha, so they are copied as is.
+     */
+    private boolean drawOffHeap(BufferedImage image, IntBufferDataBuffer buffer, int x, int y, int tileSize) {
+        Raster raster = image.getRaster();
+        if (image.getColorModel().hasAlpha()
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel))
+            return false;
+
+        int tileStride = sampleModel.getScanlineStride();
+        int tileOffset = buffer.getOffset()
+                - raster.getSampleModelTranslateY() * tileStride
+                - raster.getSampleModelTranslateX();
+
+        Rectangle target = mBounds.intersection(new Rectangle(x, y, tileSize, tileSize));
+        if (target.isEmpty())
+            return true;
+
+        for (int row = target.y; row < target.y + target.height; row++) {
+            int src = tileOffset + (row - y) * tileStride + (target.x - x);
+            int dst = mCanvasOffset + row * mCanvasStride + target.x;
+            if (mCanvasData != null) {
+                buffer.getElems(src, mCanvasData, dst, target.width);
+            } else {
+                if (mRow == null || mRow.length < target.width)
+                    mRow = new int[tileSize];
+                buffer.getElems(src, mRow, 0, target.width);
+                mCanvasBuffer.setElems(dst, mRow, 0, target.width);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tile with its pixels stored as packed integers, the layout {@link #draw(Image, int, int, int)}
+     * copies directly. Returns the tile itself if it already is.
+     */
+    static Image toIntPixels(Image tile) {
+        if (!(tile instanceof BufferedImage image))
+            return tile;
+
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+            return tile;
+
+        int targetType = image.getTransparency() == Transparency.OPAQUE
+                ? BufferedImage.TYPE_INT_RGB
+                : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), targetType);
+        Graphics2D graphics = converted.createGraphics();
+        graphics.setComposite(AlphaComposite.Src);
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+        return converted;
+    }
+
+    private static boolean isOpaque(int[] data, int offset, int stride, int size) {
+        for (int row = 0; row < size; row++) {
+            int start = offset + row * stride;
+            for (int i = start; i < start + size; i++) {
+                if ((data[i] & OPAQUE_ALPHA) != OPAQUE_ALPHA)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+}
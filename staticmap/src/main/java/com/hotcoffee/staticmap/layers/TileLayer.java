@@ -22,10 +22,23 @@ import com.hotcoffee.staticmap.geo.Location;
 import com.hotcoffee.staticmap.geo.PointF;
 import com.hotcoffee.staticmap.geo.Tile;
 import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
+import com.hotcoffee.staticmap.tiles.ScopedTileCache;
+import com.hotcoffee.staticmap.tiles.TileCache;
+import com.hotcoffee.staticmap.tiles.TileHandle;
+import com.hotcoffee.staticmap.tiles.TileKey;
+import com.hotcoffee.staticmap.tiles.TileRateLimiter;
 
 import java.awt.*;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.IntStream;
 
 /**
@@ -33,7 +46,20 @@ import java.util.stream.IntStream;
  */
 public abstract class TileLayer implements Layer {
 
+	// Highest zoom level whose tile coordinates fit in an int.
+	private static final int MAX_ZOOM = 30;
+
+	private static final Set<TileKey> PREFETCHING = ConcurrentHashMap.newKeySet();
+	private static final ExecutorService PREFETCHER = Executors.newFixedThreadPool(4, runnable -> {
+		Thread thread = new Thread(runnable, "tile-prefetcher");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
 	private float mOpacity = 1.0f;
+	private TileCache mTileCache;
+	private TileRateLimiter mRateLimiter;
 
 	public static double longitudeFromTile(int x, int z) {
 		return (x / Math.pow(2, z) * 360 - 180);
@@ -65,67 +91,408 @@ public abstract class TileLayer implements Layer {
 		mOpacity = opacity;
 	}
 
+	/**
+	 * Returns the cache holding the tiles of this layer, or <code>null</code> if tiles are
+	 * fetched at each draw.
+	 */
+	public TileCache getTileCache() {
+		return mTileCache;
+	}
+
+	/**
+	 * Sets the cache holding the tiles of this layer. A cache can be shared by several layers;
+	 * tiles are identified by {@link #getSourceKey()}.
+	 */
+	public void setTileCache(TileCache tileCache) {
+		mTileCache = tileCache;
+	}
+
+	/**
+	 * Returns the cache the tiles of this layer are read and written through while drawing the
+	 * specified map: the cache of the layer, behind the {@link StaticMap#getTileScope() tile scope}
+	 * of the map when it has one. Layers are shared by concurrent draws, so the scope of a draw
+	 * belongs to the map drawn, never to the layer.
+	 */
+	public TileCache getTileCache(StaticMap mp) {
+		ScopedTileCache scope = mp.getTileScope();
+		return (scope == null) ? mTileCache : scope.over(mTileCache);
+	}
+
+	/**
+	 * Returns the limiter of the tile requests of this layer, or <code>null</code> if they are
+	 * not limited.
+	 */
+	public TileRateLimiter getRateLimiter() {
+		return mRateLimiter;
+	}
+
+	/**
+	 * Sets the limiter of the tile requests of this layer. Layers requesting tiles from the same
+	 * provider should share the limiter returned by {@link TileRateLimiter#forProvider(String, double, int)}.
+	 * Tiles found in the cache don't count against the limit.
+	 */
+	public void setRateLimiter(TileRateLimiter rateLimiter) {
+		mRateLimiter = rateLimiter;
+	}
+
+	/**
+	 * Returns a key identifying the source of the tiles of this layer. Layers serving the
+	 * same tiles must return the same key, so they can share cached tiles. Defaults to a key
+	 * unique to this layer.
+	 */
+	public String getSourceKey() {
+		return getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(this));
+	}
+
 	public abstract Image getTile(int tileX, int tileY, int tileZ);
 
-	@Override
-	public void draw(Graphics2D graphics, StaticMap mp) {
-		// Apply opacity
-		float alpha = getOpacity();
-		AlphaComposite composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha);
-		graphics.setComposite(composite);
+	/**
+	 * Returns the size, in pixels, of the tiles of this layer drawn on the specified map.
+	 * Defaults to the tile size of the projection.
+	 */
+	public int getTileSize(StaticMap mp) {
+		return mp.getProjection().getTileSize();
+	}
+
+	/**
+	 * Returns the specified tile from the cache, or fetches it with {@link #getTile(int, int, int)}
+	 * and stores it into the cache. Returns <code>null</code> if the tile is not available.
+	 *
+	 * @throws com.hotcoffee.staticmap.tiles.TileRateLimitException if the tile must be fetched
+	 *                                                              but the rate limiter refuses it.
+	 */
+	public Image loadTile(int tileX, int tileY, int tileZ) {
+		return loadTile(tileX, tileY, tileZ, TileRateLimiter.Priority.INTERACTIVE);
+	}
+
+	/**
+	 * Same as {@link #loadTile(int, int, int)}, fetching the tile with the specified priority
+	 * when the layer has a rate limiter. The returned image stays valid once evicted from the
+	 * cache: caches whose images are released with their handle, like
+	 * {@link com.hotcoffee.staticmap.tiles.OffHeapTileCache}, return a copy.
+	 */
+	public Image loadTile(int tileX, int tileY, int tileZ, TileRateLimiter.Priority priority) {
+		TileCache cache = mTileCache;
+		if (cache == null)
+			return fetchTile(tileX, tileY, tileZ, priority);
+
+		TileKey key = new TileKey(getSourceKey(), tileX, tileY, tileZ);
+		Image tile = cache.get(key);
+		if (tile != null) {
+			onCachedTile(cache, key);
+			return tile;
+		}
+
+		tile = fetchTile(tileX, tileY, tileZ, priority);
+		if (tile == null)
+			return null;
+		// Cached tiles are drawn many times: store them in a layout the direct copy handles.
+		tile = TileCompositor.toIntPixels(tile);
+		try (TileHandle handle = cache.acquireOrPut(key, tile)) {
+			onFetchedTile(cache, key);
+			// Share the tile cached meanwhile by a concurrent load, through an image that outlives the handle.
+			return (handle.getTile() == tile) ? tile : cache.get(key);
+		}
+	}
 
+	/**
+	 * Same as {@link #loadTile(int, int, int, TileRateLimiter.Priority)}, returning a handle that
+	 * keeps the tile in the cache until it is closed. Returns <code>null</code> if the tile is not
+	 * available.
+	 */
+	public TileHandle acquireTile(int tileX, int tileY, int tileZ, TileRateLimiter.Priority priority) {
+		return acquireTile(mTileCache, tileX, tileY, tileZ, priority);
+	}
+
+	/**
+	 * Same as {@link #acquireTile(int, int, int, TileRateLimiter.Priority)}, through the cache
+	 * used to draw the specified map, as returned by {@link #getTileCache(StaticMap)}.
+	 */
+	public TileHandle acquireTile(StaticMap mp, int tileX, int tileY, int tileZ, TileRateLimiter.Priority priority) {
+		return acquireTile(getTileCache(mp), tileX, tileY, tileZ, priority);
+	}
+
+	private TileHandle acquireTile(TileCache cache, int tileX, int tileY, int tileZ, TileRateLimiter.Priority priority) {
+		if (cache == null) {
+			Image tile = fetchTile(tileX, tileY, tileZ, priority);
+			return (tile == null) ? null : new TileHandle(tile, null);
+		}
+
+		TileKey key = new TileKey(getSourceKey(), tileX, tileY, tileZ);
+		TileHandle handle = cache.acquire(key);
+		if (handle != null) {
+			onCachedTile(cache, key);
+			return handle;
+		}
+
+		Image tile = fetchTile(tileX, tileY, tileZ, priority);
+		if (tile == null)
+			return null;
+		// Cached tiles are drawn many times: store them in a layout the direct copy handles.
+		handle = cache.acquireOrPut(key, TileCompositor.toIntPixels(tile));
+		onFetchedTile(cache, key);
+		return handle;
+	}
+
+	/**
+	 * Called when a tile is taken from the cache, before it is drawn. Does nothing by default;
+	 * layers able to revalidate their tiles may refresh stale ones, without blocking the draw.
+	 */
+	protected void onCachedTile(TileCache cache, TileKey key) {
+	}
+
+	/**
+	 * Called once a tile fetched by {@link #getTile(int, int, int)} was offered to the cache,
+	 * which may have rejected it. Does nothing by default; layers may store what they learnt
+	 * about the tile while fetching it.
+	 */
+	protected void onFetchedTile(TileCache cache, TileKey key) {
+	}
+
+	/**
+	 * Same as {@link #getTile(int, int, int)}, telling a tile that doesn't exist from one that
+	 * couldn't be fetched: the former is <code>null</code>, the latter throws an IOException.
+	 * Defaults to {@link #getTile(int, int, int)}, a missing tile being reported as a failure.
+	 */
+	protected Image requestTile(int tileX, int tileY, int tileZ) throws IOException {
+		Image tile = getTile(tileX, tileY, tileZ);
+		if (tile == null)
+			throw new IOException("Tile " + tileZ + "/" + tileX + "/" + tileY + " not available");
+		return tile;
+	}
+
+	private Image fetchTile(int tileX, int tileY, int tileZ, TileRateLimiter.Priority priority) {
+		TileRateLimiter limiter = mRateLimiter;
+		if (limiter != null)
+			limiter.acquire(priority);
+		return getTile(tileX, tileY, tileZ);
+	}
+
+	/**
+	 * Fetches into the cache of the layer, in the background, the tiles the next renders of the
+	 * specified map are expected to need. Tiles are fetched at background priority, nearest
+	 * first, and tiles already cached or being prefetched are skipped. Does nothing if the layer
+	 * has no cache.
+	 *
+	 * @return a future completed once every tile is cached or failed to be fetched.
+	 */
+	public CompletableFuture<Void> prefetch(StaticMap mp, PrefetchHint hint) {
+		return prefetch(mp, getPrefetchTiles(mp, hint));
+	}
+
+	/**
+	 * Fetches the specified tiles into the cache of the layer, in the background, like
+	 * {@link #prefetch(StaticMap, PrefetchHint)}. Suited to access patterns known in advance,
+	 * like the frames of an animation along a route.
+	 */
+	public CompletableFuture<Void> prefetch(Collection<Tile> tiles) {
+		return prefetch(mTileCache, tiles);
+	}
+
+	/**
+	 * Same as {@link #prefetch(Collection)}, through the cache used to draw the specified map,
+	 * as returned by {@link #getTileCache(StaticMap)}.
+	 */
+	public CompletableFuture<Void> prefetch(StaticMap mp, Collection<Tile> tiles) {
+		return prefetch(getTileCache(mp), tiles);
+	}
+
+	private CompletableFuture<Void> prefetch(TileCache cache, Collection<Tile> tiles) {
+		if (cache == null)
+			return CompletableFuture.completedFuture(null);
+
+		String source = getSourceKey();
+		List<CompletableFuture<Void>> fetches = new ArrayList<>();
+		for (Tile tile : tiles) {
+			TileKey key = new TileKey(source, tile.x(), tile.y(), tile.z());
+			if (!PREFETCHING.add(key))
+				continue;
+
+			fetches.add(CompletableFuture.runAsync(() -> {
+				try {
+					// Cached tiles are left alone: neither copied out of the cache nor revalidated.
+					TileHandle handle = cache.acquire(key);
+					if (handle == null)
+						handle = acquireTile(cache, tile.x(), tile.y(), tile.z(), TileRateLimiter.Priority.BACKGROUND);
+					if (handle != null)
+						handle.close();
+				} catch (RuntimeException e) {
+					// Tiles refused by the rate limiter are fetched when drawn.
+				} finally {
+					PREFETCHING.remove(key);
+				}
+			}, PREFETCHER));
+		}
+		return CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/**
+	 * Returns the tiles {@link #prefetch(StaticMap, PrefetchHint)} fetches for the specified map,
+	 * nearest first: the tiles of the map, its rings of neighbours, then the tiles covering the
+	 * map at lower and higher zoom levels.
+	 */
+	public List<Tile> getPrefetchTiles(StaticMap mp, PrefetchHint hint) {
+		List<Tile> grid = getTiles(mp, mp.computeOffset(new CenterOffset(0, 0)));
+		if (grid.isEmpty())
+			return grid;
+
+		int tileZ = grid.get(0).z();
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (Tile tile : grid) {
+			minX = Math.min(minX, tile.x());
+			minY = Math.min(minY, tile.y());
+			maxX = Math.max(maxX, tile.x());
+			maxY = Math.max(maxY, tile.y());
+		}
+
+		Set<Tile> tiles = new LinkedHashSet<>(grid);
+		for (int ring = 1; ring <= hint.getRing(); ring++) {
+			for (int y = minY - ring; y <= maxY + ring; y++) {
+				for (int x = minX - ring; x <= maxX + ring; x++) {
+					boolean onRing = x == minX - ring || x == maxX + ring || y == minY - ring || y == maxY + ring;
+					if (onRing)
+						addTile(tiles, x, y, tileZ);
+				}
+			}
+		}
+
+		for (int k = 1; k <= hint.getParentZooms() && tileZ - k >= 0; k++) {
+			for (int y = minY >> k; y <= maxY >> k; y++) {
+				for (int x = minX >> k; x <= maxX >> k; x++)
+					addTile(tiles, x, y, tileZ - k);
+			}
+		}
+
+		for (int k = 1; k <= hint.getChildZooms() && tileZ + k <= MAX_ZOOM; k++) {
+			for (int y = minY << k; y < (maxY + 1) << k; y++) {
+				for (int x = minX << k; x < (maxX + 1) << k; x++)
+					addTile(tiles, x, y, tileZ + k);
+			}
+		}
+		return new ArrayList<>(tiles);
+	}
+
+	/**
+	 * Returns the number of tiles of this layer along each side of the world at the specified
+	 * zoom level. Defaults to <code>2^zoom</code>; layers whose tiles cover several tiles of the
+	 * projection, like metatiles, have fewer.
+	 */
+	protected int getGridSize(int tileZ) {
+		return 1 << tileZ;
+	}
+
+	private void addTile(Set<Tile> tiles, int x, int y, int z) {
+		int count = getGridSize(z);
+		if (x >= 0 && y >= 0 && x < count && y < count)
+			tiles.add(new Tile(x, y, z));
+	}
+
+	/**
+	 * Returns the tiles covering the specified map when drawn with the specified offset.
+	 */
+	public List<Tile> getTiles(StaticMap mp, PointF offset) {
 		MercatorProjection proj = mp.getProjection();
-		int tileSize = proj.getTileSize();
 		int tileZ = mp.getZoom();
 
 		// Get the top left point.
-		PointF topLeftPixels = new PointF(0 + mp.getOffset().x(),
-		                                  0 + mp.getOffset().y());
-		Location topLeftLocation = proj.project(topLeftPixels, mp.getZoom());
+		PointF topLeftPixels = new PointF(0 + offset.x(),
+		                                  0 + offset.y());
+		Location topLeftLocation = proj.project(topLeftPixels, tileZ);
 		Tile topLeftTile = new Tile(
-				tileXFromLongitude(topLeftLocation.mLongitude(), mp.getZoom()),
-				tileYFromLatitude(topLeftLocation.mLatitude(), mp.getZoom()),
-				mp.getZoom());
+				tileXFromLongitude(topLeftLocation.mLongitude(), tileZ),
+				tileYFromLatitude(topLeftLocation.mLatitude(), tileZ),
+				tileZ);
 
 		// Get the bottom right point.
-		PointF bottomRightPixels = new PointF(mp.getWidth() + mp.getOffset().x(),
-		                                      mp.getHeight() + mp.getOffset().y());
-		Location bottomRightLocation = proj.project(bottomRightPixels, mp.getZoom());
+		PointF bottomRightPixels = new PointF(mp.getWidth() + offset.x(),
+		                                      mp.getHeight() + offset.y());
+		Location bottomRightLocation = proj.project(bottomRightPixels, tileZ);
 		Tile bottomRightTile = new Tile(
-				tileXFromLongitude(bottomRightLocation.mLongitude(), mp.getZoom()),
-				tileYFromLatitude(bottomRightLocation.mLatitude(), mp.getZoom()),
-				mp.getZoom());
-
-		// Get the top left corner or the top left tile before looping.
-		double topLeftCornerLat = latitudeFromTile(topLeftTile.y(), mp.getZoom());
-		double topLeftCornerLon = longitudeFromTile(topLeftTile.x(), mp.getZoom());
-		Location topLeftLoc = new Location(topLeftCornerLat, topLeftCornerLon);
-		PointF topLeftCorner = proj.unproject(topLeftLoc, mp.getZoom());
-		List<TileResult> tiles = new ArrayList<>();
-		IntStream.rangeClosed(topLeftTile.y(), bottomRightTile.y()).parallel()
-		         .forEach(y -> IntStream.rangeClosed(topLeftTile.x(), bottomRightTile.x())
-		                                .forEach(x -> tiles.add(new TileResult(x, y, getTile(x, y, tileZ)))));
+				tileXFromLongitude(bottomRightLocation.mLongitude(), tileZ),
+				tileYFromLatitude(bottomRightLocation.mLatitude(), tileZ),
+				tileZ);
+
+		return IntStream.rangeClosed(topLeftTile.y(), bottomRightTile.y())
+		                .boxed()
+		                .flatMap(y -> IntStream.rangeClosed(topLeftTile.x(), bottomRightTile.x())
+		                                       .mapToObj(x -> new Tile(x, y, tileZ)))
+		                .toList();
+	}
+
+	@Override
+	public void draw(Graphics2D graphics, StaticMap mp) {
+		// Apply opacity
+		float alpha = getOpacity();
+		AlphaComposite composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha);
+		graphics.setComposite(composite);
+
+		int tileSize = getTileSize(mp);
+		TileCache cache = getTileCache(mp);
+		List<Tile> visible = getTiles(mp, mp.getOffset());
+		TileHandle[] handles = new TileHandle[visible.size()];
+		try {
+			// Every tile is acquired, even when one fails, so none is left held once the draw ends.
+			RuntimeException[] failure = new RuntimeException[1];
+			IntStream.range(0, handles.length).parallel().forEach(i -> {
+				Tile t = visible.get(i);
+				try {
+					handles[i] = acquireTile(cache, t.x(), t.y(), t.z(), TileRateLimiter.Priority.INTERACTIVE);
+				} catch (RuntimeException e) {
+					synchronized (failure) {
+						failure[0] = e;
+					}
+				}
+			});
+			if (failure[0] != null)
+				throw failure[0];
+
+			List<TileResult> tiles = IntStream.range(0, handles.length)
+					.mapToObj(i -> new TileResult(visible.get(i).x(), visible.get(i).y(),
+							(handles[i] == null) ? null : handles[i].getTile()))
+					.toList();
+			drawTiles(graphics, mp, tiles, tileSize, alpha);
+		} finally {
+			for (TileHandle handle : handles) {
+				if (handle != null)
+					handle.close();
+			}
+		}
+
+		// Reset composite.
+		composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f);
+		graphics.setComposite(composite);
+	}
+
+	private static void drawTiles(Graphics2D graphics, StaticMap mp, List<TileResult> tiles, int tileSize, float alpha) {
+		// Opaque tiles drawn at full opacity can be copied straight into the canvas.
+		TileCompositor compositor = alpha >= 1f ? TileCompositor.forCanvas(mp.getCanvas(), graphics) : null;
 
 		tiles.forEach(tile -> {
-			// Get the "true" pos.
-			PointF truePos = new PointF(topLeftCorner.x() + (tileSize * tile.x()),
-			                            topLeftCorner.y() + (tileSize * tile.y()));
+			if (tile.tile() == null)
+				return;
+
+			// Get the "true" pos. Tile corners fall on whole multiples of the tile size.
+			PointF truePos = new PointF((double) tileSize * tile.x(),
+			                            (double) tileSize * tile.y());
 
 			// Get the pos.
 			PointF tilePos = new PointF(truePos.x() - mp.getOffset().x(),
 			                            truePos.y() - mp.getOffset().y());
 
-			// Draw the tile.
+			// Draw the tile. Round down so views shifted by whole pixels place it identically.
+			int x = (int) Math.floor(tilePos.x());
+			int y = (int) Math.floor(tilePos.y());
+			if (compositor != null && compositor.draw(tile.tile(), x, y, tileSize))
+				return;
+
 			graphics.drawImage(tile.tile(),
-			                   (int) tilePos.x(),
-			                   (int) tilePos.y(),
+			                   x,
+			                   y,
 			                   tileSize,
 			                   tileSize,
 			                   null);
 		});
-		// Reset composite.
-		composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f);
-		graphics.setComposite(composite);
 	}
 
 }
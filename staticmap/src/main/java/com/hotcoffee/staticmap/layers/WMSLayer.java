@@ -18,24 +18,34 @@
 package com.hotcoffee.staticmap.layers;
 
 import com.hotcoffee.staticmap.StaticMap;
-import com.hotcoffee.staticmap.geo.Location;
 import com.hotcoffee.staticmap.geo.LocationBounds;
 import com.hotcoffee.staticmap.geo.PointF;
+import com.hotcoffee.staticmap.geo.Tile;
 import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
 
 import java.awt.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * @author Christophe
  */
 public class WMSLayer extends TMSLayer {
+    // Half the width of the world in EPSG:3857, in metres.
+    private static final double MERCATOR_HALF_WIDTH = 20037508.342789244;
+    // Pixels along each side of a tile, in the grid of every map.
+    private static final int TILE_SIZE = new MercatorProjection().getTileSize();
+
     protected int mMaxZoom = 11;
     protected float mOpacity = 1.0f;
     protected String mHost;
     protected String[] mLayers;
     protected String mFilter;
     private final int mMinZoom = 4;
-    private StaticMap mMapPicture;
+    private int mMetaTileSize = 1;
 
     public WMSLayer(String host, String[] layers) {
         super(host);
@@ -48,10 +58,79 @@ public class WMSLayer extends TMSLayer {
         mLayers = layers;
     }
 
+    /**
+     * Returns the number of tiles along each side of the images requested to the server.
+     */
+    public int getMetaTileSize() {
+        return mMetaTileSize;
+    }
+
+    /**
+     * Requests images covering <code>size</code> by <code>size</code> tiles, called metatiles,
+     * instead of one image per tile. Metatiles are aligned on multiples of their size, so they are
+     * cached and shared between maps like tiles are; a size covering the map makes a single
+     * request per map, or a few when the map crosses the edges of metatiles. Defaults to 1.
+     */
+    public void setMetaTileSize(int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("Invalid metatile size " + size);
+        mMetaTileSize = size;
+    }
+
+    @Override
+    public String getSourceKey() {
+        return mHost + "?Layers=" + String.join(",", mLayers) + ((mFilter == null) ? "" : "&cql_Filter=" + mFilter)
+                + ((mMetaTileSize == 1) ? "" : "#metatile=" + mMetaTileSize);
+    }
+
+    @Override
+    public int getTileSize(StaticMap mp) {
+        return super.getTileSize(mp) * mMetaTileSize;
+    }
+
+    @Override
+    protected int getGridSize(int tileZ) {
+        int size = mMetaTileSize;
+        return ((1 << tileZ) + size - 1) / size;
+    }
+
+    /**
+     * Returns the metatiles covering the specified map, see {@link #setMetaTileSize(int)}.
+     */
+    @Override
+    public List<Tile> getTiles(StaticMap mp, PointF offset) {
+        int size = mMetaTileSize;
+        List<Tile> tiles = super.getTiles(mp, offset);
+        if (size == 1)
+            return tiles;
+
+        Set<Tile> metaTiles = new LinkedHashSet<>();
+        for (Tile tile : tiles)
+            metaTiles.add(new Tile(Math.floorDiv(tile.x(), size), Math.floorDiv(tile.y(), size), tile.z()));
+        return List.copyOf(metaTiles);
+    }
+
+    /**
+     * Requests the specified metatile, see {@link #setMetaTileSize(int)}.
+     */
+    @Override
+    protected Image requestTile(int tileX, int tileY, int tileZ) throws IOException {
+        int size = mMetaTileSize;
+        return requestImage(buildURL(tileX * size, tileY * size, tileZ, size));
+    }
+
     @Override
     protected String buildURL(int tileX, int tileY, int tileZ) {
+        return buildURL(tileX, tileY, tileZ, 1);
+    }
 
-        MercatorProjection proj = mMapPicture.getProjection();
+    /**
+     * Builds the URL of the image covering <code>tiles</code> by <code>tiles</code> tiles from
+     * the specified one. Images covering several tiles are requested in EPSG:3857, the projection
+     * of the tiles: an EPSG:4326 image stretches latitudes linearly, which shifts the inner tiles
+     * of a metatile.
+     */
+    protected String buildURL(int tileX, int tileY, int tileZ, int tiles) {
 
         StringBuilder pattern = new StringBuilder();
         pattern.append(mHost);
@@ -62,26 +141,28 @@ public class WMSLayer extends TMSLayer {
                 pattern.append(",");
         }
 
-        // Compute locations corners.
-        double lat = latitudeFromTile(tileY, tileZ);
-        double lon = longitudeFromTile(tileX, tileZ);
-        Location topLeftLocation = new Location(lat, lon);
-
-        PointF topLeftCorner = proj.unproject(topLeftLocation, tileZ);
-        PointF bottomRightCorner = new PointF(topLeftCorner.x() + proj.getTileSize(),
-                topLeftCorner.y() + proj.getTileSize());
-        Location bottomRightLocation = proj.project(bottomRightCorner, tileZ);
-
+        // Compute locations corners, from the edges of the tiles in the grid.
         LocationBounds bounds = new LocationBounds(
-                topLeftLocation.mLongitude(),
-                bottomRightLocation.mLongitude(),
-                topLeftLocation.mLatitude(),
-                bottomRightLocation.mLatitude());
-
-        pattern.append("&Styles=&SRS=EPSG:4326");
-        pattern.append("&BBOX=").append(bounds.xmin).append(",").append(bounds.ymax).append(",").append(bounds.xmax).append(",").append(bounds.ymin);
-        pattern.append("&width=").append(proj.getTileSize());
-        pattern.append("&height=").append(proj.getTileSize());
+                longitudeFromTile(tileX, tileZ),
+                longitudeFromTile(tileX + tiles, tileZ),
+                latitudeFromTile(tileY, tileZ),
+                latitudeFromTile(tileY + tiles, tileZ));
+        int size = TILE_SIZE * tiles;
+
+        if (tiles == 1) {
+            pattern.append("&Styles=&SRS=EPSG:4326");
+            pattern.append("&BBOX=").append(bounds.xmin).append(",").append(bounds.ymax).append(",").append(bounds.xmax).append(",").append(bounds.ymin);
+        } else {
+            // Web Mercator metres of the edges of the tiles.
+            double tileMetres = 2 * MERCATOR_HALF_WIDTH / (1 << tileZ);
+            pattern.append("&Styles=&SRS=EPSG:3857");
+            pattern.append("&BBOX=").append(formatMetres(tileX * tileMetres - MERCATOR_HALF_WIDTH))
+                   .append(",").append(formatMetres(MERCATOR_HALF_WIDTH - (tileY + tiles) * tileMetres))
+                   .append(",").append(formatMetres((tileX + tiles) * tileMetres - MERCATOR_HALF_WIDTH))
+                   .append(",").append(formatMetres(MERCATOR_HALF_WIDTH - tileY * tileMetres));
+        }
+        pattern.append("&width=").append(size);
+        pattern.append("&height=").append(size);
         pattern.append("&format=image/png");
         pattern.append("&TRANSPARENT=" + "TRUE");
         pattern.append((mFilter == null) ? "" : "&cql_Filter=" + mFilter);
@@ -90,12 +171,9 @@ public class WMSLayer extends TMSLayer {
 
     }
 
-    @Override
-    public void draw(Graphics2D graphics, StaticMap mp) {
-        mMapPicture = mp;
-        super.draw(graphics, mp);
-
+    // Millions of metres would be written in scientific notation by Double.toString.
+    private static String formatMetres(double metres) {
+        return BigDecimal.valueOf(metres).toPlainString();
     }
 
-
 }
@@ -0,0 +1,142 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+/**
+ * Clipping of projected geometries against an axis-aligned rectangle, so Java2D only
+ * rasterises what can be visible.
+ */
+final class Clipping {
+
+    private Clipping() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Appends the parts of a polyline lying inside of the rectangle to the path. Each visible
+     * run of the polyline starts a new sub-path; segments fully outside are dropped.
+     */
+    static void appendPolyline(Path2D.Double path, double[] x, double[] y, int count,
+                               double minX, double minY, double maxX, double maxY) {
+        boolean penDown = false;
+        double[] segment = new double[4];
+        for (int i = 1; i < count; i++) {
+            segment[0] = x[i - 1];
+            segment[1] = y[i - 1];
+            segment[2] = x[i];
+            segment[3] = y[i];
+            if (!clipSegment(segment, minX, minY, maxX, maxY)) {
+                penDown = false;
+                continue;
+            }
+
+            // The segment continues the current run only if its start wasn't clipped.
+            if (!penDown || segment[0] != x[i - 1] || segment[1] != y[i - 1])
+                path.moveTo(segment[0], segment[1]);
+            path.lineTo(segment[2], segment[3]);
+
+            // Following segments continue the run only if this one wasn't clipped at its end.
+            penDown = segment[2] == x[i] && segment[3] == y[i];
+        }
+    }
+
+    /**
+     * Clips the segment <code>x0, y0, x1, y1</code> in place with the Liang-Barsky algorithm.
+     * Returns false if no part of it is inside of the rectangle.
+     */
+    static boolean clipSegment(double[] segment, double minX, double minY, double maxX, double maxY) {
+        double x0 = segment[0];
+        double y0 = segment[1];
+        double dx = segment[2] - x0;
+        double dy = segment[3] - y0;
+        double[] t = {0, 1};
+
+        if (!clipTest(-dx, x0 - minX, t) || !clipTest(dx, maxX - x0, t)
+                || !clipTest(-dy, y0 - minY, t) || !clipTest(dy, maxY - y0, t))
+            return false;
+
+        if (t[1] < 1) {
+            segment[2] = x0 + t[1] * dx;
+            segment[3] = y0 + t[1] * dy;
+        }
+        if (t[0] > 0) {
+            segment[0] = x0 + t[0] * dx;
+            segment[1] = y0 + t[0] * dy;
+        }
+        return true;
+    }
+
+    private static boolean clipTest(double p, double q, double[] t) {
+        if (p == 0)
+            return q >= 0;
+
+        double r = q / p;
+        if (p < 0) {
+            if (r > t[1])
+                return false;
+            if (r > t[0])
+                t[0] = r;
+        } else {
+            if (r < t[0])
+                return false;
+            if (r < t[1])
+                t[1] = r;
+        }
+        return true;
+    }
+
+    /**
+     * Clips a closed ring with the Sutherland-Hodgman algorithm. Returns the clipped ring as
+     * interleaved x, y coordinates, the number of points being <code>length / 2</code>.
+     */
+    static double[] clipRing(double[] x, double[] y, int count,
+                             double minX, double minY, double maxX, double maxY) {
+        double[] ring = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            ring[i * 2] = x[i];
+            ring[i * 2 + 1] = y[i];
+        }
+
+        ring = clipEdge(ring, 0, minX, false);
+        ring = clipEdge(ring, 0, maxX, true);
+        ring = clipEdge(ring, 1, minY, false);
+        ring = clipEdge(ring, 1, maxY, true);
+        return ring;
+    }
+
+    /**
+     * Keeps the part of the ring on the inner side of the line <code>coordinate = limit</code>,
+     * where <code>axis</code> is 0 for x and 1 for y.
+     */
+    private static double[] clipEdge(double[] ring, int axis, double limit, boolean keepBelow) {
+        int count = ring.length / 2;
+        if (count == 0)
+            return ring;
+
+        double[] result = new double[count * 4];
+        int size = 0;
+        int previous = count - 1;
+        boolean previousInside = inside(ring[previous * 2 + axis], limit, keepBelow);
+        for (int i = 0; i < count; i++) {
+            boolean currentInside = inside(ring[i * 2 + axis], limit, keepBelow);
+            if (currentInside != previousInside) {
+                double t = (limit - ring[previous * 2 + axis]) / (ring[i * 2 + axis] - ring[previous * 2 + axis]);
+                result[size++] = ring[previous * 2] + t * (ring[i * 2] - ring[previous * 2]);
+                result[size++] = ring[previous * 2 + 1] + t * (ring[i * 2 + 1] - ring[previous * 2 + 1]);
+            }
+            if (currentInside) {
+                result[size++] = ring[i * 2];
+                result[size++] = ring[i * 2 + 1];
+            }
+            previous = i;
+            previousInside = currentInside;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static boolean inside(double value, double limit, boolean keepBelow) {
+        return keepBelow ? value <= limit : value >= limit;
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import java.awt.*;
+
+/**
+ * Maps values to colors interpolated between evenly spaced colors. Values are grouped in a fixed
+ * number of buckets sharing the same color, so features of the same bucket can be drawn together.
+ */
+public class ColorRamp {
+    public static final int DEFAULT_BUCKET_COUNT = 32;
+
+    private final double mMin;
+    private final double mMax;
+    private final Color[] mBuckets;
+
+    /**
+     * Creates a ramp going through the specified colors from <code>min</code> to <code>max</code>,
+     * with {@link #DEFAULT_BUCKET_COUNT} buckets.
+     */
+    public ColorRamp(double min, double max, Color... colors) {
+        this(min, max, DEFAULT_BUCKET_COUNT, colors);
+    }
+
+    public ColorRamp(double min, double max, int bucketCount, Color... colors) {
+        if (colors.length == 0)
+            throw new IllegalArgumentException("A color ramp needs at least one color");
+        if (bucketCount < 1)
+            throw new IllegalArgumentException("Invalid bucket count " + bucketCount);
+        if (!(min <= max))
+            throw new IllegalArgumentException("Invalid range " + min + "-" + max);
+
+        mMin = min;
+        mMax = max;
+        mBuckets = new Color[bucketCount];
+        for (int b = 0; b < bucketCount; b++) {
+            // Color at the middle of the bucket, between the two surrounding colors.
+            double position = (b + 0.5) / bucketCount * (colors.length - 1);
+            int from = Math.min((int) position, colors.length - 1);
+            int to = Math.min(from + 1, colors.length - 1);
+            mBuckets[b] = interpolate(colors[from], colors[to], position - from);
+        }
+    }
+
+    public double getMin() {
+        return mMin;
+    }
+
+    public double getMax() {
+        return mMax;
+    }
+
+    public int getBucketCount() {
+        return mBuckets.length;
+    }
+
+    /**
+     * Returns the bucket of the specified value, values out of the range falling in the first or last
+     * bucket. Returns -1 for <code>NaN</code>.
+     */
+    public int getBucket(double value) {
+        if (Double.isNaN(value))
+            return -1;
+        if (mMax == mMin)
+            return 0;
+        int bucket = (int) ((value - mMin) / (mMax - mMin) * mBuckets.length);
+        return Math.max(0, Math.min(mBuckets.length - 1, bucket));
+    }
+
+    public Color getBucketColor(int bucket) {
+        return mBuckets[bucket];
+    }
+
+    /**
+     * Returns the color of the bucket of the specified value, or <code>null</code> for <code>NaN</code>.
+     */
+    public Color getColor(double value) {
+        int bucket = getBucket(value);
+        return bucket < 0 ? null : mBuckets[bucket];
+    }
+
+    private static Color interpolate(Color from, Color to, double ratio) {
+        return new Color(
+                (int) Math.round(from.getRed() + (to.getRed() - from.getRed()) * ratio),
+                (int) Math.round(from.getGreen() + (to.getGreen() - from.getGreen()) * ratio),
+                (int) Math.round(from.getBlue() + (to.getBlue() - from.getBlue()) * ratio),
+                (int) Math.round(from.getAlpha() + (to.getAlpha() - from.getAlpha()) * ratio));
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.CoordinateSequence;
+import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
+import com.hotcoffee.staticmap.layers.Layer;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+/**
+ * Line whose segments are colored by a value of their first point, such as the speed, the
+ * elevation or the heart rate, through a {@link ColorRamp}. Consecutive segments of the same
+ * bucket of the ramp form a single polyline, and all the polylines of a bucket are drawn at once,
+ * so drawing the line takes one call per bucket whatever its number of segments.
+ * <br/>
+ * Segments starting at a <code>NaN</code> value are not drawn, but keep their outline.
+ */
+public class GradientLineString implements Layer {
+    private final CoordinateSequence mPath;
+    private final double[] mValues;
+    private final ColorRamp mRamp;
+    private int mStrokeWidth = 4;
+    private Color mOutlineColor = Color.WHITE;
+    private int mOutlineWidth = 2;
+
+    /**
+     * Creates a line following the specified path, with one value per point of the path.
+     */
+    public GradientLineString(CoordinateSequence path, double[] values, ColorRamp ramp) {
+        if (values.length != path.getSize())
+            throw new IllegalArgumentException("Expected " + path.getSize() + " values, got " + values.length);
+        mPath = path;
+        mValues = values;
+        mRamp = ramp;
+    }
+
+    public CoordinateSequence getPath() {
+        return mPath;
+    }
+
+    public ColorRamp getRamp() {
+        return mRamp;
+    }
+
+    public GradientLineString strokeWidth(int width) {
+        mStrokeWidth = width;
+        return this;
+    }
+
+    public GradientLineString outlineColor(Color outlineColor) {
+        mOutlineColor = outlineColor;
+        return this;
+    }
+
+    public GradientLineString outlineWidth(int width) {
+        mOutlineWidth = width;
+        return this;
+    }
+
+    @Override
+    public void draw(Graphics2D graphics, StaticMap mp) {
+        MercatorProjection proj = mp.getProjection();
+        int zoom = mp.getZoom();
+        double offsetX = mp.getOffset().x();
+        double offsetY = mp.getOffset().y();
+
+        double margin = mOutlineWidth + mStrokeWidth + 1;
+        double minX = -margin;
+        double minY = -margin;
+        double maxX = mp.getWidth() + margin;
+        double maxY = mp.getHeight() + margin;
+        int[] ranges = LineString.visibleRanges(mPath, proj, zoom, offsetX, offsetY, minX, minY, maxX, maxY);
+
+        Path2D.Double outline = mOutlineWidth > 0 ? new Path2D.Double() : null;
+        Path2D.Double[] buckets = new Path2D.Double[mRamp.getBucketCount()];
+        double[] x = new double[0];
+        double[] y = new double[0];
+        double[] segment = new double[4];
+        for (int r = 0; r < ranges.length; r += 2) {
+            int start = ranges[r];
+            int count = ranges[r + 1] - start;
+            if (x.length < count) {
+                x = new double[count];
+                y = new double[count];
+            }
+            LineString.project(mPath, start, count, proj, zoom, offsetX, offsetY, x, y);
+
+            // Bucket of the polyline being built, and whether the outline continues.
+            int current = -1;
+            boolean outlineDown = false;
+            for (int i = 1; i < count; i++) {
+                segment[0] = x[i - 1];
+                segment[1] = y[i - 1];
+                segment[2] = x[i];
+                segment[3] = y[i];
+                if (!Clipping.clipSegment(segment, minX, minY, maxX, maxY)) {
+                    current = -1;
+                    outlineDown = false;
+                    continue;
+                }
+                boolean startClipped = segment[0] != x[i - 1] || segment[1] != y[i - 1];
+                boolean endClipped = segment[2] != x[i] || segment[3] != y[i];
+
+                if (outline != null) {
+                    if (!outlineDown || startClipped)
+                        outline.moveTo(segment[0], segment[1]);
+                    outline.lineTo(segment[2], segment[3]);
+                    outlineDown = !endClipped;
+                }
+
+                int bucket = mRamp.getBucket(mValues[start + i - 1]);
+                if (bucket < 0) {
+                    current = -1;
+                    continue;
+                }
+                if (buckets[bucket] == null)
+                    buckets[bucket] = new Path2D.Double();
+                if (bucket != current || startClipped)
+                    buckets[bucket].moveTo(segment[0], segment[1]);
+                buckets[bucket].lineTo(segment[2], segment[3]);
+                current = endClipped ? -1 : bucket;
+            }
+        }
+
+        if (outline != null) {
+            graphics.setColor(mOutlineColor);
+            graphics.setStroke(new BasicStroke(mOutlineWidth + mStrokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            graphics.draw(outline);
+        }
+
+        // A single stroke for every bucket.
+        graphics.setStroke(new BasicStroke(mStrokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        for (int b = 0; b < buckets.length; b++) {
+            if (buckets[b] == null)
+                continue;
+            graphics.setColor(mRamp.getBucketColor(b));
+            graphics.draw(buckets[b]);
+        }
+    }
+
+}
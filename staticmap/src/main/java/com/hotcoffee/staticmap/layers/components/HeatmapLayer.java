@@ -0,0 +1,191 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.CoordinateSequence;
+import com.hotcoffee.staticmap.geo.LocationBounds;
+import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
+import com.hotcoffee.staticmap.layers.Layer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Density of many paths, such as all the activities of an athlete. Paths are rasterized into a grid
+ * counting, for each pixel of the map, the paths crossing it; a path crossing a pixel several times,
+ * like a lap or an out-and-back, counts once. The grid is split in bands of rows, one per core,
+ * rasterized in parallel: each band rasterizes the paths crossing it into its own rows, so a single
+ * grid is needed whatever the number of cores. Counts are then normalized on a logarithmic scale,
+ * from 0 to 1, and colored through a {@link ColorRamp}. Pixels no path crosses are left untouched.
+ */
+public class HeatmapLayer implements Layer {
+
+    private final List<CoordinateSequence> mPaths = new ArrayList<>();
+    private ColorRamp mRamp = new ColorRamp(0, 1, 64,
+            new Color(128, 0, 128, 96), Color.RED, Color.YELLOW, Color.WHITE);
+    private int mMaxCount = 0;
+
+    public HeatmapLayer addPath(CoordinateSequence path) {
+        mPaths.add(path);
+        return this;
+    }
+
+    public HeatmapLayer addPaths(Collection<? extends CoordinateSequence> paths) {
+        mPaths.addAll(paths);
+        return this;
+    }
+
+    public List<CoordinateSequence> getPaths() {
+        return Collections.unmodifiableList(mPaths);
+    }
+
+    /**
+     * Sets the ramp coloring the normalized density, from 0 for a single path to 1 for the
+     * densest pixel of the map.
+     */
+    public HeatmapLayer ramp(ColorRamp ramp) {
+        mRamp = ramp;
+        return this;
+    }
+
+    /**
+     * Sets the count drawn with the last color of the ramp, denser pixels being drawn with it too.
+     * Defaults to 0, using the count of the densest pixel of the drawn area: maps drawn in regions
+     * (see {@link StaticMap#setRegionSize(int)}) should set it, so regions share the same scale.
+     */
+    public HeatmapLayer maxCount(int maxCount) {
+        mMaxCount = maxCount;
+        return this;
+    }
+
+    @Override
+    public void draw(Graphics2D graphics, StaticMap mp) {
+        int width = mp.getWidth();
+        int height = mp.getHeight();
+        if (width <= 0 || height <= 0)
+            return;
+
+        CoordinateSequence[] paths = mPaths.toArray(new CoordinateSequence[0]);
+        int bands = Math.max(1, Math.min(height, Runtime.getRuntime().availableProcessors()));
+        int[] counts = new int[width * height];
+        // Last path counted at each pixel, numbered from 1.
+        int[] stamps = new int[width * height];
+        IntStream.range(0, bands)
+                .parallel()
+                .forEach(b -> {
+                    int top = (int) ((long) b * height / bands);
+                    int bottom = (int) ((b + 1L) * height / bands);
+                    for (int i = 0; i < paths.length; i++)
+                        rasterize(paths[i], i + 1, mp, top, bottom, counts, stamps);
+                });
+
+        int max = mMaxCount;
+        if (max <= 0) {
+            for (int count : counts)
+                max = Math.max(max, count);
+            if (max == 0)
+                return;
+        }
+
+        int[] colors = new int[mRamp.getBucketCount()];
+        for (int b = 0; b < colors.length; b++)
+            colors[b] = mRamp.getBucketColor(b).getRGB();
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        double scale = max == 1 ? 0 : 1 / Math.log(max);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0)
+                pixels[i] = colors[mRamp.getBucket(Math.log(counts[i]) * scale)];
+        }
+        graphics.drawImage(image, 0, 0, null);
+    }
+
+    /**
+     * Counts the pixels of a path within the rows of a band, from <code>top</code> included to
+     * <code>bottom</code> excluded.
+     */
+    private static void rasterize(CoordinateSequence path, int stamp, StaticMap mp, int top, int bottom,
+                                  int[] grid, int[] stamps) {
+        MercatorProjection proj = mp.getProjection();
+        int zoom = mp.getZoom();
+        double offsetX = mp.getOffset().x();
+        double offsetY = mp.getOffset().y();
+        int width = mp.getWidth();
+        int height = mp.getHeight();
+
+        // Most paths of a large collection are away from the band: skip them from their bounds.
+        LocationBounds bounds = path.getBounds();
+        if (bounds == null || proj.unprojectX(bounds.xmax, zoom) < offsetX
+                || proj.unprojectX(bounds.xmin, zoom) > offsetX + width
+                || proj.unprojectY(bounds.ymin, zoom) < offsetY + top
+                || proj.unprojectY(bounds.ymax, zoom) > offsetY + bottom)
+            return;
+
+        int[] ranges = LineString.visibleRanges(path, proj, zoom, offsetX, offsetY, 0, top, width, bottom);
+        double[] x = new double[0];
+        double[] y = new double[0];
+        double[] segment = new double[4];
+        for (int r = 0; r < ranges.length; r += 2) {
+            int start = ranges[r];
+            int count = ranges[r + 1] - start;
+            if (x.length < count) {
+                x = new double[count];
+                y = new double[count];
+            }
+            LineString.project(path, start, count, proj, zoom, offsetX, offsetY, x, y);
+
+            for (int i = 1; i < count; i++) {
+                segment[0] = x[i - 1];
+                segment[1] = y[i - 1];
+                segment[2] = x[i];
+                segment[3] = y[i];
+                // Segments are clipped to the map, not to the band, so every band steps through the same pixels.
+                // Keep the far edges out, so every pixel of the segment lies in the grid.
+                if (!Clipping.clipSegment(segment, 0, 0, Math.nextDown((double) width), Math.nextDown((double) height)))
+                    continue;
+                rasterizeSegment(segment, width, height, top, bottom, grid, stamps, stamp);
+            }
+        }
+    }
+
+    /**
+     * Counts the pixels of a segment within the rows of a band, stepping along its longest axis.
+     * Pixels already counted for the path, whose stamp is the one of the path, are skipped.
+     */
+    private static void rasterizeSegment(double[] segment, int width, int height, int top, int bottom,
+                                         int[] grid, int[] stamps, int stamp) {
+        double dx = segment[2] - segment[0];
+        double dy = segment[3] - segment[1];
+        int steps = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)));
+        double stepX = (steps == 0) ? 0 : dx / steps;
+        double stepY = (steps == 0) ? 0 : dy / steps;
+
+        // Only walk the steps near the band, one more on each side for rounding.
+        int first = 0;
+        int last = steps;
+        if (stepY != 0) {
+            double enter = (top - segment[1]) / stepY;
+            double leave = (bottom - segment[1]) / stepY;
+            first = Math.max(0, (int) Math.floor(Math.min(enter, leave)) - 1);
+            last = Math.min(steps, (int) Math.ceil(Math.max(enter, leave)) + 1);
+        }
+        for (int s = first; s <= last; s++) {
+            int px = Math.min(width - 1, (int) (segment[0] + stepX * s));
+            int py = Math.min(height - 1, (int) (segment[1] + stepY * s));
+            if (py < top || py >= bottom)
+                continue;
+            int pixel = py * width + px;
+            if (stamps[pixel] != stamp) {
+                stamps[pixel] = stamp;
+                grid[pixel]++;
+            }
+        }
+    }
+
+}
@@ -6,20 +6,25 @@
 package com.hotcoffee.staticmap.layers.components;
 
 import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.CoordinateSequence;
 import com.hotcoffee.staticmap.geo.Location;
+import com.hotcoffee.staticmap.geo.LocationBounds;
 import com.hotcoffee.staticmap.geo.LocationPath;
 import com.hotcoffee.staticmap.geo.PointF;
+import com.hotcoffee.staticmap.geo.TrackPyramid;
 import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
 import com.hotcoffee.staticmap.layers.Layer;
 
 import java.awt.*;
+import java.awt.geom.Path2D;
 
 /**
  * @author Christophe
  */
 public class LineString implements Layer {
     private float mOpacity;
-    private final LocationPath mPath;
+    private final CoordinateSequence mPath;
+    private final TrackPyramid mPyramid;
     private Color mStrokeColor = Color.RED;
     private Color mOutlineColor = Color.WHITE;
     private int mStrokeWidth = 2;
@@ -27,7 +32,32 @@ public class LineString implements Layer {
     private final boolean mDrawShadows = false;
 
     public LineString(LocationPath path) {
+        this((CoordinateSequence) path);
+    }
+
+    /**
+     * Creates a line following the specified coordinates, such as an {@link com.hotcoffee.staticmap.geo.EncodedTrack}.
+     */
+    public LineString(CoordinateSequence path) {
         mPath = path;
+        mPyramid = null;
+    }
+
+    /**
+     * Creates a line from a polyline encoded with the Encoded Polyline Algorithm Format.
+     *
+     * @see com.hotcoffee.staticmap.geo.EncodedPolyline
+     */
+    public static LineString fromPolyline(CharSequence encoded) {
+        return new LineString(LocationPath.fromPolyline(encoded));
+    }
+
+    /**
+     * Creates a line drawn from a precomputed {@link TrackPyramid}, scaled to the zoom of the map.
+     */
+    public LineString(TrackPyramid pyramid) {
+        mPath = null;
+        mPyramid = pyramid;
     }
 
     public void opacity(float opacity) {
@@ -38,10 +68,25 @@ public class LineString implements Layer {
         return mOpacity;
     }
 
+    /**
+     * Returns the path of the line, or <code>null</code> if it is drawn from another {@link CoordinateSequence}
+     * or from a {@link TrackPyramid}.
+     */
     public LocationPath getPath() {
+        return mPath instanceof LocationPath path ? path : null;
+    }
+
+    /**
+     * Returns the coordinates of the line, or <code>null</code> if it is drawn from a {@link TrackPyramid}.
+     */
+    public CoordinateSequence getCoordinates() {
         return mPath;
     }
 
+    public TrackPyramid getPyramid() {
+        return mPyramid;
+    }
+
     public LineString strokeColor(Color strokeColor) {
         mStrokeColor = strokeColor;
         return this;
@@ -65,16 +110,25 @@ public class LineString implements Layer {
     @Override
     public void draw(Graphics2D graphics, StaticMap mp) {
         MercatorProjection proj = mp.getProjection();
-
-        int[] xPoints = new int[mPath.getSize()];
-        int[] yPoints = new int[mPath.getSize()];
-
-        for (int i = 0; i < mPath.getSize(); i++) {
-            Location l = mPath.getLocationAtIndex(i);
-
-            PointF pixelsLocation = proj.unproject(l, mp.getZoom());
-            xPoints[i] = (int) (pixelsLocation.x() - mp.getOffset().x());
-            yPoints[i] = (int) (pixelsLocation.y() - mp.getOffset().y());
+        int zoom = mp.getZoom();
+        double offsetX = mp.getOffset().x();
+        double offsetY = mp.getOffset().y();
+
+        // Only stroke the runs of the line crossing the map, with a margin hiding the clipped ends.
+        double margin = mOutlineWidth + mStrokeWidth + 1;
+        double minX = -margin;
+        double minY = -margin;
+        double maxX = mp.getWidth() + margin;
+        double maxY = mp.getHeight() + margin;
+
+        Path2D.Double line = new Path2D.Double();
+        if (mPyramid != null) {
+            double[] x = new double[mPyramid.getPointCount(zoom)];
+            double[] y = new double[x.length];
+            int count = mPyramid.getPoints(zoom, offsetX, offsetY, x, y);
+            Clipping.appendPolyline(line, x, y, count, minX, minY, maxX, maxY);
+        } else {
+            appendPath(line, proj, zoom, offsetX, offsetY, minX, minY, maxX, maxY);
         }
 
         if (mOutlineWidth > 0) {
@@ -84,7 +138,7 @@ public class LineString implements Layer {
                     BasicStroke.JOIN_ROUND);
             graphics.setColor(mOutlineColor);
             graphics.setStroke(sOutline);
-            graphics.drawPolyline(xPoints, yPoints, mPath.getSize());
+            graphics.draw(line);
         }
 
         // Draw Center line
@@ -93,8 +147,53 @@ public class LineString implements Layer {
                 BasicStroke.JOIN_ROUND);
         graphics.setColor(mStrokeColor);
         graphics.setStroke(sCenter);
-        graphics.drawPolyline(xPoints, yPoints, mPath.getSize());
+        graphics.draw(line);
+
+    }
+
+    private void appendPath(Path2D.Double line, MercatorProjection proj, int zoom, double offsetX, double offsetY,
+                            double minX, double minY, double maxX, double maxY) {
+        int[] ranges = visibleRanges(mPath, proj, zoom, offsetX, offsetY, minX, minY, maxX, maxY);
+
+        double[] x = new double[0];
+        double[] y = new double[0];
+        for (int r = 0; r < ranges.length; r += 2) {
+            int start = ranges[r];
+            int count = ranges[r + 1] - start;
+            if (x.length < count) {
+                x = new double[count];
+                y = new double[count];
+            }
+            project(mPath, start, count, proj, zoom, offsetX, offsetY, x, y);
+            Clipping.appendPolyline(line, x, y, count, minX, minY, maxX, maxY);
+        }
+    }
 
+    /**
+     * Returns the ranges of the path which may cross the specified area of the map, as pairs of start
+     * (inclusive) and end (exclusive) indexes. See {@link com.hotcoffee.staticmap.geo.LocationPathIndex#query(LocationBounds)}.
+     */
+    static int[] visibleRanges(CoordinateSequence path, MercatorProjection proj, int zoom, double offsetX, double offsetY,
+                               double minX, double minY, double maxX, double maxY) {
+        Location topLeft = proj.project(new PointF(offsetX + minX, offsetY + minY), zoom);
+        Location bottomRight = proj.project(new PointF(offsetX + maxX, offsetY + maxY), zoom);
+        return path.getIndex().query(new LocationBounds(topLeft.mLongitude(), bottomRight.mLongitude(),
+                bottomRight.mLatitude(), topLeft.mLatitude()));
+    }
+
+    /**
+     * Projects <code>count</code> coordinates of the path from <code>start</code> into <code>x</code> and
+     * <code>y</code>, in pixels of the map.
+     */
+    static void project(CoordinateSequence path, int start, int count, MercatorProjection proj, int zoom,
+                        double offsetX, double offsetY, double[] x, double[] y) {
+        // Read the coordinates in place, then project them.
+        // Keep sub-pixel coordinates, so views shifted by whole pixels draw the same line.
+        path.getCoordinates(start, count, y, x);
+        for (int i = 0; i < count; i++) {
+            x[i] = proj.unprojectX(x[i], zoom) - offsetX;
+            y[i] = proj.unprojectY(y[i], zoom) - offsetY;
+        }
     }
 
 }
@@ -13,7 +13,6 @@ import com.hotcoffee.staticmap.layers.Layer;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
-import java.awt.image.BufferedImage;
 
 /**
  * @author Christophe
@@ -24,6 +23,7 @@ public class Marker implements Layer {
     private final Location mLocation;
     private PointF mAnchor;
     private float mRotation;
+    private float mScale = 1f;
 
     public Marker(Location location) {
         mLocation = location;
@@ -56,61 +56,60 @@ public class Marker implements Layer {
         return this;
     }
 
-    @Override
-    public void draw(Graphics2D graphics, StaticMap mp) {
-        int width = mImage.getWidth(null);
-        int height = mImage.getHeight(null);
-
-        System.out.println("width: " + width + ", height: " + height);
-
-        PointF base = mp.getProjection().unproject(mLocation, mp.getZoom());
-        PointF origin = new PointF(base.x() - mp.getOffset().x(), base.y() - mp.getOffset().y());
-
-        BufferedImage rotated = getRotatedImage(mRotation, mImage);
-
-        int anchorX = (int) (mAnchor.x());
-        int anchorY = (int) (mAnchor.y());
-
-        graphics.drawImage(rotated,
-                (int) (origin.x() - anchorX),
-                (int) (origin.y() - anchorY),
-                width,
-                height,
-                null);
+    /**
+     * Scales the image of the marker by the specified factor. The anchor is scaled with it.
+     */
+    public Marker scale(float scale) {
+        mScale = scale;
+        return this;
     }
 
-    private BufferedImage getRotatedImage(float angle, Image source) {
-
-        // Get source image size.
-        int width = source.getWidth(null);
-        int height = source.getHeight(null);
-
-        AffineTransform at = new AffineTransform();
+    public Image getImage() {
+        return mImage;
+    }
 
-        int middleX = (width / 2)/* - width / 2*/;
-        int middleY = (height / 2)/* - height / 2*/;
+    public float getRotation() {
+        return mRotation;
+    }
 
-        // 4. translate it to the center of the component
-        at.translate(middleX, middleY);
+    public PointF getAnchor() {
+        return mAnchor;
+    }
 
-        // 3. do the actual rotation
-        at.rotate(Math.toRadians(angle));
+    public float getScale() {
+        return mScale;
+    }
 
-        // 1. translate the object so that you rotate it around the 
-        //    center (easier :))
-        at.translate(-middleX, -middleY);
+    @Override
+    public void draw(Graphics2D graphics, StaticMap mp) {
+        PointF base = mp.getProjection().unproject(mLocation, mp.getZoom());
+        PointF origin = new PointF(base.x() - mp.getOffset().x(), base.y() - mp.getOffset().y());
 
-        // draw the image
-        BufferedImage rotated = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = rotated.createGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-        g2d.drawImage(source, at, null);
+        drawAt(graphics, origin.x(), origin.y(), MarkerImageCache.getDefault(), true);
+    }
 
-        return rotated;
+    /**
+     * Draws the image of the marker with its anchor at the specified position of the map.
+     * Rotated images are taken from the cache, unless <code>clipRotated</code> is false, in
+     * which case they are drawn through a transform and their corners are not cut.
+     */
+    void drawAt(Graphics2D graphics, double x, double y, MarkerImageCache cache, boolean clipRotated) {
+        int left = (int) Math.floor(x - mAnchor.x() * mScale);
+        int top = (int) Math.floor(y - mAnchor.y() * mScale);
+
+        if (cache.getRotationBucket(mRotation) == 0 && mScale == 1f) {
+            graphics.drawImage(mImage, left, top, null);
+        } else if (clipRotated) {
+            graphics.drawImage(cache.get(mImage, mRotation, mScale), left, top, null);
+        } else {
+            int width = Math.round(mImage.getWidth(null) * mScale);
+            int height = Math.round(mImage.getHeight(null) * mScale);
+            AffineTransform at = AffineTransform.getTranslateInstance(left + width / 2, top + height / 2);
+            at.rotate(Math.toRadians(mRotation));
+            at.translate(-(width / 2), -(height / 2));
+            at.scale(mScale, mScale);
+            graphics.drawImage(mImage, at, null);
+        }
     }
 
 }
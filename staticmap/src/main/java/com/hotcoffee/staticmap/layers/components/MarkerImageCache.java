@@ -0,0 +1,99 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps rotated and scaled versions of marker images, so markers sharing an image don't
+ * render it again at each draw. Rotations are rounded to a fixed number of buckets, one
+ * degree by default. Source images are compared by identity.
+ */
+public class MarkerImageCache {
+
+    private static final MarkerImageCache DEFAULT = new MarkerImageCache(1024, 360);
+
+    private final int mRotationBuckets;
+    private final Map<SpriteKey, BufferedImage> mSprites;
+
+    /**
+     * Creates a cache holding at most <code>maxEntries</code> images, rounding rotations to
+     * <code>360 / rotationBuckets</code> degrees.
+     */
+    public MarkerImageCache(int maxEntries, int rotationBuckets) {
+        mRotationBuckets = rotationBuckets;
+        mSprites = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SpriteKey, BufferedImage> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by markers which weren't given one.
+     */
+    public static MarkerImageCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the rotation bucket of the specified angle, in degrees. Bucket 0 means no rotation.
+     */
+    public int getRotationBucket(float rotation) {
+        return Math.floorMod(Math.round(rotation / 360f * mRotationBuckets), mRotationBuckets);
+    }
+
+    /**
+     * Returns the image rotated around its center by the specified angle, in degrees, and
+     * scaled by the specified factor. The result has the scaled size of the image; rotated
+     * corners falling outside of it are cut.
+     */
+    public BufferedImage get(Image source, float rotation, float scale) {
+        SpriteKey key = new SpriteKey(source, getRotationBucket(rotation), scale);
+        synchronized (mSprites) {
+            return mSprites.computeIfAbsent(key,
+                    k -> render(source, 360.0 * k.rotationBucket() / mRotationBuckets, scale));
+        }
+    }
+
+    /**
+     * Drops every cached image.
+     */
+    public void clear() {
+        synchronized (mSprites) {
+            mSprites.clear();
+        }
+    }
+
+    private static BufferedImage render(Image source, double angle, float scale) {
+        int width = Math.max(1, Math.round(source.getWidth(null) * scale));
+        int height = Math.max(1, Math.round(source.getHeight(null) * scale));
+
+        AffineTransform at = new AffineTransform();
+
+        // Rotate around the center, then scale the image to the sprite size.
+        int middleX = width / 2;
+        int middleY = height / 2;
+        at.translate(middleX, middleY);
+        at.rotate(Math.toRadians(angle));
+        at.translate(-middleX, -middleY);
+        at.scale(scale, scale);
+
+        BufferedImage rotated = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = rotated.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(source, at, null);
+        g2d.dispose();
+
+        return rotated;
+    }
+
+    private record SpriteKey(Image source, int rotationBucket, float scale) {
+    }
+
+}
@@ -0,0 +1,296 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
+import com.hotcoffee.staticmap.layers.Layer;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws many {@link Marker}s as a single layer. Markers are kept in a grid index of their
+ * projected positions, so only those visible in the map are drawn. Markers sharing the same
+ * image are drawn together, in the order their image first appears, and their rotated images
+ * are taken from a {@link MarkerImageCache}.
+ * <br/>
+ * The index is built on the first draw following a change of the markers. Changing the
+ * image, anchor or scale of a marker already added isn't taken into account for culling.
+ */
+public class MarkerLayer implements Layer {
+    // Markers per cell of the index, on average.
+    private static final int MARKERS_PER_CELL = 8;
+    private static final int MAX_GRID_SIZE = 1024;
+    private static final int COLLISION_CELL_SIZE = 64;
+
+    private final List<Marker> mMarkers = new ArrayList<>();
+    private MarkerImageCache mImageCache = MarkerImageCache.getDefault();
+    private boolean mClipRotated = true;
+    private boolean mDeclutter = false;
+
+    private Index mIndex;
+
+    public MarkerLayer addMarker(Marker marker) {
+        mMarkers.add(marker);
+        mIndex = null;
+        return this;
+    }
+
+    public MarkerLayer addMarkers(Collection<Marker> markers) {
+        mMarkers.addAll(markers);
+        mIndex = null;
+        return this;
+    }
+
+    public void removeMarker(Marker marker) {
+        if (mMarkers.remove(marker))
+            mIndex = null;
+    }
+
+    public List<Marker> getMarkers() {
+        return Collections.unmodifiableList(mMarkers);
+    }
+
+    /**
+     * Sets the cache of rotated images. Defaults to {@link MarkerImageCache#getDefault()}.
+     */
+    public MarkerLayer imageCache(MarkerImageCache imageCache) {
+        mImageCache = imageCache;
+        return this;
+    }
+
+    /**
+     * When false, rotated images are drawn through a transform instead of being taken from
+     * the cache: no intermediate image is kept, but the corners of the rotated images are not
+     * cut to the size of the image as {@link Marker} does. Defaults to true.
+     */
+    public MarkerLayer clipRotated(boolean clipRotated) {
+        mClipRotated = clipRotated;
+        return this;
+    }
+
+    /**
+     * When true, markers overlapping a marker added before them are not drawn. Collisions are
+     * computed for each draw among the markers of the drawn area, so maps drawn in regions
+     * (see {@link StaticMap#setRegionSize(int)}) declutter each region on its own. Defaults to false.
+     */
+    public MarkerLayer declutter(boolean declutter) {
+        mDeclutter = declutter;
+        return this;
+    }
+
+    @Override
+    public void draw(Graphics2D graphics, StaticMap mp) {
+        Index index = mIndex;
+        if (index == null) {
+            index = new Index(mMarkers, mp.getProjection());
+            mIndex = index;
+        }
+
+        int[] visible = index.query(mp);
+        if (mDeclutter)
+            visible = declutter(visible, index, mp);
+
+        // Stable counting sort of the visible markers by image, images in order of first appearance.
+        Map<Image, Integer> groups = new IdentityHashMap<>();
+        int[] groupOf = new int[visible.length];
+        for (int k = 0; k < visible.length; k++)
+            groupOf[k] = groups.computeIfAbsent(index.mMarkers[visible[k]].getImage(), image -> groups.size());
+        int[] groupStarts = new int[groups.size() + 1];
+        for (int group : groupOf)
+            groupStarts[group + 1]++;
+        for (int group = 0; group < groups.size(); group++)
+            groupStarts[group + 1] += groupStarts[group];
+        int[] ordered = new int[visible.length];
+        for (int k = 0; k < visible.length; k++)
+            ordered[groupStarts[groupOf[k]]++] = visible[k];
+
+        double scale = 1 << mp.getZoom();
+        double offsetX = mp.getOffset().x();
+        double offsetY = mp.getOffset().y();
+        for (int i : ordered) {
+            index.mMarkers[i].drawAt(graphics, index.mX[i] * scale - offsetX, index.mY[i] * scale - offsetY,
+                    mImageCache, mClipRotated);
+        }
+    }
+
+    private static int[] declutter(int[] candidates, Index index, StaticMap mp) {
+        int columns = mp.getWidth() / COLLISION_CELL_SIZE + 1;
+        int rows = mp.getHeight() / COLLISION_CELL_SIZE + 1;
+        int[][] cells = new int[columns * rows][];
+        int[] cellSizes = new int[columns * rows];
+
+        // Boxes of the placed markers: left, top, right, bottom.
+        int[] boxes = new int[candidates.length * 4];
+        int[] placed = new int[candidates.length];
+        int placedCount = 0;
+
+        double scale = 1 << mp.getZoom();
+        for (int i : candidates) {
+            Marker marker = index.mMarkers[i];
+            int left = (int) Math.floor(index.mX[i] * scale - mp.getOffset().x() - marker.getAnchor().x() * marker.getScale());
+            int top = (int) Math.floor(index.mY[i] * scale - mp.getOffset().y() - marker.getAnchor().y() * marker.getScale());
+            int right = left + Math.round(marker.getImage().getWidth(null) * marker.getScale());
+            int bottom = top + Math.round(marker.getImage().getHeight(null) * marker.getScale());
+
+            int firstColumn = clamp(left / COLLISION_CELL_SIZE, columns);
+            int lastColumn = clamp(right / COLLISION_CELL_SIZE, columns);
+            int firstRow = clamp(top / COLLISION_CELL_SIZE, rows);
+            int lastRow = clamp(bottom / COLLISION_CELL_SIZE, rows);
+
+            if (collides(cells, cellSizes, boxes, columns, firstColumn, lastColumn, firstRow, lastRow,
+                    left, top, right, bottom))
+                continue;
+
+            int box = placedCount;
+            boxes[box * 4] = left;
+            boxes[box * 4 + 1] = top;
+            boxes[box * 4 + 2] = right;
+            boxes[box * 4 + 3] = bottom;
+            placed[placedCount++] = i;
+
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    int cell = row * columns + column;
+                    if (cells[cell] == null)
+                        cells[cell] = new int[4];
+                    else if (cellSizes[cell] == cells[cell].length)
+                        cells[cell] = Arrays.copyOf(cells[cell], cellSizes[cell] * 2);
+                    cells[cell][cellSizes[cell]++] = box;
+                }
+            }
+        }
+        return Arrays.copyOf(placed, placedCount);
+    }
+
+    private static boolean collides(int[][] cells, int[] cellSizes, int[] boxes, int columns,
+                                    int firstColumn, int lastColumn, int firstRow, int lastRow,
+                                    int left, int top, int right, int bottom) {
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = row * columns + column;
+                for (int j = 0; j < cellSizes[cell]; j++) {
+                    int box = cells[cell][j] * 4;
+                    if (left < boxes[box + 2] && boxes[box] < right && top < boxes[box + 3] && boxes[box + 1] < bottom)
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    /**
+     * Grid of the marker positions, projected at zoom 0, over the bounds of the markers.
+     */
+    private static final class Index {
+        private final Marker[] mMarkers;
+        private final double[] mX;
+        private final double[] mY;
+        // Largest distance between a marker position and a side of its image, in pixels.
+        private final double mExtent;
+
+        private final double mMinX;
+        private final double mMinY;
+        private final double mCellWidth;
+        private final double mCellHeight;
+        private final int mColumns;
+        private final int mRows;
+        // Markers of cell c are mCellMarkers[mCellStarts[c]] to mCellMarkers[mCellStarts[c + 1] - 1].
+        private final int[] mCellStarts;
+        private final int[] mCellMarkers;
+
+        Index(List<Marker> markers, MercatorProjection proj) {
+            int count = markers.size();
+            mMarkers = markers.toArray(new Marker[0]);
+            mX = new double[count];
+            mY = new double[count];
+
+            double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+            double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            double extent = 0;
+            for (int i = 0; i < count; i++) {
+                Marker marker = mMarkers[i];
+                mX[i] = proj.unprojectX(marker.getLocation().mLongitude(), 0);
+                mY[i] = proj.unprojectY(marker.getLocation().mLatitude(), 0);
+                minX = Math.min(minX, mX[i]);
+                minY = Math.min(minY, mY[i]);
+                maxX = Math.max(maxX, mX[i]);
+                maxY = Math.max(maxY, mY[i]);
+
+                float scale = marker.getScale();
+                double size = Math.max(marker.getImage().getWidth(null), marker.getImage().getHeight(null));
+                double anchor = Math.max(Math.abs(marker.getAnchor().x()), Math.abs(marker.getAnchor().y()));
+                extent = Math.max(extent, (size + anchor) * scale);
+            }
+            mExtent = extent;
+
+            int gridSize = (int) Math.max(1, Math.min(MAX_GRID_SIZE, Math.ceil(Math.sqrt((double) count / MARKERS_PER_CELL))));
+            mColumns = gridSize;
+            mRows = gridSize;
+            mMinX = (count == 0) ? 0 : minX;
+            mMinY = (count == 0) ? 0 : minY;
+            mCellWidth = Math.max((maxX - minX) / mColumns, Double.MIN_NORMAL);
+            mCellHeight = Math.max((maxY - minY) / mRows, Double.MIN_NORMAL);
+
+            // Counting sort of the markers by cell: markers of a cell stay in insertion order.
+            int[] cellOfMarker = new int[count];
+            mCellStarts = new int[mColumns * mRows + 1];
+            for (int i = 0; i < count; i++) {
+                cellOfMarker[i] = column(mX[i]) + row(mY[i]) * mColumns;
+                mCellStarts[cellOfMarker[i] + 1]++;
+            }
+            for (int c = 0; c < mColumns * mRows; c++)
+                mCellStarts[c + 1] += mCellStarts[c];
+            int[] next = Arrays.copyOf(mCellStarts, mCellStarts.length - 1);
+            mCellMarkers = new int[count];
+            for (int i = 0; i < count; i++)
+                mCellMarkers[next[cellOfMarker[i]]++] = i;
+        }
+
+        /**
+         * Returns the markers whose image may be visible in the map, in insertion order.
+         */
+        int[] query(StaticMap mp) {
+            double scale = 1 << mp.getZoom();
+            double margin = mExtent / scale;
+            double left = mp.getOffset().x() / scale - margin;
+            double top = mp.getOffset().y() / scale - margin;
+            double right = (mp.getOffset().x() + mp.getWidth()) / scale + margin;
+            double bottom = (mp.getOffset().y() + mp.getHeight()) / scale + margin;
+
+            int[] result = new int[mMarkers.length];
+            int size = 0;
+            for (int row = row(top); row <= row(bottom); row++) {
+                for (int column = column(left); column <= column(right); column++) {
+                    int cell = row * mColumns + column;
+                    for (int j = mCellStarts[cell]; j < mCellStarts[cell + 1]; j++) {
+                        int i = mCellMarkers[j];
+                        if (mX[i] >= left && mX[i] <= right && mY[i] >= top && mY[i] <= bottom)
+                            result[size++] = i;
+                    }
+                }
+            }
+            result = Arrays.copyOf(result, size);
+            Arrays.sort(result);
+            return result;
+        }
+
+        private int column(double x) {
+            return clamp((int) ((x - mMinX) / mCellWidth), mColumns);
+        }
+
+        private int row(double y) {
+            return clamp((int) ((y - mMinY) / mCellHeight), mRows);
+        }
+    }
+
+}
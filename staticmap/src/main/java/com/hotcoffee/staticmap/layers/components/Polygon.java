@@ -5,6 +5,239 @@
  */
 package com.hotcoffee.staticmap.layers.components;
 
-public record Polygon() {
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.DouglasPeucker;
+import com.hotcoffee.staticmap.geo.LocationPath;
+import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
+import com.hotcoffee.staticmap.layers.Layer;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Area feature made of one or more parts, each having an exterior ring and optional holes.
+ * Rings are simplified for the zoom level of the map, and those crossing the edges of the
+ * map are clipped before being filled and stroked.
+ */
+public class Polygon implements Layer {
+    // Largest distance, in pixels, between a ring and its simplified version.
+    private static final double SIMPLIFY_TOLERANCE = 0.5;
+
+    private final List<List<LocationPath>> mParts = new ArrayList<>();
+    private Color mFillColor = new Color(255, 0, 0, 64);
+    private Color mStrokeColor = Color.RED;
+    private int mStrokeWidth = 2;
+
+    // Rings projected at zoom 0, then simplified for each zoom level drawn so far.
+    private List<List<Ring>> mProjected;
+    private final Map<Integer, List<List<Ring>>> mSimplified = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a polygon with the specified exterior ring.
+     */
+    public Polygon(LocationPath exterior) {
+        part(exterior);
+    }
+
+    /**
+     * Adds a new part to the polygon, making it a multipolygon. Following holes belong to it.
+     */
+    public synchronized Polygon part(LocationPath exterior) {
+        List<LocationPath> part = new ArrayList<>();
+        part.add(exterior);
+        mParts.add(part);
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Adds a hole to the last part of the polygon.
+     */
+    public synchronized Polygon hole(LocationPath hole) {
+        mParts.get(mParts.size() - 1).add(hole);
+        invalidate();
+        return this;
+    }
+
+    /**
+     * Sets the color the polygon is filled with, or <code>null</code> to not fill it.
+     */
+    public Polygon fillColor(Color fillColor) {
+        mFillColor = fillColor;
+        return this;
+    }
+
+    /**
+     * Sets the color of the outline of the polygon, or <code>null</code> to not stroke it.
+     */
+    public Polygon strokeColor(Color strokeColor) {
+        mStrokeColor = strokeColor;
+        return this;
+    }
+
+    public Polygon strokeWidth(int width) {
+        mStrokeWidth = width;
+        return this;
+    }
+
+    @Override
+    public void draw(Graphics2D graphics, StaticMap mp) {
+        int zoom = mp.getZoom();
+        double scale = 1 << zoom;
+        List<List<Ring>> projected = getProjected(mp.getProjection());
+        List<List<Ring>> parts = mSimplified.computeIfAbsent(zoom,
+                z -> simplify(projected, SIMPLIFY_TOLERANCE / scale));
+
+        // Visible area, with a margin so the outline drawn along the clipped edges stays hidden.
+        double margin = mStrokeWidth + 1;
+        double offsetX = mp.getOffset().x();
+        double offsetY = mp.getOffset().y();
+        double minX = -margin;
+        double minY = -margin;
+        double maxX = mp.getWidth() + margin;
+        double maxY = mp.getHeight() + margin;
+
+        Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        for (List<Ring> part : parts) {
+            for (Ring ring : part) {
+                double left = ring.mMinX * scale - offsetX;
+                double top = ring.mMinY * scale - offsetY;
+                double right = ring.mMaxX * scale - offsetX;
+                double bottom = ring.mMaxY * scale - offsetY;
+                if (right < minX || left > maxX || bottom < minY || top > maxY)
+                    continue;
+
+                double[] x = new double[ring.mX.length];
+                double[] y = new double[ring.mY.length];
+                for (int i = 0; i < x.length; i++) {
+                    x[i] = ring.mX[i] * scale - offsetX;
+                    y[i] = ring.mY[i] * scale - offsetY;
+                }
+
+                if (left >= minX && right <= maxX && top >= minY && bottom <= maxY) {
+                    append(path, x, y, x.length);
+                } else {
+                    double[] clipped = Clipping.clipRing(x, y, x.length, minX, minY, maxX, maxY);
+                    appendInterleaved(path, clipped);
+                }
+            }
+        }
+
+        if (mFillColor != null) {
+            graphics.setColor(mFillColor);
+            graphics.fill(path);
+        }
+
+        if (mStrokeColor != null && mStrokeWidth > 0) {
+            graphics.setColor(mStrokeColor);
+            graphics.setStroke(new BasicStroke(mStrokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            graphics.draw(path);
+        }
+    }
+
+    private synchronized void invalidate() {
+        mProjected = null;
+        mSimplified.clear();
+    }
+
+    private synchronized List<List<Ring>> getProjected(MercatorProjection proj) {
+        if (mProjected == null) {
+            List<List<Ring>> parts = new ArrayList<>(mParts.size());
+            for (List<LocationPath> part : mParts) {
+                List<Ring> rings = new ArrayList<>(part.size());
+                for (LocationPath path : part) {
+                    double[] x = new double[path.getSize()];
+                    double[] y = new double[path.getSize()];
+                    for (int i = 0; i < x.length; i++) {
+                        x[i] = proj.unprojectX(path.getLongitude(i), 0);
+                        y[i] = proj.unprojectY(path.getLatitude(i), 0);
+                    }
+                    rings.add(new Ring(x, y));
+                }
+                parts.add(rings);
+            }
+            mProjected = parts;
+        }
+        return mProjected;
+    }
+
+    private static List<List<Ring>> simplify(List<List<Ring>> parts, double tolerance) {
+        List<List<Ring>> result = new ArrayList<>(parts.size());
+        for (List<Ring> part : parts) {
+            List<Ring> rings = new ArrayList<>(part.size());
+            for (Ring ring : part) {
+                int[] kept = DouglasPeucker.simplify(ring.mX, ring.mY, ring.mX.length, tolerance);
+                // Rings collapsing below a triangle are smaller than a pixel.
+                if (kept.length < 3) {
+                    // Without its exterior ring, the part has nothing left to draw.
+                    if (rings.isEmpty())
+                        break;
+                    continue;
+                }
+
+                double[] x = new double[kept.length];
+                double[] y = new double[kept.length];
+                for (int i = 0; i < kept.length; i++) {
+                    x[i] = ring.mX[kept[i]];
+                    y[i] = ring.mY[kept[i]];
+                }
+                rings.add(new Ring(x, y));
+            }
+            if (!rings.isEmpty())
+                result.add(rings);
+        }
+        return result;
+    }
+
+    private static void append(Path2D.Double path, double[] x, double[] y, int count) {
+        if (count < 3)
+            return;
+        path.moveTo(x[0], y[0]);
+        for (int i = 1; i < count; i++)
+            path.lineTo(x[i], y[i]);
+        path.closePath();
+    }
+
+    private static void appendInterleaved(Path2D.Double path, double[] ring) {
+        if (ring.length < 6)
+            return;
+        path.moveTo(ring[0], ring[1]);
+        for (int i = 2; i < ring.length; i += 2)
+            path.lineTo(ring[i], ring[i + 1]);
+        path.closePath();
+    }
+
+    /**
+     * Ring of projected coordinates, with its bounds.
+     */
+    private static final class Ring {
+        private final double[] mX;
+        private final double[] mY;
+        private final double mMinX;
+        private final double mMinY;
+        private final double mMaxX;
+        private final double mMaxY;
+
+        Ring(double[] x, double[] y) {
+            mX = x;
+            mY = y;
+            double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+            double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int i = 0; i < x.length; i++) {
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxX = Math.max(maxX, x[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+            mMinX = minX;
+            mMinY = minY;
+            mMaxX = maxX;
+            mMaxY = maxY;
+        }
+    }
 
 }
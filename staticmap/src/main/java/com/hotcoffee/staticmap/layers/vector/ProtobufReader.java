@@ -0,0 +1,145 @@
+package com.hotcoffee.staticmap.layers.vector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal reader of protocol buffer messages, walking the fields of a byte array in place.
+ * Nested messages are read by a reader bounded to their bytes, without copying them.
+ */
+final class ProtobufReader {
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+    static final int FIXED32 = 5;
+
+    private final byte[] mData;
+    private int mPosition;
+    private final int mEnd;
+    private int mField;
+    private int mWireType;
+
+    ProtobufReader(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    private ProtobufReader(byte[] data, int start, int end) {
+        mData = data;
+        mPosition = start;
+        mEnd = end;
+    }
+
+    /**
+     * Reads the key of the next field. Returns false at the end of the message.
+     */
+    boolean next() {
+        if (mPosition >= mEnd)
+            return false;
+        long key = varint();
+        mField = (int) (key >>> 3);
+        mWireType = (int) (key & 7);
+        return true;
+    }
+
+    int field() {
+        return mField;
+    }
+
+    long varint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    long sint64() {
+        long value = varint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    float float32() {
+        return Float.intBitsToFloat((int) fixed(4));
+    }
+
+    double float64() {
+        return Double.longBitsToDouble(fixed(8));
+    }
+
+    String string() {
+        int length = length();
+        String value = new String(mData, mPosition, length, StandardCharsets.UTF_8);
+        mPosition += length;
+        return value;
+    }
+
+    /**
+     * Returns a reader of the nested message held by the current field.
+     */
+    ProtobufReader message() {
+        int length = length();
+        ProtobufReader reader = new ProtobufReader(mData, mPosition, mPosition + length);
+        mPosition += length;
+        return reader;
+    }
+
+    /**
+     * Reads the packed unsigned integers held by the current field.
+     */
+    int[] packedInts() {
+        int length = length();
+        int end = mPosition + length;
+        int[] values = new int[Math.max(1, length / 2)];
+        int size = 0;
+        while (mPosition < end) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = (int) varint();
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Skips the value of the current field.
+     */
+    void skip() {
+        switch (mWireType) {
+            case VARINT -> varint();
+            case FIXED64 -> mPosition += 8;
+            case LENGTH_DELIMITED -> {
+                int length = length();
+                mPosition += length;
+            }
+            case FIXED32 -> mPosition += 4;
+            default -> throw new IllegalArgumentException("Unsupported wire type " + mWireType);
+        }
+        if (mPosition > mEnd)
+            throw new IllegalArgumentException("Truncated message");
+    }
+
+    private int length() {
+        long length = varint();
+        if (length < 0 || length > mEnd - mPosition)
+            throw new IllegalArgumentException("Truncated message");
+        return (int) length;
+    }
+
+    private long fixed(int bytes) {
+        if (mPosition + bytes > mEnd)
+            throw new IllegalArgumentException("Truncated message");
+        long value = 0;
+        for (int i = 0; i < bytes; i++)
+            value |= (mData[mPosition++] & 0xFFL) << (8 * i);
+        return value;
+    }
+
+    private byte readByte() {
+        if (mPosition >= mEnd)
+            throw new IllegalArgumentException("Truncated message");
+        return mData[mPosition++];
+    }
+
+}
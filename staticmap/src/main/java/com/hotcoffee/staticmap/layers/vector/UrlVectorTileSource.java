@@ -0,0 +1,65 @@
+package com.hotcoffee.staticmap.layers.vector;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Vector tiles read from a URL pattern such as <code>https://example.com/{z}/{x}/{y}.pbf</code>.
+ * Local tile folders are read with a <code>file:</code> pattern. Gzip compressed tiles, as served
+ * by many tile servers and stored by most tile generators, are decompressed.
+ */
+public class UrlVectorTileSource implements VectorTileSource {
+
+    private final String mPattern;
+    private int mConnectTimeout = 10000;
+    private int mReadTimeout = 30000;
+
+    public UrlVectorTileSource(String pattern) {
+        mPattern = pattern;
+    }
+
+    /**
+     * Sets the timeouts of tile requests, in milliseconds. Default to 10 seconds to connect and
+     * 30 seconds to read.
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout) {
+        mConnectTimeout = connectTimeout;
+        mReadTimeout = readTimeout;
+    }
+
+    @Override
+    public String getSourceKey() {
+        return mPattern;
+    }
+
+    @Override
+    public byte[] getTile(int tileX, int tileY, int tileZ) {
+        String url = mPattern.replace("{x}", "" + tileX)
+                .replace("{y}", "" + tileY)
+                .replace("{z}", "" + tileZ);
+        try {
+            URLConnection connection = new URI(url).toURL().openConnection();
+            connection.setConnectTimeout(mConnectTimeout);
+            connection.setReadTimeout(mReadTimeout);
+            try (InputStream is = connection.getInputStream()) {
+                return decompress(is.readAllBytes());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static byte[] decompress(byte[] data) throws IOException {
+        if (data.length < 2 || (data[0] & 0xFF) != 0x1F || (data[1] & 0xFF) != 0x8B)
+            return data;
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return is.readAllBytes();
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.hotcoffee.staticmap.layers.vector;
+
+import java.awt.*;
+import java.util.Objects;
+
+/**
+ * Drawing style of the features of a layer of vector tiles, optionally restricted to the
+ * features having some property value. Polygons are filled then stroked, lines are stroked and
+ * points are drawn as filled circles.
+ */
+public class VectorStyle {
+    private final String mLayer;
+    private String mFilterKey;
+    private Object mFilterValue;
+    private Color mFillColor;
+    private Color mStrokeColor;
+    private float mStrokeWidth = 1;
+    private float mPointRadius = 3;
+
+    /**
+     * Creates a style for the features of the specified layer, drawing nothing until colors are set.
+     */
+    public VectorStyle(String layer) {
+        mLayer = layer;
+    }
+
+    public String getLayer() {
+        return mLayer;
+    }
+
+    /**
+     * Only draws the features whose property <code>key</code> equals <code>value</code>. Numbers
+     * are compared as {@link Long} for integers and {@link Double} otherwise.
+     */
+    public VectorStyle filter(String key, Object value) {
+        mFilterKey = key;
+        mFilterValue = value;
+        return this;
+    }
+
+    public VectorStyle fillColor(Color fillColor) {
+        mFillColor = fillColor;
+        return this;
+    }
+
+    public VectorStyle strokeColor(Color strokeColor) {
+        mStrokeColor = strokeColor;
+        return this;
+    }
+
+    /**
+     * Sets the width of strokes, in pixels of the map. Defaults to 1.
+     */
+    public VectorStyle strokeWidth(float width) {
+        mStrokeWidth = width;
+        return this;
+    }
+
+    /**
+     * Sets the radius of points, in pixels of the map. Defaults to 3.
+     */
+    public VectorStyle pointRadius(float radius) {
+        mPointRadius = radius;
+        return this;
+    }
+
+    Color getFillColor() {
+        return mFillColor;
+    }
+
+    Color getStrokeColor() {
+        return mStrokeColor;
+    }
+
+    float getStrokeWidth() {
+        return mStrokeWidth;
+    }
+
+    float getPointRadius() {
+        return mPointRadius;
+    }
+
+    boolean matches(VectorTile.Feature feature) {
+        return mFilterKey == null || Objects.equals(feature.getProperty(mFilterKey), mFilterValue);
+    }
+
+}
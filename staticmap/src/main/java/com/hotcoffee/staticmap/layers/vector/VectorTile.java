@@ -0,0 +1,217 @@
+package com.hotcoffee.staticmap.layers.vector;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoded Mapbox Vector Tile. Geometries are kept as paths in the coordinates of their layer,
+ * from 0 to its extent, so they can be drawn at any size.
+ */
+public final class VectorTile {
+    public static final int POINT = 1;
+    public static final int LINESTRING = 2;
+    public static final int POLYGON = 3;
+
+    private static final int COMMAND_MOVE_TO = 1;
+    private static final int COMMAND_LINE_TO = 2;
+    private static final int COMMAND_CLOSE_PATH = 7;
+
+    private final Map<String, Layer> mLayers;
+
+    private VectorTile(Map<String, Layer> layers) {
+        mLayers = layers;
+    }
+
+    /**
+     * Decodes a tile encoded following the Mapbox Vector Tile specification, version 2.
+     *
+     * @throws IllegalArgumentException if the tile is malformed
+     */
+    public static VectorTile decode(byte[] data) {
+        Map<String, Layer> layers = new LinkedHashMap<>();
+        ProtobufReader tile = new ProtobufReader(data);
+        while (tile.next()) {
+            if (tile.field() == 3) {
+                Layer layer = decodeLayer(tile.message());
+                layers.put(layer.getName(), layer);
+            } else {
+                tile.skip();
+            }
+        }
+        return new VectorTile(Collections.unmodifiableMap(layers));
+    }
+
+    /**
+     * Returns the specified layer, or <code>null</code> if the tile doesn't hold it.
+     */
+    public Layer getLayer(String name) {
+        return mLayers.get(name);
+    }
+
+    public Map<String, Layer> getLayers() {
+        return mLayers;
+    }
+
+    private static Layer decodeLayer(ProtobufReader reader) {
+        String name = "";
+        int extent = 4096;
+        List<ProtobufReader> features = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 1 -> name = reader.string();
+                case 2 -> features.add(reader.message());
+                case 3 -> keys.add(reader.string());
+                case 4 -> values.add(decodeValue(reader.message()));
+                case 5 -> extent = (int) reader.varint();
+                default -> reader.skip();
+            }
+        }
+
+        // Features are decoded last, as keys and values may follow them.
+        String[] keyArray = keys.toArray(new String[0]);
+        Object[] valueArray = values.toArray();
+        List<Feature> decoded = new ArrayList<>(features.size());
+        for (ProtobufReader feature : features)
+            decoded.add(decodeFeature(feature, keyArray, valueArray));
+        return new Layer(name, extent, Collections.unmodifiableList(decoded));
+    }
+
+    private static Object decodeValue(ProtobufReader reader) {
+        Object value = null;
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 1 -> value = reader.string();
+                case 2 -> value = (double) reader.float32();
+                case 3 -> value = reader.float64();
+                case 4, 5 -> value = reader.varint();
+                case 6 -> value = reader.sint64();
+                case 7 -> value = reader.varint() != 0;
+                default -> reader.skip();
+            }
+        }
+        return value;
+    }
+
+    private static Feature decodeFeature(ProtobufReader reader, String[] keys, Object[] values) {
+        int type = 0;
+        int[] tags = new int[0];
+        int[] geometry = new int[0];
+        while (reader.next()) {
+            switch (reader.field()) {
+                case 2 -> tags = reader.packedInts();
+                case 3 -> type = (int) reader.varint();
+                case 4 -> geometry = reader.packedInts();
+                default -> reader.skip();
+            }
+        }
+        return new Feature(type, decodeGeometry(geometry), tags, keys, values);
+    }
+
+    private static Path2D.Float decodeGeometry(int[] commands) {
+        Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, commands.length / 2 + 1);
+        int x = 0;
+        int y = 0;
+        int i = 0;
+        while (i < commands.length) {
+            int command = commands[i] & 7;
+            int count = commands[i] >>> 3;
+            i++;
+            if (command == COMMAND_CLOSE_PATH) {
+                path.closePath();
+                continue;
+            }
+            if ((command != COMMAND_MOVE_TO && command != COMMAND_LINE_TO) || i + count * 2 > commands.length)
+                throw new IllegalArgumentException("Malformed geometry");
+            for (int c = 0; c < count; c++) {
+                x += (commands[i] >>> 1) ^ -(commands[i] & 1);
+                y += (commands[i + 1] >>> 1) ^ -(commands[i + 1] & 1);
+                i += 2;
+                if (command == COMMAND_MOVE_TO)
+                    path.moveTo(x, y);
+                else
+                    path.lineTo(x, y);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Layer of a tile, holding features whose coordinates go from 0 to its extent.
+     */
+    public static final class Layer {
+        private final String mName;
+        private final int mExtent;
+        private final List<Feature> mFeatures;
+
+        Layer(String name, int extent, List<Feature> features) {
+            mName = name;
+            mExtent = extent;
+            mFeatures = features;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public int getExtent() {
+            return mExtent;
+        }
+
+        public List<Feature> getFeatures() {
+            return mFeatures;
+        }
+    }
+
+    /**
+     * Feature of a layer, with its geometry and properties.
+     */
+    public static final class Feature {
+        private final int mType;
+        private final Path2D.Float mGeometry;
+        private final int[] mTags;
+        private final String[] mKeys;
+        private final Object[] mValues;
+
+        Feature(int type, Path2D.Float geometry, int[] tags, String[] keys, Object[] values) {
+            mType = type;
+            mGeometry = geometry;
+            mTags = tags;
+            mKeys = keys;
+            mValues = values;
+        }
+
+        /**
+         * Returns {@link #POINT}, {@link #LINESTRING}, {@link #POLYGON} or 0 if unknown.
+         */
+        public int getType() {
+            return mType;
+        }
+
+        /**
+         * Returns the geometry of the feature. Points are sub-paths made of a single move.
+         */
+        public Shape getGeometry() {
+            return mGeometry;
+        }
+
+        /**
+         * Returns the value of the specified property, a {@link String}, {@link Double}, {@link Long}
+         * or {@link Boolean}, or <code>null</code> if the feature doesn't have it.
+         */
+        public Object getProperty(String key) {
+            for (int i = 0; i + 1 < mTags.length; i += 2) {
+                if (mTags[i] < mKeys.length && mKeys[mTags[i]].equals(key))
+                    return mTags[i + 1] < mValues.length ? mValues[mTags[i + 1]] : null;
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.hotcoffee.staticmap.layers.vector;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.layers.Layer;
+import com.hotcoffee.staticmap.tiles.TileKey;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Base map drawn from Mapbox Vector Tiles. Tiles are fetched from a {@link VectorTileSource},
+ * decoded once and kept in a cache of the most recently used ones, then drawn straight into the
+ * map with a list of {@link VectorStyle}s, in the order they were added. Maps zoomed further than
+ * the source goes draw the tiles of its deepest zoom level, scaled.
+ */
+public class VectorTileLayer implements Layer {
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    private final VectorTileSource mSource;
+    private final List<VectorStyle> mStyles = new ArrayList<>();
+    private final Map<TileKey, VectorTile> mCache;
+    private int mMaxZoom = 14;
+
+    public VectorTileLayer(VectorTileSource source) {
+        this(source, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a layer keeping at most <code>cacheSize</code> decoded tiles.
+     */
+    public VectorTileLayer(VectorTileSource source, int cacheSize) {
+        mSource = source;
+        mCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, VectorTile> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public VectorTileLayer style(VectorStyle style) {
+        mStyles.add(style);
+        return this;
+    }
+
+    public List<VectorStyle> getStyles() {
+        return Collections.unmodifiableList(mStyles);
+    }
+
+    /**
+     * Sets the deepest zoom level served by the source. Defaults to 14.
+     */
+    public VectorTileLayer maxZoom(int maxZoom) {
+        mMaxZoom = maxZoom;
+        return this;
+    }
+
+    /**
+     * Returns the specified decoded tile from the cache, or fetches and decodes it. Returns
+     * <code>null</code> if the tile is not available or malformed.
+     */
+    public VectorTile loadTile(int tileX, int tileY, int tileZ) {
+        TileKey key = new TileKey(mSource.getSourceKey(), tileX, tileY, tileZ);
+        synchronized (mCache) {
+            VectorTile tile = mCache.get(key);
+            if (tile != null)
+                return tile;
+        }
+
+        byte[] data = mSource.getTile(tileX, tileY, tileZ);
+        if (data == null)
+            return null;
+        try {
+            VectorTile tile = VectorTile.decode(data);
+            synchronized (mCache) {
+                mCache.put(key, tile);
+            }
+            return tile;
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public void draw(Graphics2D graphics, StaticMap mp) {
+        int zoom = mp.getZoom();
+        int sourceZoom = Math.max(0, Math.min(zoom, mMaxZoom));
+        // Size of the tiles of the source, in pixels of the map.
+        double tileSize = (double) mp.getProjection().getTileSize() * (1 << (zoom - sourceZoom));
+        double offsetX = mp.getOffset().x();
+        double offsetY = mp.getOffset().y();
+
+        int tileCount = 1 << sourceZoom;
+        int minX = Math.max(0, (int) Math.floor(offsetX / tileSize));
+        int minY = Math.max(0, (int) Math.floor(offsetY / tileSize));
+        int maxX = Math.min(tileCount - 1, (int) Math.floor((offsetX + mp.getWidth()) / tileSize));
+        int maxY = Math.min(tileCount - 1, (int) Math.floor((offsetY + mp.getHeight()) / tileSize));
+        if (minX > maxX || minY > maxY)
+            return;
+
+        int columns = maxX - minX + 1;
+        List<VectorTile> tiles = IntStream.range(0, columns * (maxY - minY + 1))
+                .parallel()
+                .mapToObj(i -> loadTile(minX + i % columns, minY + i / columns, sourceZoom))
+                .toList();
+
+        Shape clip = graphics.getClip();
+        for (VectorStyle style : mStyles) {
+            BasicStroke stroke = new BasicStroke(style.getStrokeWidth(), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+            for (int i = 0; i < tiles.size(); i++) {
+                VectorTile tile = tiles.get(i);
+                VectorTile.Layer layer = tile == null ? null : tile.getLayer(style.getLayer());
+                if (layer == null)
+                    continue;
+
+                double x = (minX + i % columns) * tileSize - offsetX;
+                double y = (minY + i / columns) * tileSize - offsetY;
+                // Features go past the edges of their tile: only draw the part inside.
+                graphics.clip(new Rectangle.Double(x, y, tileSize, tileSize));
+                double scale = tileSize / layer.getExtent();
+                drawLayer(graphics, layer, style, stroke, new AffineTransform(scale, 0, 0, scale, x, y));
+                graphics.setClip(clip);
+            }
+        }
+    }
+
+    private static void drawLayer(Graphics2D graphics, VectorTile.Layer layer, VectorStyle style, Stroke stroke,
+                                  AffineTransform transform) {
+        // Features of the same kind are drawn together, as a single path.
+        Path2D.Double polygons = new Path2D.Double(Path2D.WIND_NON_ZERO);
+        Path2D.Double lines = new Path2D.Double();
+        Path2D.Double points = new Path2D.Double();
+        for (VectorTile.Feature feature : layer.getFeatures()) {
+            if (!style.matches(feature))
+                continue;
+            switch (feature.getType()) {
+                case VectorTile.POLYGON -> polygons.append(feature.getGeometry().getPathIterator(transform), false);
+                case VectorTile.LINESTRING -> lines.append(feature.getGeometry().getPathIterator(transform), false);
+                case VectorTile.POINT -> appendPoints(points, feature.getGeometry(), transform, style.getPointRadius());
+                default -> {
+                }
+            }
+        }
+
+        if (style.getFillColor() != null) {
+            graphics.setColor(style.getFillColor());
+            graphics.fill(polygons);
+            graphics.fill(points);
+        }
+        if (style.getStrokeColor() != null && style.getStrokeWidth() > 0) {
+            graphics.setColor(style.getStrokeColor());
+            graphics.setStroke(stroke);
+            graphics.draw(polygons);
+            graphics.draw(lines);
+        }
+    }
+
+    private static void appendPoints(Path2D.Double points, Shape geometry, AffineTransform transform, float radius) {
+        double[] coords = new double[6];
+        for (PathIterator it = geometry.getPathIterator(transform); !it.isDone(); it.next()) {
+            if (it.currentSegment(coords) == PathIterator.SEG_MOVETO)
+                points.append(new Ellipse2D.Double(coords[0] - radius, coords[1] - radius, radius * 2, radius * 2), false);
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.hotcoffee.staticmap.layers.vector;
+
+/**
+ * Provider of encoded vector tiles.
+ */
+public interface VectorTileSource {
+
+    /**
+     * Returns the encoded tile, or <code>null</code> if it is not available.
+     */
+    byte[] getTile(int tileX, int tileY, int tileZ);
+
+    /**
+     * Returns a key identifying the tiles of this source, shared by sources serving the same tiles.
+     */
+    String getSourceKey();
+
+}
@@ -0,0 +1,159 @@
+package com.hotcoffee.staticmap.render;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.Tile;
+import com.hotcoffee.staticmap.layers.CenterOffset;
+import com.hotcoffee.staticmap.layers.Layer;
+import com.hotcoffee.staticmap.layers.TileLayer;
+import com.hotcoffee.staticmap.tiles.ScopedTileCache;
+import com.hotcoffee.staticmap.tiles.TileCache;
+import com.hotcoffee.staticmap.tiles.TileHandle;
+import com.hotcoffee.staticmap.tiles.TileKey;
+import com.hotcoffee.staticmap.tiles.TileRateLimiter;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders many maps at once. The tiles needed by all the maps are computed first, and each
+ * distinct tile is fetched and decoded a single time, even when the maps use distinct
+ * {@link TileLayer} instances of the same source. The maps are then drawn and encoded as PNG
+ * on a pool of workers.
+ * <br/>
+ * The maps are drawn through a {@link StaticMap#withTileScope(ScopedTileCache) copy} reading
+ * and writing their tiles through the cache of the batch, in front of the {@link TileCache}
+ * of each layer, which is left untouched. The batch cache only holds each tile until the last
+ * map drawing it is rendered.
+ */
+public class BatchRenderer implements AutoCloseable {
+
+    private final ExecutorService mExecutor;
+    private final boolean mOwnsExecutor;
+
+    /**
+     * Creates a renderer running on its own pool of the specified number of threads.
+     * The pool is shut down by {@link #close()}.
+     */
+    public BatchRenderer(int threads) {
+        mExecutor = Executors.newFixedThreadPool(threads);
+        mOwnsExecutor = true;
+    }
+
+    /**
+     * Creates a renderer running on the specified executor, which is left running by {@link #close()}.
+     */
+    public BatchRenderer(ExecutorService executor) {
+        mExecutor = executor;
+        mOwnsExecutor = false;
+    }
+
+    /**
+     * Renders the specified maps. Returns one result per map, in the same order. A failing
+     * map doesn't prevent the others from being rendered.
+     */
+    public List<BatchResult> render(List<StaticMap> maps) {
+        ScopedTileCache batchTiles = new ScopedTileCache();
+
+        // One layer per source is enough to fetch the tiles of all the layers of that source.
+        Map<TileKey, TileSource> tiles = new LinkedHashMap<>();
+        Map<TileKey, AtomicInteger> users = new HashMap<>();
+        List<StaticMap> scopedMaps = new ArrayList<>(maps.size());
+        List<Set<TileKey>> mapTiles = new ArrayList<>(maps.size());
+        for (StaticMap map : maps) {
+            StaticMap scoped = map.withTileScope(batchTiles);
+            Map<TileKey, TileSource> needed = new LinkedHashMap<>();
+            try {
+                collectTiles(scoped, needed);
+            } catch (RuntimeException e) {
+                // The map can't be drawn either: the failure is reported when rendering it.
+            }
+            needed.forEach(tiles::putIfAbsent);
+            needed.keySet().forEach(key -> users.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet());
+            scopedMaps.add(scoped);
+            mapTiles.add(needed.keySet());
+        }
+
+        try {
+            List<CompletableFuture<Void>> fetches = new ArrayList<>(tiles.size());
+            tiles.forEach((key, source) -> fetches.add(CompletableFuture.runAsync(
+                    () -> fetch(source, key), mExecutor)));
+            CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[0])).join();
+
+            List<CompletableFuture<BatchResult>> renders = new ArrayList<>(maps.size());
+            for (int i = 0; i < maps.size(); i++) {
+                StaticMap map = maps.get(i);
+                StaticMap scoped = scopedMaps.get(i);
+                Set<TileKey> keys = mapTiles.get(i);
+                renders.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return render(map, scoped);
+                    } finally {
+                        // Release the tiles no other map is left to draw.
+                        for (TileKey key : keys) {
+                            if (users.get(key).decrementAndGet() == 0)
+                                batchTiles.release(key);
+                        }
+                    }
+                }, mExecutor));
+            }
+            return renders.stream().map(CompletableFuture::join).toList();
+        } finally {
+            batchTiles.close();
+        }
+    }
+
+    private static void collectTiles(StaticMap map, Map<TileKey, TileSource> tiles) {
+        for (Layer layer : map.getLayers()) {
+            if (!(layer instanceof TileLayer tileLayer))
+                continue;
+
+            String source = tileLayer.getSourceKey();
+            for (Tile tile : tileLayer.getTiles(map, map.computeOffset(new CenterOffset(0, 0))))
+                tiles.putIfAbsent(new TileKey(source, tile.x(), tile.y(), tile.z()), new TileSource(map, tileLayer));
+        }
+    }
+
+    private static void fetch(TileSource source, TileKey key) {
+        try {
+            TileHandle handle = source.layer().acquireTile(source.map(), key.x(), key.y(), key.z(),
+                                                           TileRateLimiter.Priority.INTERACTIVE);
+            if (handle != null)
+                handle.close();
+        } catch (RuntimeException e) {
+            // Tiles missing from the cache are requested again by the maps drawing them.
+            e.printStackTrace();
+        }
+    }
+
+    private static BatchResult render(StaticMap map, StaticMap scoped) {
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            scoped.drawInto(os);
+            return new BatchResult(map, os.toByteArray(), null);
+        } catch (Exception e) {
+            return new BatchResult(map, null, e);
+        }
+    }
+
+    /**
+     * Layer fetching a tile of the batch, and the scoped map it is fetched for.
+     */
+    private record TileSource(StaticMap map, TileLayer layer) {
+    }
+
+    @Override
+    public void close() {
+        if (mOwnsExecutor)
+            mExecutor.shutdown();
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.hotcoffee.staticmap.render;
+
+import com.hotcoffee.staticmap.StaticMap;
+
+/**
+ * Outcome of the rendering of one map of a batch.
+ *
+ * @param map     the rendered map
+ * @param image   the encoded PNG image, or <code>null</code> if the rendering failed
+ * @param failure the reason of the failure, or <code>null</code> if the rendering succeeded
+ */
+public record BatchResult(StaticMap map, byte[] image, Exception failure) {
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+
+}
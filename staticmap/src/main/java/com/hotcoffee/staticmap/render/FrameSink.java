@@ -0,0 +1,19 @@
+package com.hotcoffee.staticmap.render;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Receives the frames of a {@link RouteAnimation}, in order, like an encoder or a writer of
+ * image files.
+ */
+@FunctionalInterface
+public interface FrameSink {
+
+    /**
+     * Receives the next frame. The image is reused for the following frames: it must be
+     * copied to be kept.
+     */
+    void writeFrame(BufferedImage frame) throws IOException;
+
+}
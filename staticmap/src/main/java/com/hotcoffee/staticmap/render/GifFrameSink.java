@@ -0,0 +1,95 @@
+package com.hotcoffee.staticmap.render;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * {@link FrameSink} encoding the frames as an animated GIF, looping forever. Frames are
+ * written as they are received, so the animation is never held in memory as a whole.
+ * {@link #close()} completes the GIF, and leaves the output stream open.
+ */
+public class GifFrameSink implements FrameSink, Closeable {
+
+    private static final String METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+
+    private final ImageOutputStream mOutput;
+    private final ImageWriter mWriter;
+    private final int mDelayMillis;
+    private boolean mStarted;
+
+    /**
+     * Creates a sink writing into the specified stream, each frame being shown for the
+     * specified duration, in milliseconds. GIF delays are rounded to hundredths of a second.
+     */
+    public GifFrameSink(OutputStream os, int delayMillis) throws IOException {
+        mOutput = ImageIO.createImageOutputStream(os);
+        mWriter = ImageIO.getImageWritersByFormatName("gif").next();
+        mWriter.setOutput(mOutput);
+        mDelayMillis = delayMillis;
+    }
+
+    @Override
+    public void writeFrame(BufferedImage frame) throws IOException {
+        boolean first = !mStarted;
+        if (first) {
+            mWriter.prepareWriteSequence(null);
+            mStarted = true;
+        }
+
+        ImageWriteParam param = mWriter.getDefaultWriteParam();
+        IIOMetadata metadata = mWriter.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), param);
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(METADATA_FORMAT);
+
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(Math.max(1, Math.round(mDelayMillis / 10f))));
+        control.setAttribute("transparentColorIndex", "0");
+
+        if (first) {
+            IIOMetadataNode application = new IIOMetadataNode("ApplicationExtension");
+            application.setAttribute("applicationID", "NETSCAPE");
+            application.setAttribute("authenticationCode", "2.0");
+            // Loop forever.
+            application.setUserObject(new byte[]{1, 0, 0});
+            child(root, "ApplicationExtensions").appendChild(application);
+        }
+
+        metadata.setFromTree(METADATA_FORMAT, root);
+        mWriter.writeToSequence(new IIOImage(frame, null, metadata), param);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (mStarted)
+                mWriter.endWriteSequence();
+            mOutput.flush();
+        } finally {
+            mWriter.dispose();
+            mOutput.close();
+        }
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode root, String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i).getNodeName().equalsIgnoreCase(name))
+                return (IIOMetadataNode) root.item(i);
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
+    }
+
+}
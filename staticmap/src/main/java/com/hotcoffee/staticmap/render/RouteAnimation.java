@@ -0,0 +1,345 @@
+package com.hotcoffee.staticmap.render;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.CoordinateSequence;
+import com.hotcoffee.staticmap.geo.PointF;
+import com.hotcoffee.staticmap.geo.Tile;
+import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
+import com.hotcoffee.staticmap.layers.CenterOffset;
+import com.hotcoffee.staticmap.layers.Layer;
+import com.hotcoffee.staticmap.layers.TileLayer;
+import com.hotcoffee.staticmap.tiles.ScopedTileCache;
+import com.hotcoffee.staticmap.tiles.TileKey;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Renders an animation panning a map along a route, the route being drawn as it is travelled.
+ * <br/>
+ * The layers of the map are drawn once into a base image the size of the map. For each following
+ * frame, the base image is scrolled by the distance travelled since the previous frame, and the
+ * layers only draw the strips that scrolling exposed, so the cost of a frame grows with the
+ * travelled distance rather than the size of the map. Layers must thus draw the same pixels
+ * whatever part of the map they are asked to draw, which holds for tile layers and most features,
+ * but not for layers adapting to the drawn area, like decluttered markers.
+ * <br/>
+ * The size, zoom and layers of the map are used, its location is replaced by the route.
+ */
+public class RouteAnimation {
+
+    // Number of frames whose tiles are prefetched ahead of the drawn frame.
+    private static final int PREFETCH_FRAMES = 8;
+
+    private final StaticMap mMap;
+    private final CoordinateSequence mRoute;
+    private int mFrameCount = 60;
+    private Color mTrackColor = Color.RED;
+    private int mTrackWidth = 4;
+    private Color mPositionColor = Color.RED;
+    private int mPositionRadius = 6;
+
+    // Pixels of the map drawn by the layers during the last render, for monitoring.
+    private long mDrawnPixels;
+
+    /**
+     * Creates an animation of the specified map, whose center follows the specified route.
+     */
+    public RouteAnimation(StaticMap map, CoordinateSequence route) {
+        if (route.getSize() == 0)
+            throw new IllegalArgumentException("The route has no point");
+        mMap = map;
+        mRoute = route;
+    }
+
+    /**
+     * Sets the number of frames of the animation, the first centered on the first point of the
+     * route and the last on the last point. Defaults to 60.
+     */
+    public RouteAnimation frameCount(int frameCount) {
+        if (frameCount < 1)
+            throw new IllegalArgumentException("Invalid frame count " + frameCount);
+        mFrameCount = frameCount;
+        return this;
+    }
+
+    /**
+     * Sets the color of the travelled part of the route, or <code>null</code> to not draw it.
+     */
+    public RouteAnimation trackColor(Color trackColor) {
+        mTrackColor = trackColor;
+        return this;
+    }
+
+    public RouteAnimation trackWidth(int trackWidth) {
+        mTrackWidth = trackWidth;
+        return this;
+    }
+
+    /**
+     * Sets the color of the dot showing the current position, or <code>null</code> to not draw it.
+     */
+    public RouteAnimation positionColor(Color positionColor) {
+        mPositionColor = positionColor;
+        return this;
+    }
+
+    public RouteAnimation positionRadius(int positionRadius) {
+        mPositionRadius = positionRadius;
+        return this;
+    }
+
+    /**
+     * Returns the number of pixels the layers of the map drew during the last render.
+     */
+    public long getDrawnPixels() {
+        return mDrawnPixels;
+    }
+
+    /**
+     * Renders the frames of the animation into the specified sink, in order.
+     * <br/>
+     * While rendering, the tile layers of the map are drawn through a cache scoped to the render,
+     * in front of their own cache, so tiles drawn by several strips are fetched once. The layers
+     * aren't modified, so they can be drawn concurrently by other maps.
+     * The tiles along the route are prefetched a few frames ahead, and dropped once scrolled out.
+     */
+    public void render(FrameSink sink) throws IOException {
+        int width = mMap.getWidth();
+        int height = mMap.getHeight();
+        int zoom = mMap.getZoom();
+        MercatorProjection proj = mMap.getProjection();
+        // Views are centered on the first point of the route, then shifted along it.
+        PointF center = new PointF(proj.unprojectX(mRoute.getLongitude(0), zoom),
+                                   proj.unprojectY(mRoute.getLatitude(0), zoom));
+
+        // Route in pixels at the zoom of the map, with the distance travelled at each point.
+        int size = mRoute.getSize();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] distances = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = proj.unprojectX(mRoute.getLongitude(i), zoom);
+            y[i] = proj.unprojectY(mRoute.getLatitude(i), zoom);
+            if (i > 0)
+                distances[i] = distances[i - 1] + Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+        }
+
+        // Position of each frame, at the same distance from the previous one for every frame.
+        int[] segments = new int[mFrameCount];
+        double[] positionsX = new double[mFrameCount];
+        double[] positionsY = new double[mFrameCount];
+        int[] offsetsX = new int[mFrameCount];
+        int[] offsetsY = new int[mFrameCount];
+        int segment = 0;
+        for (int f = 0; f < mFrameCount; f++) {
+            double distance = (mFrameCount == 1) ? 0 : distances[size - 1] * f / (mFrameCount - 1);
+            while (segment < size - 2 && distances[segment + 1] < distance)
+                segment++;
+            double positionX = x[segment], positionY = y[segment];
+            if (size > 1) {
+                double length = distances[segment + 1] - distances[segment];
+                double t = (length == 0) ? 0 : Math.min(1, (distance - distances[segment]) / length);
+                positionX += (x[segment + 1] - x[segment]) * t;
+                positionY += (y[segment + 1] - y[segment]) * t;
+            }
+            segments[f] = segment;
+            positionsX[f] = positionX;
+            positionsY[f] = positionY;
+            // Offsets are rounded to whole pixels, so the base image scrolls by whole pixels.
+            offsetsX[f] = (int) Math.round(positionX - center.x());
+            offsetsY[f] = (int) Math.round(positionY - center.y());
+        }
+
+        ScopedTileCache scope = new ScopedTileCache();
+        RouteTiles tiles = new RouteTiles(offsetsX, offsetsY, scope);
+
+        BufferedImage base = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        mDrawnPixels = 0;
+        try {
+            for (int f = 0; f < PREFETCH_FRAMES && f < mFrameCount; f++)
+                tiles.prefetch(f);
+
+            for (int f = 0; f < mFrameCount; f++) {
+                if (f + PREFETCH_FRAMES < mFrameCount)
+                    tiles.prefetch(f + PREFETCH_FRAMES);
+
+                int offsetX = offsetsX[f];
+                int offsetY = offsetsY[f];
+                tiles.await(f);
+                if (f == 0)
+                    drawArea(base, 0, 0, width, height, offsetX, offsetY, scope);
+                else
+                    scroll(base, offsetX - offsetsX[f - 1], offsetY - offsetsY[f - 1], offsetX, offsetY, scope);
+                tiles.release(f);
+
+                Graphics2D graphics = frame.createGraphics();
+                try {
+                    graphics.drawImage(base, 0, 0, null);
+                    graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    double originX = center.x() - width / 2 + offsetX;
+                    double originY = center.y() - height / 2 + offsetY;
+                    drawTrack(graphics, x, y, segments[f], positionsX[f] - originX, positionsY[f] - originY, originX, originY);
+                } finally {
+                    graphics.dispose();
+                }
+                sink.writeFrame(frame);
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Scrolls the base image by the specified number of pixels, then draws the exposed strips.
+     */
+    private void scroll(BufferedImage base, int dx, int dy, int offsetX, int offsetY, ScopedTileCache scope) {
+        int width = base.getWidth();
+        int height = base.getHeight();
+        if (Math.abs(dx) >= width || Math.abs(dy) >= height) {
+            drawArea(base, 0, 0, width, height, offsetX, offsetY, scope);
+            return;
+        }
+        if (dx == 0 && dy == 0)
+            return;
+
+        Graphics2D graphics = base.createGraphics();
+        try {
+            graphics.copyArea(Math.max(dx, 0), Math.max(dy, 0), width - Math.abs(dx), height - Math.abs(dy), -dx, -dy);
+        } finally {
+            graphics.dispose();
+        }
+
+        // Columns exposed on the left or right, then rows exposed on the top or bottom.
+        int columnsX = (dx > 0) ? width - dx : 0;
+        if (dx != 0)
+            drawArea(base, columnsX, 0, Math.abs(dx), height, offsetX, offsetY, scope);
+        int rowsX = (dx > 0) ? 0 : -dx;
+        int rowsY = (dy > 0) ? height - dy : 0;
+        if (dy != 0)
+            drawArea(base, rowsX, rowsY, width - Math.abs(dx), Math.abs(dy), offsetX, offsetY, scope);
+    }
+
+    /**
+     * Draws the layers of the map into an area of the base image, through a view of the area
+     * shifted like a {@link CenterOffset}.
+     */
+    private void drawArea(BufferedImage base, int x, int y, int width, int height, int offsetX, int offsetY,
+                          ScopedTileCache scope) {
+        if (width <= 0 || height <= 0)
+            return;
+
+        StaticMap view = createView(width, height, scope);
+        CenterOffset centerOffset = new CenterOffset(offsetX + x + width / 2 - mMap.getWidth() / 2,
+                                                     offsetY + y + height / 2 - mMap.getHeight() / 2);
+        view.drawInto(base.getSubimage(x, y, width, height), centerOffset);
+        mDrawnPixels += (long) width * height;
+    }
+
+    /**
+     * Creates a view of the map centered on the first point of the route, drawing its tiles
+     * through the specified scope.
+     */
+    private StaticMap createView(int width, int height, ScopedTileCache scope) {
+        StaticMap view = new StaticMap(width, height);
+        view.setProjection(mMap.getProjection());
+        view.setLocation(mRoute.getLatitude(0), mRoute.getLongitude(0));
+        view.setZoom(mMap.getZoom());
+        for (Layer layer : mMap.getLayers())
+            view.addLayer(layer);
+        return view.withTileScope(scope);
+    }
+
+    private void drawTrack(Graphics2D graphics, double[] x, double[] y, int segment,
+                           double positionX, double positionY, double originX, double originY) {
+        if (mTrackColor != null && mTrackWidth > 0) {
+            Path2D.Double path = new Path2D.Double();
+            path.moveTo(x[0] - originX, y[0] - originY);
+            for (int i = 1; i <= segment; i++)
+                path.lineTo(x[i] - originX, y[i] - originY);
+            path.lineTo(positionX, positionY);
+            graphics.setColor(mTrackColor);
+            graphics.setStroke(new BasicStroke(mTrackWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            graphics.draw(path);
+        }
+
+        if (mPositionColor != null && mPositionRadius > 0) {
+            graphics.setColor(mPositionColor);
+            graphics.fill(new Ellipse2D.Double(positionX - mPositionRadius, positionY - mPositionRadius,
+                    2 * mPositionRadius, 2 * mPositionRadius));
+        }
+    }
+
+    /**
+     * Tiles of the map along the route: the frame each one is first and last drawn at.
+     */
+    private class RouteTiles {
+        private final ScopedTileCache mScope;
+        private final StaticMap mView;
+        private final List<TileLayer> mLayers = new ArrayList<>();
+        private final List<Map<TileLayer, List<Tile>>> mFirstFrames = new ArrayList<>();
+        private final List<List<TileKey>> mLastFrames = new ArrayList<>();
+        private final CompletableFuture<?>[] mFetches;
+
+        RouteTiles(int[] offsetsX, int[] offsetsY, ScopedTileCache scope) {
+            mScope = scope;
+            mView = createView(mMap.getWidth(), mMap.getHeight(), scope);
+            for (Layer layer : mMap.getLayers()) {
+                if (layer instanceof TileLayer tileLayer && !mLayers.contains(tileLayer))
+                    mLayers.add(tileLayer);
+            }
+
+            mFetches = new CompletableFuture<?>[offsetsX.length];
+            Map<TileKey, Integer> lastFrames = new HashMap<>();
+            for (int f = 0; f < offsetsX.length; f++) {
+                Map<TileLayer, List<Tile>> firstTiles = new IdentityHashMap<>();
+                PointF offset = mView.computeOffset(new CenterOffset(offsetsX[f], offsetsY[f]));
+                for (TileLayer layer : mLayers) {
+                    String source = layer.getSourceKey();
+                    for (Tile tile : layer.getTiles(mView, offset)) {
+                        TileKey key = new TileKey(source, tile.x(), tile.y(), tile.z());
+                        if (lastFrames.put(key, f) == null)
+                            firstTiles.computeIfAbsent(layer, l -> new ArrayList<>()).add(tile);
+                    }
+                }
+                mFirstFrames.add(firstTiles);
+                mLastFrames.add(new ArrayList<>());
+            }
+            lastFrames.forEach((key, f) -> mLastFrames.get(f).add(key));
+        }
+
+        /**
+         * Prefetches the tiles first drawn at the specified frame.
+         */
+        void prefetch(int frame) {
+            List<CompletableFuture<Void>> fetches = new ArrayList<>();
+            mFirstFrames.get(frame).forEach((layer, tiles) -> fetches.add(layer.prefetch(mView, tiles)));
+            mFetches[frame] = CompletableFuture.allOf(fetches.toArray(new CompletableFuture<?>[0]));
+        }
+
+        /**
+         * Waits for the tiles first drawn at the specified frame, so they aren't fetched again by the draw.
+         */
+        void await(int frame) {
+            mFetches[frame].join();
+        }
+
+        /**
+         * Drops the tiles last drawn at the specified frame.
+         */
+        void release(int frame) {
+            mLastFrames.get(frame).forEach(mScope::release);
+        }
+    }
+
+}
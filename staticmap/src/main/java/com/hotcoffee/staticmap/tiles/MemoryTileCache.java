@@ -0,0 +1,54 @@
+package com.hotcoffee.staticmap.tiles;
+
+import java.awt.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link TileCache} keeping every tile in memory until cleared. Suited to caches with a
+ * bounded lifetime, like the duration of a batch.
+ */
+public class MemoryTileCache implements TileCache {
+
+    private final Map<TileKey, Image> mTiles = new ConcurrentHashMap<>();
+    private final Map<TileKey, TileFreshness> mFreshness = new ConcurrentHashMap<>();
+
+    @Override
+    public Image get(TileKey key) {
+        return mTiles.get(key);
+    }
+
+    @Override
+    public void put(TileKey key, Image tile) {
+        mTiles.put(key, tile);
+    }
+
+    @Override
+    public TileFreshness getFreshness(TileKey key) {
+        return mFreshness.get(key);
+    }
+
+    @Override
+    public void setFreshness(TileKey key, TileFreshness freshness) {
+        if (freshness == null)
+            mFreshness.remove(key);
+        else if (mTiles.containsKey(key))
+            mFreshness.put(key, freshness);
+    }
+
+    /**
+     * Returns the number of cached tiles.
+     */
+    public int size() {
+        return mTiles.size();
+    }
+
+    /**
+     * Drops every cached tile.
+     */
+    public void clear() {
+        mTiles.clear();
+        mFreshness.clear();
+    }
+
+}
@@ -0,0 +1,267 @@
+package com.hotcoffee.staticmap.tiles;
+
+import com.hotcoffee.staticmap.canvas.IntBufferDataBuffer;
+import com.hotcoffee.staticmap.canvas.MappedCanvas;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link TileCache} storing the pixels of decoded tiles off-heap, so caches of many gigabytes
+ * don't weigh on the garbage collector. Pixels are kept in slots of direct buffers, allocated
+ * by slabs of many slots as the cache grows, and slots are reused once their tile is evicted.
+ * <br/>
+ * Tiles are drawn straight from the off-heap pixels: images returned through a {@link TileHandle}
+ * are backed by their slot, which isn't reused before the handle is closed. {@link #get(TileKey)}
+ * returns a copy on the heap instead, since nothing would keep its slot from being reused.
+ * <br/>
+ * Only tiles of the size given at creation are stored. Direct buffers are limited by the
+ * <code>-XX:MaxDirectMemorySize</code> option of the JVM, which defaults to the size of the heap.
+ */
+public class OffHeapTileCache implements TileCache {
+
+    // 256 tiles of 256x256 pixels make slabs of 64 MB.
+    private static final int SLOTS_PER_SLAB = 256;
+
+    private final int mTileSize;
+    private final int mSlotCount;
+    private final int mSlotsPerSlab;
+    private final List<ByteBuffer> mSlabs = new ArrayList<>();
+    // Slots freed by evictions, then the never used slots from mNextSlot on.
+    private final List<Integer> mFreeSlots = new ArrayList<>();
+    private int mNextSlot;
+    private long mAllocatedBytes;
+
+    // In access order, least recently used first.
+    private final LinkedHashMap<TileKey, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<TileKey, TileFreshness> mFreshness = new HashMap<>();
+
+    /**
+     * Creates a cache of tiles of 256 by 256 pixels, using up to <code>maxBytes</code> bytes
+     * of off-heap memory.
+     */
+    public OffHeapTileCache(long maxBytes) {
+        this(maxBytes, 256);
+    }
+
+    /**
+     * Creates a cache of tiles of <code>tileSize</code> by <code>tileSize</code> pixels, using
+     * up to <code>maxBytes</code> bytes of off-heap memory.
+     */
+    public OffHeapTileCache(long maxBytes, int tileSize) {
+        if (tileSize <= 0)
+            throw new IllegalArgumentException("Invalid tile size " + tileSize);
+        long slotBytes = 4L * tileSize * tileSize;
+        if (maxBytes < slotBytes)
+            throw new IllegalArgumentException("maxBytes can't hold a single tile");
+        mTileSize = tileSize;
+        mSlotCount = (int) Math.min(Integer.MAX_VALUE, maxBytes / slotBytes);
+        // A direct buffer holds less than 2 GB.
+        mSlotsPerSlab = (int) Math.max(1, Math.min(SLOTS_PER_SLAB, Integer.MAX_VALUE / slotBytes));
+    }
+
+    /**
+     * Returns a copy on the heap of the cached tile, or <code>null</code> if it isn't cached.
+     * Prefer {@link #acquire(TileKey)}, which doesn't copy the pixels.
+     */
+    @Override
+    public Image get(TileKey key) {
+        try (TileHandle handle = acquire(key)) {
+            if (handle == null)
+                return null;
+
+            BufferedImage tile = (BufferedImage) handle.getTile();
+            BufferedImage copy = new BufferedImage(mTileSize, mTileSize, tile.getColorModel().hasAlpha()
+                    ? BufferedImage.TYPE_INT_ARGB
+                    : BufferedImage.TYPE_INT_RGB);
+            copy.setData(tile.getRaster());
+            return copy;
+        }
+    }
+
+    @Override
+    public void put(TileKey key, Image tile) {
+        if (!fits(tile))
+            return;
+
+        synchronized (this) {
+            Entry previous = mEntries.remove(key);
+            if (previous != null)
+                release(previous, true);
+            Entry entry = store(tile);
+            if (entry != null)
+                mEntries.put(key, entry);
+        }
+    }
+
+    @Override
+    public synchronized TileHandle acquire(TileKey key) {
+        Entry entry = mEntries.get(key);
+        return (entry == null) ? null : pin(entry);
+    }
+
+    @Override
+    public TileHandle acquireOrPut(TileKey key, Image tile) {
+        synchronized (this) {
+            Entry entry = mEntries.get(key);
+            if (entry == null && fits(tile)) {
+                entry = store(tile);
+                if (entry != null)
+                    mEntries.put(key, entry);
+            }
+            if (entry != null)
+                return pin(entry);
+        }
+        // Every slot is in use: the tile is drawn from the heap, without being cached.
+        return new TileHandle(tile, null);
+    }
+
+    @Override
+    public synchronized TileFreshness getFreshness(TileKey key) {
+        return mFreshness.get(key);
+    }
+
+    @Override
+    public synchronized void setFreshness(TileKey key, TileFreshness freshness) {
+        if (freshness == null)
+            mFreshness.remove(key);
+        else if (mEntries.containsKey(key))
+            mFreshness.put(key, freshness);
+    }
+
+    /**
+     * Returns the number of cached tiles.
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory allocated so far.
+     */
+    public synchronized long getAllocatedBytes() {
+        return mAllocatedBytes;
+    }
+
+    /**
+     * Drops every tile not held through a handle. The off-heap memory is kept for the next tiles.
+     */
+    public synchronized void clear() {
+        Iterator<Map.Entry<TileKey, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<TileKey, Entry> next = iterator.next();
+            if (next.getValue().mReferences == 0) {
+                iterator.remove();
+                mFreshness.remove(next.getKey());
+                release(next.getValue(), true);
+            }
+        }
+    }
+
+    private boolean fits(Image tile) {
+        return tile instanceof BufferedImage image && image.getWidth() == mTileSize && image.getHeight() == mTileSize;
+    }
+
+    /**
+     * Copies the tile into a free slot, evicting the least recently used tile if needed. Returns
+     * <code>null</code> if every slot holds a tile being drawn.
+     */
+    private Entry store(Image tile) {
+        int slot = allocateSlot();
+        if (slot < 0)
+            return null;
+
+        BufferedImage image = (BufferedImage) tile;
+        IntBuffer pixels = slotBuffer(slot);
+        int[] row = new int[mTileSize];
+        boolean opaque = true;
+        for (int y = 0; y < mTileSize; y++) {
+            image.getRGB(0, y, mTileSize, 1, row, 0, mTileSize);
+            for (int x = 0; x < mTileSize && opaque; x++)
+                opaque = (row[x] >>> 24) == 0xFF;
+            pixels.put(y * mTileSize, row);
+        }
+
+        IntBufferDataBuffer buffer = new IntBufferDataBuffer(pixels, mTileSize * mTileSize);
+        return new Entry(slot, MappedCanvas.createImage(buffer, mTileSize, mTileSize, !opaque));
+    }
+
+    private int allocateSlot() {
+        if (!mFreeSlots.isEmpty())
+            return mFreeSlots.remove(mFreeSlots.size() - 1);
+        if (mNextSlot < mSlotCount)
+            return mNextSlot++;
+
+        Iterator<Map.Entry<TileKey, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<TileKey, Entry> next = iterator.next();
+            Entry entry = next.getValue();
+            if (entry.mReferences == 0) {
+                iterator.remove();
+                mFreshness.remove(next.getKey());
+                entry.mEvicted = true;
+                entry.mFreed = true;
+                return entry.mSlot;
+            }
+        }
+        return -1;
+    }
+
+    private IntBuffer slotBuffer(int slot) {
+        int slotBytes = 4 * mTileSize * mTileSize;
+        int slab = slot / mSlotsPerSlab;
+        while (mSlabs.size() <= slab) {
+            int slots = Math.min(mSlotsPerSlab, mSlotCount - mSlabs.size() * mSlotsPerSlab);
+            mSlabs.add(ByteBuffer.allocateDirect(slots * slotBytes).order(ByteOrder.nativeOrder()));
+            mAllocatedBytes += (long) slots * slotBytes;
+        }
+        return mSlabs.get(slab).slice((slot % mSlotsPerSlab) * slotBytes, slotBytes)
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+    }
+
+    private TileHandle pin(Entry entry) {
+        entry.mReferences++;
+        return new TileHandle(entry.mImage, () -> {
+            synchronized (this) {
+                entry.mReferences--;
+                release(entry, false);
+            }
+        });
+    }
+
+    /**
+     * Frees the slot of an entry no longer cached, once no handle holds it.
+     */
+    private void release(Entry entry, boolean evicted) {
+        entry.mEvicted |= evicted;
+        if (entry.mEvicted && entry.mReferences == 0 && !entry.mFreed) {
+            entry.mFreed = true;
+            mFreeSlots.add(entry.mSlot);
+        }
+    }
+
+    private static final class Entry {
+        private final int mSlot;
+        private final BufferedImage mImage;
+        // Number of open handles on the tile.
+        private int mReferences;
+        private boolean mEvicted;
+        private boolean mFreed;
+
+        Entry(int slot, BufferedImage image) {
+            mSlot = slot;
+            mImage = image;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.hotcoffee.staticmap.tiles;
+
+import java.awt.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tiles kept for the duration of a render, like a batch of maps or the regions of a large map,
+ * so each tile is fetched and decoded once whatever the number of layers and maps drawing it.
+ * While the render runs, each layer uses a {@link #over(TileCache) view} of it in front of its
+ * own cache, read and written through. The scope holds a handle on each of its tiles, so they
+ * aren't evicted from the caches behind it until {@link #release(TileKey) released}, or until
+ * the scope is closed.
+ */
+public class ScopedTileCache implements AutoCloseable {
+
+    private final Map<TileKey, TileHandle> mTiles = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a view of the scope in front of the specified cache, which may be <code>null</code>.
+     */
+    public TileCache over(TileCache cache) {
+        return new View(cache);
+    }
+
+    /**
+     * Drops a tile no longer needed by the render. It stays in the caches behind the scope.
+     */
+    public void release(TileKey key) {
+        TileHandle handle = mTiles.remove(key);
+        if (handle != null)
+            handle.close();
+    }
+
+    /**
+     * Returns the number of tiles held by the scope.
+     */
+    public int size() {
+        return mTiles.size();
+    }
+
+    /**
+     * Releases every tile held by the scope.
+     */
+    @Override
+    public void close() {
+        mTiles.keySet().forEach(this::release);
+    }
+
+    /**
+     * Holds the specified handle for the scope, unless it already holds the tile, and returns a
+     * handle on the tile held. Handles returned by the views don't release anything: the tiles
+     * stay held by the scope.
+     */
+    private TileHandle hold(TileKey key, TileHandle handle) {
+        TileHandle held = mTiles.putIfAbsent(key, handle);
+        if (held == null)
+            held = handle;
+        else
+            handle.close();
+        return new TileHandle(held.getTile(), null);
+    }
+
+    private class View implements TileCache {
+
+        private final TileCache mCache;
+
+        View(TileCache cache) {
+            mCache = cache;
+        }
+
+        @Override
+        public Image get(TileKey key) {
+            if (mCache != null)
+                return mCache.get(key);
+            TileHandle held = mTiles.get(key);
+            return (held == null) ? null : held.getTile();
+        }
+
+        @Override
+        public void put(TileKey key, Image tile) {
+            if (mCache != null)
+                mCache.put(key, tile);
+            else
+                mTiles.put(key, new TileHandle(tile, null));
+        }
+
+        @Override
+        public TileHandle acquire(TileKey key) {
+            TileHandle held = mTiles.get(key);
+            if (held != null)
+                return new TileHandle(held.getTile(), null);
+            if (mCache == null)
+                return null;
+            TileHandle handle = mCache.acquire(key);
+            return (handle == null) ? null : hold(key, handle);
+        }
+
+        @Override
+        public TileHandle acquireOrPut(TileKey key, Image tile) {
+            TileHandle held = mTiles.get(key);
+            if (held != null)
+                return new TileHandle(held.getTile(), null);
+            return hold(key, (mCache == null) ? new TileHandle(tile, null) : mCache.acquireOrPut(key, tile));
+        }
+
+        @Override
+        public TileFreshness getFreshness(TileKey key) {
+            return (mCache == null) ? null : mCache.getFreshness(key);
+        }
+
+        @Override
+        public void setFreshness(TileKey key, TileFreshness freshness) {
+            if (mCache != null)
+                mCache.setFreshness(key, freshness);
+        }
+
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.hotcoffee.staticmap.tiles;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link TileCache} meant to be shared by every layer and map of the JVM, so concurrent renders
+ * of the same tiles hold a single decoded copy of each.
+ * <br/>
+ * Tiles are weighed by the size of their pixels. Once the store weighs more than its maximum,
+ * the least recently used tiles are evicted, except those held through a {@link TileHandle}:
+ * tiles being drawn are never dropped, so the store may exceed its maximum while many renders
+ * run at once, and shrinks back as they complete.
+ */
+public class SharedTileStore implements TileCache {
+
+    private static final SharedTileStore DEFAULT = new SharedTileStore(128L * 1024 * 1024);
+
+    private final long mMaxWeight;
+    // In access order, least recently used first.
+    private final LinkedHashMap<TileKey, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<TileKey, TileFreshness> mFreshness = new HashMap<>();
+    private long mWeight;
+
+    /**
+     * Creates a store keeping about <code>maxWeight</code> bytes of unused tiles.
+     */
+    public SharedTileStore(long maxWeight) {
+        if (maxWeight < 0)
+            throw new IllegalArgumentException("maxWeight must be positive");
+        mMaxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the store shared by the JVM, keeping up to 128 MB of tiles.
+     */
+    public static SharedTileStore getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public synchronized Image get(TileKey key) {
+        Entry entry = mEntries.get(key);
+        return (entry == null) ? null : entry.mTile;
+    }
+
+    @Override
+    public synchronized void put(TileKey key, Image tile) {
+        Entry entry = new Entry(tile, weigh(tile));
+        Entry previous = mEntries.put(key, entry);
+        if (previous != null)
+            mWeight -= previous.mWeight;
+        mWeight += entry.mWeight;
+        evict();
+    }
+
+    @Override
+    public synchronized TileHandle acquire(TileKey key) {
+        Entry entry = mEntries.get(key);
+        return (entry == null) ? null : pin(entry);
+    }
+
+    @Override
+    public synchronized TileHandle acquireOrPut(TileKey key, Image tile) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            entry = new Entry(tile, weigh(tile));
+            mEntries.put(key, entry);
+            mWeight += entry.mWeight;
+        }
+        TileHandle handle = pin(entry);
+        evict();
+        return handle;
+    }
+
+    @Override
+    public synchronized TileFreshness getFreshness(TileKey key) {
+        return mFreshness.get(key);
+    }
+
+    @Override
+    public synchronized void setFreshness(TileKey key, TileFreshness freshness) {
+        if (freshness == null)
+            mFreshness.remove(key);
+        else if (mEntries.containsKey(key))
+            mFreshness.put(key, freshness);
+    }
+
+    /**
+     * Returns the number of bytes of pixel data held by the store.
+     */
+    public synchronized long getWeight() {
+        return mWeight;
+    }
+
+    /**
+     * Returns the number of stored tiles.
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Drops every tile not held through a handle.
+     */
+    public synchronized void clear() {
+        Iterator<Map.Entry<TileKey, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<TileKey, Entry> next = iterator.next();
+            if (next.getValue().mReferences == 0)
+                remove(iterator, next);
+        }
+    }
+
+    private TileHandle pin(Entry entry) {
+        entry.mReferences++;
+        return new TileHandle(entry.mTile, () -> release(entry));
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.mReferences--;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<TileKey, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mWeight > mMaxWeight && iterator.hasNext()) {
+            Map.Entry<TileKey, Entry> next = iterator.next();
+            if (next.getValue().mReferences == 0)
+                remove(iterator, next);
+        }
+    }
+
+    private void remove(Iterator<Map.Entry<TileKey, Entry>> iterator, Map.Entry<TileKey, Entry> entry) {
+        iterator.remove();
+        mFreshness.remove(entry.getKey());
+        mWeight -= entry.getValue().mWeight;
+    }
+
+    private static long weigh(Image tile) {
+        if (tile instanceof BufferedImage image) {
+            DataBuffer buffer = image.getRaster().getDataBuffer();
+            return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        }
+        return 4L * Math.max(0, tile.getWidth(null)) * Math.max(0, tile.getHeight(null));
+    }
+
+    private static final class Entry {
+        private final Image mTile;
+        private final long mWeight;
+        // Number of open handles on the tile.
+        private int mReferences;
+
+        Entry(Image tile, long weight) {
+            mTile = tile;
+            mWeight = weight;
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.hotcoffee.staticmap.tiles;
+
+import java.awt.*;
+
+/**
+ * Keeps decoded tiles so they can be drawn again without being fetched and decoded.
+ * Implementations must be safe for use by concurrent draws.
+ */
+public interface TileCache {
+
+    /**
+     * Returns the cached tile, or <code>null</code> if it isn't cached. The returned image must
+     * stay valid once the tile is evicted.
+     */
+    Image get(TileKey key);
+
+    /**
+     * Stores a tile into the cache.
+     */
+    void put(TileKey key, Image tile);
+
+    /**
+     * Returns a handle on the cached tile, or <code>null</code> if it isn't cached. The tile
+     * isn't evicted before the handle is closed. Defaults to a handle on {@link #get(TileKey)}.
+     */
+    default TileHandle acquire(TileKey key) {
+        Image tile = get(key);
+        return (tile == null) ? null : new TileHandle(tile, null);
+    }
+
+    /**
+     * Stores a tile into the cache unless one is already cached for the same key, and returns
+     * a handle on the cached tile. Concurrent loads of a tile thus end up sharing the same
+     * image. Defaults to {@link #put(TileKey, Image)} and a handle on the specified tile.
+     */
+    default TileHandle acquireOrPut(TileKey key, Image tile) {
+        put(key, tile);
+        return new TileHandle(tile, null);
+    }
+
+    /**
+     * Returns the freshness of the cached tile, or <code>null</code> if it isn't known.
+     * Caches not keeping freshness always return <code>null</code>, so their tiles are never
+     * revalidated.
+     */
+    default TileFreshness getFreshness(TileKey key) {
+        return null;
+    }
+
+    /**
+     * Stores the freshness of a tile. Ignored by caches not keeping freshness, and for tiles
+     * that aren't cached.
+     */
+    default void setFreshness(TileKey key, TileFreshness freshness) {
+    }
+
+}
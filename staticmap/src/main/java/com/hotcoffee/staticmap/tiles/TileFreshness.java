@@ -0,0 +1,109 @@
+package com.hotcoffee.staticmap.tiles;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+/**
+ * HTTP validators and expiry of a cached tile, used to revalidate it with a conditional
+ * request once it is stale.
+ *
+ * @param etag         value of the <code>ETag</code> header, or <code>null</code>.
+ * @param lastModified value of the <code>Last-Modified</code> header, or <code>null</code>.
+ * @param expires      time after which the tile is stale, in milliseconds since the epoch.
+ */
+public record TileFreshness(String etag, String lastModified, long expires) {
+
+    // Longest lifetime given to tiles having a Last-Modified date but no explicit lifetime.
+    private static final long MAX_HEURISTIC_LIFETIME = 24 * 3600 * 1000L;
+
+    /**
+     * Returns whether the tile should be revalidated at the specified time.
+     */
+    public boolean isStale(long now) {
+        return now >= expires;
+    }
+
+    /**
+     * Returns the same validators, expiring at the specified time.
+     */
+    public TileFreshness expiringAt(long expires) {
+        return new TileFreshness(etag, lastModified, expires);
+    }
+
+    /**
+     * Returns the freshness of a response received at the specified time, from its headers.
+     * The lifetime is taken from <code>Cache-Control</code>, then <code>Expires</code>, then
+     * estimated as 10% of the time since <code>Last-Modified</code>. Validators missing from
+     * the response are taken from <code>previous</code>, as a response to a conditional request
+     * may omit them. Returns <code>null</code> if the response has neither validators nor lifetime.
+     *
+     * @param headers  returns the value of a header from its name, or <code>null</code>.
+     * @param previous freshness of the tile being revalidated, or <code>null</code>.
+     */
+    public static TileFreshness fromHeaders(UnaryOperator<String> headers, long now, TileFreshness previous) {
+        String etag = headers.apply("ETag");
+        String lastModified = headers.apply("Last-Modified");
+        if (previous != null) {
+            etag = (etag == null) ? previous.etag() : etag;
+            lastModified = (lastModified == null) ? previous.lastModified() : lastModified;
+        }
+
+        Long lifetime = parseMaxAge(headers.apply("Cache-Control"));
+        if (lifetime == null) {
+            String expires = headers.apply("Expires");
+            if (expires != null) {
+                Long expiry = parseDate(expires);
+                Long date = parseDate(headers.apply("Date"));
+                // Expiry dates are relative to the clock of the server.
+                lifetime = (expiry == null) ? 0 : expiry - ((date == null) ? now : date);
+            }
+        }
+        if (lifetime == null && lastModified != null) {
+            Long modified = parseDate(lastModified);
+            Long date = parseDate(headers.apply("Date"));
+            if (modified != null)
+                lifetime = Math.min(MAX_HEURISTIC_LIFETIME, (((date == null) ? now : date) - modified) / 10);
+        }
+
+        if (lifetime == null) {
+            if (etag == null && lastModified == null)
+                return null;
+            lifetime = 0L;
+        }
+        return new TileFreshness(etag, lastModified, now + Math.max(0, lifetime));
+    }
+
+    private static Long parseMaxAge(String cacheControl) {
+        if (cacheControl == null)
+            return null;
+
+        Long maxAge = null;
+        for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+            directive = directive.trim();
+            if (directive.equals("no-cache") || directive.equals("no-store"))
+                return 0L;
+            if (directive.startsWith("max-age=")) {
+                try {
+                    maxAge = Long.parseLong(directive.substring(8).replace("\"", "").trim()) * 1000;
+                } catch (NumberFormatException e) {
+                    return 0L;
+                }
+            }
+        }
+        return maxAge;
+    }
+
+    private static Long parseDate(String value) {
+        if (value == null)
+            return null;
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.hotcoffee.staticmap.tiles;
+
+import java.awt.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tile taken from a {@link TileCache}, which may keep it from being evicted until the handle
+ * is closed. Closing a handle more than once has no effect.
+ */
+public final class TileHandle implements AutoCloseable {
+
+    private final Image mTile;
+    private final Runnable mRelease;
+    private final AtomicBoolean mClosed = new AtomicBoolean();
+
+    /**
+     * Creates a handle on the specified tile, running <code>release</code> when closed.
+     *
+     * @param release action releasing the tile, or <code>null</code> if there is nothing to release.
+     */
+    public TileHandle(Image tile, Runnable release) {
+        mTile = tile;
+        mRelease = release;
+    }
+
+    public Image getTile() {
+        return mTile;
+    }
+
+    @Override
+    public void close() {
+        if (mRelease != null && mClosed.compareAndSet(false, true))
+            mRelease.run();
+    }
+
+}
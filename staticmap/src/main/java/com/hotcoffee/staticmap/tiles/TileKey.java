@@ -0,0 +1,12 @@
+package com.hotcoffee.staticmap.tiles;
+
+/**
+ * Identifies a tile of a tile source.
+ *
+ * @param source key of the source serving the tile, see {@link com.hotcoffee.staticmap.layers.TileLayer#getSourceKey()}
+ * @param x      column of the tile
+ * @param y      row of the tile
+ * @param z      zoom level of the tile
+ */
+public record TileKey(String source, int x, int y, int z) {
+}
@@ -0,0 +1,15 @@
+package com.hotcoffee.staticmap.tiles;
+
+/**
+ * Thrown when a tile can't be requested from its provider: the budget of the provider is
+ * exhausted, or no request could be made before the maximum wait of its {@link TileRateLimiter}.
+ */
+public class TileRateLimitException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TileRateLimitException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.hotcoffee.staticmap.tiles;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting the tiles requested from a provider. Tokens are added at a steady
+ * rate up to a burst size, and each tile request takes one. An optional budget caps the total
+ * number of tiles requested.
+ * <br/>
+ * Interactive requests are served first: background requests wait as long as an interactive
+ * one is waiting. A request not served within the maximum wait fails with a
+ * {@link TileRateLimitException} instead of blocking, so callers can back off.
+ * <br/>
+ * Limiters returned by {@link #forProvider(String, double, int)} are shared by the whole JVM,
+ * so every layer requesting tiles from the same provider draws from the same bucket.
+ */
+public class TileRateLimiter {
+
+    private static final Map<String, TileRateLimiter> PROVIDERS = new ConcurrentHashMap<>();
+
+    /**
+     * Urgency of a tile request.
+     */
+    public enum Priority {
+        /**
+         * Request needed by a render someone is waiting for.
+         */
+        INTERACTIVE,
+        /**
+         * Request made ahead of time, like seeding or prefetching a cache.
+         */
+        BACKGROUND
+    }
+
+    private final double mTokensPerNano;
+    private final double mBurst;
+    private long mMaxWaitNanos = TimeUnit.SECONDS.toNanos(30);
+    private long mBudget = Long.MAX_VALUE;
+
+    private double mTokens;
+    private long mLastRefill = System.nanoTime();
+    private long mRequested;
+    private int mInteractiveWaiting;
+
+    /**
+     * Creates a limiter allowing <code>tilesPerSecond</code> requests per second on average,
+     * and up to <code>burst</code> requests at once.
+     */
+    public TileRateLimiter(double tilesPerSecond, int burst) {
+        if (!(tilesPerSecond > 0))
+            throw new IllegalArgumentException("tilesPerSecond must be positive");
+        if (burst < 1)
+            throw new IllegalArgumentException("burst must be at least 1");
+        mTokensPerNano = tilesPerSecond / TimeUnit.SECONDS.toNanos(1);
+        mBurst = burst;
+        mTokens = burst;
+    }
+
+    /**
+     * Returns the limiter shared by the layers requesting tiles from the specified provider,
+     * creating it with the specified rate and burst if there is none yet. A provider is usually
+     * identified by its host name.
+     */
+    public static TileRateLimiter forProvider(String provider, double tilesPerSecond, int burst) {
+        return PROVIDERS.computeIfAbsent(provider, p -> new TileRateLimiter(tilesPerSecond, burst));
+    }
+
+    /**
+     * Returns the limiter shared by the layers requesting tiles from the specified provider,
+     * or <code>null</code> if there is none.
+     */
+    public static TileRateLimiter forProvider(String provider) {
+        return PROVIDERS.get(provider);
+    }
+
+    /**
+     * Sets the longest time, in milliseconds, a request waits for its turn before failing.
+     * Defaults to 30 seconds.
+     */
+    public synchronized void setMaxWait(long maxWaitMillis) {
+        mMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Sets the total number of tiles that can be requested through this limiter. Once reached,
+     * requests fail immediately. Unlimited by default.
+     */
+    public synchronized void setBudget(long tiles) {
+        mBudget = tiles;
+    }
+
+    /**
+     * Returns the number of tiles requested through this limiter so far.
+     */
+    public synchronized long getRequested() {
+        return mRequested;
+    }
+
+    /**
+     * Waits for the turn of a request of the specified priority.
+     *
+     * @throws TileRateLimitException if the budget is exhausted, or if the request couldn't be
+     *                                served within the maximum wait.
+     */
+    public void acquire(Priority priority) {
+        boolean interactive = priority == Priority.INTERACTIVE;
+        synchronized (this) {
+            long deadline = System.nanoTime() + mMaxWaitNanos;
+            if (interactive)
+                mInteractiveWaiting++;
+            try {
+                while (true) {
+                    if (mRequested >= mBudget)
+                        throw new TileRateLimitException("Tile budget of " + mBudget + " exhausted");
+
+                    long now = System.nanoTime();
+                    refill(now);
+                    boolean yielding = !interactive && mInteractiveWaiting > 0;
+                    if (!yielding && mTokens >= 1) {
+                        mTokens -= 1;
+                        mRequested++;
+                        return;
+                    }
+
+                    long remaining = deadline - now;
+                    if (remaining <= 0)
+                        throw new TileRateLimitException("No tile request allowed within "
+                                + TimeUnit.NANOSECONDS.toMillis(mMaxWaitNanos) + " ms");
+
+                    // Yielding requests are woken up when an interactive request is served.
+                    long wait = yielding ? remaining : (long) Math.ceil((1 - mTokens) / mTokensPerNano);
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, Math.min(wait, remaining)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TileRateLimitException("Interrupted while waiting for a tile request");
+            } finally {
+                if (interactive) {
+                    mInteractiveWaiting--;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private void refill(long now) {
+        mTokens = Math.min(mBurst, mTokens + (now - mLastRefill) * mTokensPerNano);
+        mLastRefill = now;
+    }
+
+}
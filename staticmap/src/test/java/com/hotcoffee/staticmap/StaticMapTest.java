@@ -3,16 +3,21 @@ package com.hotcoffee.staticmap;
 import com.hotcoffee.staticmap.geo.Location;
 import com.hotcoffee.staticmap.geo.LocationBounds;
 import com.hotcoffee.staticmap.geo.LocationPath;
+import com.hotcoffee.staticmap.layers.CenterOffset;
+import com.hotcoffee.staticmap.layers.TileLayer;
 import com.hotcoffee.staticmap.layers.components.LineString;
 import org.junit.jupiter.api.Test;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -61,4 +66,73 @@ class StaticMapTest {
 		assertThat(staticMap.getZoom()).isEqualTo(14);
 	}
 
-}
\ No newline at end of file
+	@Test
+	void it_should_draw_regions_like_the_whole_map() {
+		// Given a map holding a tile layer and a line
+		LocationPath locationPath = new LocationPath();
+		locationPath.addLocation(new Location(50.52, 5.46));
+		locationPath.addLocation(new Location(50.49, 5.51));
+		locationPath.addLocation(new Location(50.51, 5.55));
+		StaticMap staticMap = new StaticMap(350, 270);
+		staticMap.setLocation(50.5, 5.5);
+		staticMap.setZoom(13);
+		staticMap.addLayer(new TileLayer() {
+			@Override
+			public Image getTile(int tileX, int tileY, int tileZ) {
+				BufferedImage tile = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+				Graphics2D graphics = tile.createGraphics();
+				graphics.setColor(new Color((tileX * 7919 + tileY * 104729) & 0xFFFFFF));
+				graphics.fillRect(0, 0, 256, 256);
+				graphics.setColor(Color.BLACK);
+				graphics.drawOval(10, 10, 200, 200);
+				graphics.dispose();
+				return tile;
+			}
+		});
+		staticMap.addLayer(new LineString(locationPath).strokeWidth(5));
+
+		// When it is drawn as a whole and split in regions
+		BufferedImage whole = new BufferedImage(350, 270, BufferedImage.TYPE_INT_ARGB);
+		staticMap.drawInto(whole);
+		staticMap.setRegionSize(100);
+		BufferedImage regions = new BufferedImage(350, 270, BufferedImage.TYPE_INT_ARGB);
+		staticMap.drawInto(regions);
+
+		// Then both images should be identical
+		for (int y = 0; y < 270; y++) {
+			for (int x = 0; x < 350; x++) {
+				assertThat(regions.getRGB(x, y)).as("pixel %d,%d", x, y).isEqualTo(whole.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	void it_should_fetch_tiles_once_when_drawing_regions() {
+		// Given a map split in regions smaller than its tiles
+		AtomicInteger fetches = new AtomicInteger();
+		AtomicBoolean cacheChanged = new AtomicBoolean();
+		StaticMap staticMap = new StaticMap(350, 270);
+		staticMap.setLocation(50.5, 5.5);
+		staticMap.setZoom(13);
+		TileLayer layer = new TileLayer() {
+			@Override
+			public Image getTile(int tileX, int tileY, int tileZ) {
+				fetches.incrementAndGet();
+				if (getTileCache() != null)
+					cacheChanged.set(true);
+				return new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+			}
+		};
+		staticMap.addLayer(layer);
+		staticMap.setRegionSize(100);
+
+		// When it is drawn
+		staticMap.drawInto(new BufferedImage(350, 270, BufferedImage.TYPE_INT_ARGB));
+
+		// Then each tile should have been fetched once, without the layer being modified meanwhile
+		assertThat(fetches.get()).isEqualTo(layer.getTiles(staticMap, staticMap.computeOffset(new CenterOffset(0, 0))).size());
+		assertThat(cacheChanged).isFalse();
+		assertThat(layer.getTileCache()).isNull();
+	}
+
+}
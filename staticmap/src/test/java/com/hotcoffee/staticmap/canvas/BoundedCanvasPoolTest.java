@@ -0,0 +1,62 @@
+package com.hotcoffee.staticmap.canvas;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedCanvasPoolTest {
+
+    @Test
+    void it_should_reuse_released_canvases_of_the_same_kind() {
+        // Given a pool holding a released canvas
+        BoundedCanvasPool pool = new BoundedCanvasPool(1024 * 1024);
+        BufferedImage canvas = pool.acquire(100, 50, BufferedImage.TYPE_INT_ARGB);
+        pool.release(canvas);
+
+        // When canvases are acquired again
+        BufferedImage otherSize = pool.acquire(50, 100, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage otherType = pool.acquire(100, 50, BufferedImage.TYPE_INT_RGB);
+        BufferedImage sameKind = pool.acquire(100, 50, BufferedImage.TYPE_INT_ARGB);
+
+        // Then only the request matching size and type should get the pooled one
+        assertThat(otherSize).isNotSameAs(canvas);
+        assertThat(otherType).isNotSameAs(canvas);
+        assertThat(sameKind).isSameAs(canvas);
+        assertThat(pool.getPooledBytes()).isZero();
+    }
+
+    @Test
+    void it_should_not_keep_more_than_its_maximum_size() {
+        // Given a pool able to hold a single 100x100 ARGB canvas
+        BoundedCanvasPool pool = new BoundedCanvasPool(100 * 100 * 4);
+
+        // When two of them are released
+        pool.release(new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB));
+        pool.release(new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB));
+
+        // Then only the first one should be kept
+        assertThat(pool.getPooledBytes()).isEqualTo(100 * 100 * 4);
+        pool.clear();
+        assertThat(pool.getPooledBytes()).isZero();
+    }
+
+    @Test
+    void it_should_forget_sizes_no_longer_pooled() {
+        // Given a pool
+        BoundedCanvasPool pool = new BoundedCanvasPool(100 * 100 * 4);
+
+        // When canvases of many sizes are released, then acquired again
+        for (int size = 10; size < 50; size++) {
+            BufferedImage canvas = pool.acquire(size, size, BufferedImage.TYPE_INT_ARGB);
+            pool.release(canvas);
+            pool.acquire(size, size, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        // Then no size should be left in the pool
+        assertThat(pool.getKindCount()).isZero();
+        assertThat(pool.getPooledBytes()).isZero();
+    }
+
+}
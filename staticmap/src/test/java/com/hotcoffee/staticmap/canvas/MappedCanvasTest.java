@@ -0,0 +1,43 @@
+package com.hotcoffee.staticmap.canvas;
+
+import com.hotcoffee.staticmap.StaticMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedCanvasTest {
+
+    @Test
+    void it_should_draw_a_map_into_a_mapped_file(@TempDir Path directory) throws IOException {
+        // Given a map and a canvas backed by a file
+        StaticMap staticMap = new StaticMap(320, 200);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(8);
+        staticMap.addLayer((graphics, mp) -> {
+            graphics.setColor(Color.BLUE);
+            graphics.fillRect(10, 20, 30, 40);
+        });
+        Path file = directory.resolve("canvas.raw");
+
+        // When the map is drawn into it
+        try (MappedCanvas canvas = MappedCanvas.create(file, 320, 200)) {
+            BufferedImage image = canvas.getImage();
+            staticMap.drawInto(image);
+
+            // Then the pixels should be readable back from the image
+            assertThat(image.getRGB(0, 0)).isEqualTo(Color.WHITE.getRGB());
+            assertThat(image.getRGB(15, 25)).isEqualTo(Color.BLUE.getRGB());
+        }
+
+        // And stored in the file
+        assertThat(Files.size(file)).isEqualTo(320L * 200 * 4);
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.hotcoffee.staticmap.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DouglasPeuckerTest {
+
+    @Test
+    void it_should_drop_points_closer_than_the_tolerance() {
+        // Given a line with a small bump and a large one
+        double[] x = {0, 1, 2, 3, 4, 5, 6};
+        double[] y = {0, 0.1, 0, 0, 5, 0, 0};
+
+        // When it is simplified
+        int[] kept = DouglasPeucker.simplify(x, y, x.length, 0.5);
+
+        // Then only the ends and the large bump should remain
+        assertThat(kept).containsExactly(0, 3, 4, 5, 6);
+    }
+
+    @Test
+    void it_should_keep_short_lines() {
+        // Given a line of two points
+        double[] x = {0, 1};
+        double[] y = {0, 1};
+
+        // When it is simplified
+        int[] kept = DouglasPeucker.simplify(x, y, 2, 10);
+
+        // Then both points should be kept
+        assertThat(kept).containsExactly(0, 1);
+    }
+
+}
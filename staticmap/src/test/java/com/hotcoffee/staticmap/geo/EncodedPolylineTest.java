@@ -0,0 +1,68 @@
+package com.hotcoffee.staticmap.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class EncodedPolylineTest {
+
+    // Example of the format documentation.
+    private static final String ENCODED = "_p~iF~ps|U_ulLnnqC_mqNvxq`@";
+
+    @Test
+    void it_should_decode_polylines() {
+        // Given an encoded polyline
+        // When it is decoded
+        LocationPath path = LocationPath.fromPolyline(ENCODED);
+
+        // Then it should hold its locations
+        assertThat(path.getSize()).isEqualTo(3);
+        assertThat(path.getLatitude(0)).isCloseTo(38.5, within(1e-9));
+        assertThat(path.getLongitude(0)).isCloseTo(-120.2, within(1e-9));
+        assertThat(path.getLatitude(1)).isCloseTo(40.7, within(1e-9));
+        assertThat(path.getLongitude(1)).isCloseTo(-120.95, within(1e-9));
+        assertThat(path.getLatitude(2)).isCloseTo(43.252, within(1e-9));
+        assertThat(path.getLongitude(2)).isCloseTo(-126.453, within(1e-9));
+    }
+
+    @Test
+    void it_should_encode_what_it_decodes() {
+        // Given a decoded polyline
+        LocationPath path = EncodedPolyline.decode(ENCODED);
+
+        // When it is encoded again
+        String encoded = EncodedPolyline.encode(path);
+
+        // Then the polyline should be unchanged
+        assertThat(encoded).isEqualTo(ENCODED);
+    }
+
+    @Test
+    void it_should_support_other_precisions() {
+        // Given a path encoded with 6 decimals
+        LocationPath path = new LocationPath();
+        path.addLocation(50.123456, 5.654321);
+        path.addLocation(50.123789, 5.654000);
+        String encoded = EncodedPolyline.encode(path, 6);
+
+        // When it is decoded with the same precision
+        LocationPath decoded = EncodedPolyline.decode(encoded, 6);
+
+        // Then no decimal should be lost
+        assertThat(decoded.getLatitude(1)).isCloseTo(50.123789, within(1e-9));
+        assertThat(decoded.getLongitude(1)).isCloseTo(5.654000, within(1e-9));
+    }
+
+    @Test
+    void it_should_reject_truncated_polylines() {
+        // Given a truncated polyline
+        String truncated = ENCODED.substring(0, ENCODED.length() - 1);
+
+        // When it is decoded, then it should be rejected
+        assertThatThrownBy(() -> EncodedPolyline.decode(truncated))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.hotcoffee.staticmap.geo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class EncodedTrackTest {
+
+    @Test
+    void it_should_read_the_coordinates_it_wrote() throws IOException {
+        // Given a path written with elevations and times
+        LocationPath path = track(1000);
+        double[] elevations = new double[path.getSize()];
+        long[] times = new long[path.getSize()];
+        for (int i = 0; i < elevations.length; i++) {
+            elevations[i] = 120 + Math.sin(i * 0.1) * 30;
+            times[i] = 1_700_000_000_000L + i * 1000L;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TrackWriter(path).elevations(elevations).times(times).writeTo(out);
+
+        // When it is read back
+        EncodedTrack track = EncodedTrack.wrap(ByteBuffer.wrap(out.toByteArray()));
+
+        // Then every column should match, within the precision of the format
+        assertThat(track.getSize()).isEqualTo(path.getSize());
+        for (int i = 0; i < path.getSize(); i++) {
+            assertThat(track.getLatitude(i)).isCloseTo(path.getLatitude(i), within(1e-7));
+            assertThat(track.getLongitude(i)).isCloseTo(path.getLongitude(i), within(1e-7));
+            assertThat(track.getElevation(i)).isCloseTo(elevations[i], within(0.01));
+            assertThat(track.getTime(i)).isEqualTo(times[i]);
+        }
+        assertThat(track.getBounds()).extracting("xmin", "xmax", "ymin", "ymax")
+                .containsExactly(path.getBounds().xmin, path.getBounds().xmax, path.getBounds().ymin, path.getBounds().ymax);
+    }
+
+    @Test
+    void it_should_read_ranges_across_blocks() throws IOException {
+        // Given an encoded track
+        LocationPath path = track(500);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TrackWriter(path).writeTo(out);
+        EncodedTrack track = EncodedTrack.wrap(ByteBuffer.wrap(out.toByteArray()));
+
+        // When a range spanning several blocks is read
+        double[] latitudes = new double[300];
+        double[] longitudes = new double[300];
+        track.getCoordinates(100, 300, latitudes, longitudes);
+
+        // Then it should match the path, and take a few bytes per point
+        for (int i = 0; i < 300; i++) {
+            assertThat(latitudes[i]).isCloseTo(path.getLatitude(100 + i), within(1e-7));
+            assertThat(longitudes[i]).isCloseTo(path.getLongitude(100 + i), within(1e-7));
+        }
+        assertThat(out.size()).isLessThan(path.getSize() * 8);
+    }
+
+    @Test
+    void it_should_map_tracks_from_files(@TempDir Path folder) throws IOException {
+        // Given a track written to a file
+        LocationPath path = track(200);
+        Path file = folder.resolve("track.bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            new TrackWriter(path).writeTo(out);
+        }
+
+        // When the file is mapped
+        EncodedTrack track = EncodedTrack.map(file);
+
+        // Then the track should be readable, without elevations nor times
+        assertThat(track.getSize()).isEqualTo(200);
+        assertThat(track.getLongitude(199)).isCloseTo(path.getLongitude(199), within(1e-7));
+        assertThat(track.hasElevations()).isFalse();
+        assertThat(track.hasTimes()).isFalse();
+    }
+
+    private static LocationPath track(int size) {
+        LocationPath path = new LocationPath();
+        for (int i = 0; i < size; i++)
+            path.addLocation(new Location(50.0 + 0.001 * Math.sin(i * 0.05), 5.0 + i * 0.0001));
+        return path;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.hotcoffee.staticmap.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocationPathTest {
+
+    @Test
+    void it_should_keep_its_bounds_up_to_date() {
+        // Given a path
+        LocationPath path = new LocationPath();
+        path.addLocation(new Location(50.0, 5.0));
+        path.addLocation(new Location(51.0, 4.0));
+        path.addLocation(new Location(49.0, 6.0));
+
+        // When its southernmost location is removed
+        LocationBounds before = path.getBounds();
+        path.removeLocation(new Location(49.0, 6.0));
+        LocationBounds after = path.getBounds();
+
+        // Then the bounds should follow
+        assertThat(before).extracting("xmin", "xmax", "ymin", "ymax").containsExactly(4.0, 6.0, 49.0, 51.0);
+        assertThat(after).extracting("xmin", "xmax", "ymin", "ymax").containsExactly(4.0, 5.0, 50.0, 51.0);
+    }
+
+    @Test
+    void it_should_only_return_the_chunks_crossing_an_area() {
+        // Given a path heading east, one location per 0.01 degree
+        LocationPath path = new LocationPath();
+        for (int i = 0; i < 1000; i++)
+            path.addLocation(new Location(50.0, i * 0.01));
+
+        // When the index is queried for a small area in the middle of it
+        int[] ranges = path.getIndex().query(new LocationBounds(5.0, 5.1, 49.9, 50.1));
+
+        // Then a single range covering that area should be returned, far smaller than the path
+        assertThat(ranges).hasSize(2);
+        assertThat(ranges[0]).isLessThanOrEqualTo(500);
+        assertThat(ranges[1]).isGreaterThan(510);
+        assertThat(ranges[1] - ranges[0]).isLessThan(200);
+    }
+
+    @Test
+    void it_should_share_boundary_locations_between_chunks() {
+        // Given a path of two chunks
+        LocationPath path = new LocationPath();
+        for (int i = 0; i < 100; i++)
+            path.addLocation(new Location(50.0, i * 0.01));
+
+        // When its index is built
+        LocationPathIndex index = path.getIndex();
+
+        // Then the second chunk should start at the last location of the first one
+        assertThat(index.getChunkCount()).isEqualTo(2);
+        assertThat(index.getChunkStart(1)).isEqualTo(index.getChunkEnd(0) - 1);
+        assertThat(index.getChunkEnd(1)).isEqualTo(100);
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.hotcoffee.staticmap.geo;
+
+import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Line2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class TrackPyramidTest {
+
+    private static final MercatorProjection PROJECTION = new MercatorProjection();
+
+    @Test
+    void it_should_keep_fewer_points_at_lower_zooms() {
+        // Given a winding path
+        LocationPath path = winding();
+
+        // When a pyramid is built for it
+        TrackPyramid pyramid = TrackPyramid.build(path, PROJECTION, 5, 15);
+
+        // Then lower zooms should draw fewer points, and zooms outside the range the nearest level
+        assertThat(pyramid.getPointCount(15)).isLessThanOrEqualTo(path.getSize());
+        assertThat(pyramid.getPointCount(5)).isLessThan(pyramid.getPointCount(10));
+        assertThat(pyramid.getPointCount(10)).isLessThan(pyramid.getPointCount(15));
+        assertThat(pyramid.getPointCount(2)).isEqualTo(pyramid.getPointCount(5));
+        assertThat(pyramid.getPointCount(18)).isEqualTo(pyramid.getPointCount(15));
+    }
+
+    @Test
+    void it_should_place_points_like_the_projection() {
+        // Given a pyramid
+        LocationPath path = winding();
+        TrackPyramid pyramid = TrackPyramid.build(path, PROJECTION, 5, 15);
+
+        // When its points are read at some zoom
+        double[] x = new double[pyramid.getPointCount(12)];
+        double[] y = new double[x.length];
+        pyramid.getPoints(12, 100, 200, x, y);
+
+        // Then the first point should be the projected first location, minus the offset
+        assertThat(x[0]).isCloseTo(PROJECTION.unprojectX(path.getLongitude(0), 12) - 100, within(1e-6));
+        assertThat(y[0]).isCloseTo(PROJECTION.unprojectY(path.getLatitude(0), 12) - 200, within(1e-6));
+    }
+
+    @Test
+    void it_should_read_what_it_wrote() throws IOException {
+        // Given a pyramid
+        TrackPyramid pyramid = TrackPyramid.build(winding(), PROJECTION, 5, 15);
+
+        // When it is written then read back
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pyramid.writeTo(out);
+        TrackPyramid read = TrackPyramid.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        // Then it should draw the same points, within the rounding of the format
+        assertThat(read.getMinZoom()).isEqualTo(5);
+        assertThat(read.getMaxZoom()).isEqualTo(15);
+        for (int zoom = 5; zoom <= 15; zoom++) {
+            double[] x = new double[pyramid.getPointCount(zoom)];
+            double[] y = new double[x.length];
+            double[] readX = new double[read.getPointCount(zoom)];
+            double[] readY = new double[readX.length];
+            pyramid.getPoints(zoom, 0, 0, x, y);
+            read.getPoints(zoom, 0, 0, readX, readY);
+            assertThat(readX).containsExactly(x, within(0.01));
+            assertThat(readY).containsExactly(y, within(0.01));
+        }
+    }
+
+    @Test
+    void it_should_keep_every_level_within_half_a_pixel_of_the_path() {
+        // Given a pyramid over many zoom levels
+        LocationPath path = winding();
+        TrackPyramid pyramid = TrackPyramid.build(path, PROJECTION, 2, 18);
+
+        for (int zoom = 2; zoom <= 18; zoom++) {
+            // When the points of a level are read
+            double[] x = new double[pyramid.getPointCount(zoom)];
+            double[] y = new double[x.length];
+            pyramid.getPoints(zoom, 0, 0, x, y);
+
+            // Then every point of the path should lie within half a pixel of them
+            for (int i = 0; i < path.getSize(); i++) {
+                double px = PROJECTION.unprojectX(path.getLongitude(i), zoom);
+                double py = PROJECTION.unprojectY(path.getLatitude(i), zoom);
+                double distance = Double.MAX_VALUE;
+                for (int j = 1; j < x.length; j++)
+                    distance = Math.min(distance, Line2D.ptSegDist(x[j - 1], y[j - 1], x[j], y[j], px, py));
+                assertThat(distance).as("point %d at zoom %d", i, zoom).isLessThanOrEqualTo(0.5 + 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void it_should_fail_on_truncated_streams() throws IOException {
+        // Given a pyramid whose point count is corrupt
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(0x54505952);
+        data.writeByte(1);
+        data.writeByte(5);
+        data.writeByte(15);
+        Varints.writeUnsigned(data, Integer.MAX_VALUE - 8);
+        data.flush();
+
+        // When it is read, then it should fail on the end of the stream
+        assertThatThrownBy(() -> TrackPyramid.readFrom(new ByteArrayInputStream(out.toByteArray())))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void it_should_fail_on_point_indices_out_of_range() throws IOException {
+        // Given a pyramid of two points whose first level skips past the end of the int range
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(0x54505952);
+        data.writeByte(1);
+        data.writeByte(5);
+        data.writeByte(6);
+        Varints.writeUnsigned(data, 2);
+        for (int i = 0; i < 4; i++)
+            Varints.writeSigned(data, 0);
+        Varints.writeUnsigned(data, 2);
+        Varints.writeUnsigned(data, 1);
+        Varints.writeUnsigned(data, Integer.MAX_VALUE);
+        data.flush();
+
+        // When it is read, then it should fail on the index instead of wrapping around
+        assertThatThrownBy(() -> TrackPyramid.readFrom(new ByteArrayInputStream(out.toByteArray())))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("out of range");
+    }
+
+    private static LocationPath winding() {
+        LocationPath path = new LocationPath();
+        for (int i = 0; i < 2000; i++)
+            path.addLocation(new Location(50.0 + 0.01 * Math.sin(i * 0.05), 5.0 + i * 0.0005));
+        return path;
+    }
+
+}
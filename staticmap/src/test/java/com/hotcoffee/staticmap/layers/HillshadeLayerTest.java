@@ -0,0 +1,109 @@
+package com.hotcoffee.staticmap.layers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HillshadeLayerTest {
+
+    @Test
+    void it_should_light_slopes_facing_the_light_and_shade_the_others() {
+        // Given a valley: its west side rises to the west, its east side to the east, its floor is flat
+        int size = 30;
+        float[] elevations = new float[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++)
+                elevations[y * size + x] = x < 10 ? (10 - x) * 20f : x >= 20 ? (x - 19) * 20f : 0;
+        }
+
+        // When it is shaded with a light from the north-west
+        BufferedImage shaded = HillshadeLayer.shade(elevations, size, 30, 315, 45);
+
+        // Then the west side should be in the shadow, the east side lit, and the floor untouched
+        Color west = new Color(shaded.getRGB(5, 15), true);
+        Color east = new Color(shaded.getRGB(25, 15), true);
+        Color floor = new Color(shaded.getRGB(15, 15), true);
+        assertThat(west.getRed()).isZero();
+        assertThat(west.getAlpha()).isGreaterThan(50);
+        assertThat(east.getRed()).isEqualTo(255);
+        assertThat(east.getAlpha()).isGreaterThan(50);
+        assertThat(floor.getAlpha()).isZero();
+    }
+
+    @Test
+    void it_should_shade_terrain_rgb_tiles_from_a_folder(@TempDir Path folder) throws IOException {
+        // Given a Terrain-RGB tile of a slope rising to the east, in a local folder
+        BufferedImage dem = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                int value = (int) ((1000 + x * 5 + 10000) / 0.1);
+                dem.setRGB(x, y, value);
+            }
+        }
+        writeTile(folder, 2110, 1390, dem);
+        HillshadeLayer layer = new HillshadeLayer(folder.toUri() + "{z}/{x}/{y}.png", HillshadeLayer.Encoding.TERRAIN_RGB);
+
+        // When the tile is shaded
+        Image shaded = layer.getTile(2110, 1390, 12);
+
+        // Then the slope should be lit
+        Color color = new Color(((BufferedImage) shaded).getRGB(128, 128), true);
+        assertThat(color.getRed()).isEqualTo(255);
+        assertThat(color.getAlpha()).isGreaterThan(0);
+    }
+
+    @Test
+    void it_should_shade_the_edges_of_a_tile_from_its_neighbours(@TempDir Path folder) throws IOException {
+        // Given two Terrain-RGB tiles side by side of a slope rising to the east
+        for (int tileX = 2110; tileX <= 2111; tileX++) {
+            BufferedImage dem = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < 256; y++) {
+                for (int x = 0; x < 256; x++)
+                    dem.setRGB(x, y, (int) ((1000 + ((tileX - 2110) * 256 + x) * 5 + 10000) / 0.1));
+            }
+            writeTile(folder, tileX, 1390, dem);
+        }
+        HillshadeLayer layer = new HillshadeLayer(folder.toUri() + "{z}/{x}/{y}.png", HillshadeLayer.Encoding.TERRAIN_RGB);
+
+        // When the western tile is shaded
+        BufferedImage shaded = (BufferedImage) layer.getTile(2110, 1390, 12);
+
+        // Then its eastern edge, bordering the other tile, should be shaded like its middle
+        assertThat(shaded.getRGB(255, 128)).isEqualTo(shaded.getRGB(128, 128));
+    }
+
+    @Test
+    void it_should_leave_voids_transparent_without_shading_their_border() {
+        // Given a flat SRTM grid with a void in its middle
+        int size = 30;
+        ByteBuffer data = ByteBuffer.allocate(size * size * 2);
+        for (int i = 0; i < size * size; i++)
+            data.putShort((short) 500);
+        data.putShort((15 * size + 15) * 2, Short.MIN_VALUE);
+
+        // When it is decoded and shaded
+        BufferedImage shaded = HillshadeLayer.shade(HillshadeLayer.decodeRaw(data.array(), size), size, 30, 315, 45);
+
+        // Then the void and its border should be left transparent, not shaded as a pit
+        for (int y = 14; y <= 16; y++) {
+            for (int x = 14; x <= 16; x++)
+                assertThat(new Color(shaded.getRGB(x, y), true).getAlpha()).as("pixel %d,%d", x, y).isZero();
+        }
+    }
+
+    private static void writeTile(Path folder, int x, int y, BufferedImage dem) throws IOException {
+        Path tile = folder.resolve("12/" + x + "/" + y + ".png");
+        Files.createDirectories(tile.getParent());
+        ImageIO.write(dem, "png", tile.toFile());
+    }
+
+}
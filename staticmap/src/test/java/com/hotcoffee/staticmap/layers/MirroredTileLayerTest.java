@@ -0,0 +1,140 @@
+package com.hotcoffee.staticmap.layers;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MirroredTileLayerTest {
+
+    @Test
+    void it_should_fail_over_to_the_next_mirror() {
+        // Given a failing mirror followed by a working one
+        FakeMirror failing = new FakeMirror(null, 0);
+        BufferedImage tile = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        FakeMirror working = new FakeMirror(tile, 0);
+        MirroredTileLayer layer = new MirroredTileLayer(List.of(failing, working));
+
+        // When a tile is requested
+        Image result = layer.getTile(1, 2, 3);
+
+        // Then it should come from the working mirror
+        assertThat(result).isSameAs(tile);
+        assertThat(failing.mRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void it_should_hedge_slow_requests_on_the_next_mirror() {
+        // Given a stalled mirror followed by a fast one
+        FakeMirror stalled = new FakeMirror(new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB), 5000);
+        BufferedImage tile = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        FakeMirror fast = new FakeMirror(tile, 0);
+        MirroredTileLayer layer = new MirroredTileLayer(List.of(stalled, fast));
+
+        // When a tile is requested
+        long start = System.nanoTime();
+        Image result = layer.getTile(1, 2, 3);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then the fast mirror should answer long before the stalled one
+        assertThat(result).isSameAs(tile);
+        assertThat(elapsedMillis).isLessThan(2500);
+    }
+
+    @Test
+    void it_should_limit_the_share_of_hedged_requests() {
+        // Given a mirror slower than the default hedge delay, followed by a fast one
+        BufferedImage tile = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        FakeMirror slow = new FakeMirror(tile, 350);
+        FakeMirror fast = new FakeMirror(tile, 0);
+        MirroredTileLayer layer = new MirroredTileLayer(List.of(slow, fast));
+
+        // When a few tiles are requested
+        for (int i = 0; i < 5; i++)
+            layer.getTile(i, 2, 3);
+
+        // Then only the first request should have been hedged
+        assertThat(slow.mRequests.get()).isEqualTo(5);
+        assertThat(fast.mRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void it_should_leave_failing_mirrors_aside() {
+        // Given a failing mirror followed by a working one, with a breaker opening after 2 failures
+        FakeMirror failing = new FakeMirror(null, 0);
+        FakeMirror working = new FakeMirror(new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB), 0);
+        MirroredTileLayer layer = new MirroredTileLayer(List.of(failing, working));
+        layer.setCircuitBreaker(2, 60000);
+
+        // When many tiles are requested
+        for (int i = 0; i < 10; i++)
+            assertThat(layer.getTile(i, 0, 5)).isNotNull();
+
+        // Then the failing mirror should only be asked until its breaker opens
+        assertThat(failing.mRequests.get()).isEqualTo(2);
+        assertThat(layer.isAvailable(0)).isFalse();
+        assertThat(layer.isAvailable(1)).isTrue();
+    }
+
+    @Test
+    void it_should_only_count_server_errors_as_failures() throws IOException {
+        // Given a mirror answering 404 for some tiles and 500 for others, followed by a working mirror
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(exchange.getRequestURI().getPath().startsWith("/missing") ? 404 : 500, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            FakeMirror working = new FakeMirror(new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB), 0);
+            MirroredTileLayer missing = new MirroredTileLayer(List.of(new TMSLayer(base + "/missing/{z}/{x}/{y}.png"), working));
+            MirroredTileLayer failing = new MirroredTileLayer(List.of(new TMSLayer(base + "/failing/{z}/{x}/{y}.png"), working));
+            missing.setCircuitBreaker(1, 60000);
+            failing.setCircuitBreaker(1, 60000);
+
+            // When tiles are requested
+            Image missingTile = missing.getTile(1, 2, 3);
+            Image failedOverTile = failing.getTile(1, 2, 3);
+
+            // Then missing tiles should be reported without tripping the breaker, unlike server errors
+            assertThat(missingTile).isNull();
+            assertThat(missing.isAvailable(0)).isTrue();
+            assertThat(failedOverTile).isNotNull();
+            assertThat(failing.isAvailable(0)).isFalse();
+            assertThat(working.mRequests.get()).isEqualTo(1);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static class FakeMirror extends TileLayer {
+        private final Image mTile;
+        private final long mDelayMillis;
+        private final AtomicInteger mRequests = new AtomicInteger();
+
+        FakeMirror(Image tile, long delayMillis) {
+            mTile = tile;
+            mDelayMillis = delayMillis;
+        }
+
+        @Override
+        public Image getTile(int tileX, int tileY, int tileZ) {
+            mRequests.incrementAndGet();
+            try {
+                Thread.sleep(mDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return mTile;
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.hotcoffee.staticmap.layers;
+
+import com.hotcoffee.staticmap.tiles.MemoryTileCache;
+import com.hotcoffee.staticmap.tiles.OffHeapTileCache;
+import com.hotcoffee.staticmap.tiles.TileFreshness;
+import com.hotcoffee.staticmap.tiles.TileHandle;
+import com.hotcoffee.staticmap.tiles.TileKey;
+import com.hotcoffee.staticmap.tiles.TileRateLimiter;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TMSLayerTest {
+
+    private HttpServer mServer;
+    private final AtomicInteger mFullResponses = new AtomicInteger();
+    private final AtomicInteger mNotModifiedResponses = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB), "png", png);
+        byte[] body = png.toByteArray();
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", exchange -> {
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=0");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                mNotModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                mFullResponses.incrementAndGet();
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+            exchange.close();
+        });
+        mServer.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    void it_should_revalidate_stale_tiles_in_the_background() throws InterruptedException {
+        // Given a cached layer whose tiles are stale as soon as they are received
+        String pattern = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/{z}/{x}/{y}.png";
+        TMSLayer layer = new TMSLayer(pattern);
+        MemoryTileCache cache = new MemoryTileCache();
+        layer.setTileCache(cache);
+        Image first = layer.loadTile(1, 2, 3);
+
+        // When the tile is loaded again
+        Image second = layer.loadTile(1, 2, 3);
+
+        // Then the stale tile should be drawn, and revalidated without being downloaded again
+        assertThat(second).isSameAs(first);
+        for (int i = 0; i < 100 && mNotModifiedResponses.get() == 0; i++)
+            Thread.sleep(20);
+        assertThat(mNotModifiedResponses.get()).isEqualTo(1);
+        assertThat(mFullResponses.get()).isEqualTo(1);
+        TileFreshness freshness = cache.getFreshness(new TileKey(pattern, 1, 2, 3));
+        assertThat(freshness.etag()).isEqualTo("\"v1\"");
+    }
+
+    @Test
+    void it_should_not_keep_the_freshness_of_tiles_the_cache_rejected() {
+        // Given a layer cached off-heap, whose single slot is held by a draw
+        String pattern = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/{z}/{x}/{y}.png";
+        TMSLayer layer = new TMSLayer(pattern);
+        OffHeapTileCache cache = new OffHeapTileCache(256 * 256 * 4);
+        layer.setTileCache(cache);
+
+        try (TileHandle held = layer.acquireTile(0, 0, 1, TileRateLimiter.Priority.INTERACTIVE)) {
+            // When another tile is loaded meanwhile
+            Image tile = layer.loadTile(1, 0, 1);
+
+            // Then it should be drawn without being cached, nor its freshness kept
+            assertThat(tile).isNotNull();
+            assertThat(cache.size()).isEqualTo(1);
+            assertThat(cache.getFreshness(new TileKey(pattern, 0, 0, 1))).isNotNull();
+            assertThat(cache.getFreshness(new TileKey(pattern, 1, 0, 1))).isNull();
+        }
+    }
+
+}
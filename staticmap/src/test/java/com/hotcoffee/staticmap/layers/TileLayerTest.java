@@ -0,0 +1,267 @@
+package com.hotcoffee.staticmap.layers;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.tiles.MemoryTileCache;
+import com.hotcoffee.staticmap.tiles.OffHeapTileCache;
+import com.hotcoffee.staticmap.tiles.SharedTileStore;
+import com.hotcoffee.staticmap.tiles.TileCache;
+import com.hotcoffee.staticmap.tiles.TileKey;
+import com.hotcoffee.staticmap.tiles.TileRateLimitException;
+import com.hotcoffee.staticmap.tiles.TileRateLimiter;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TileLayerTest {
+
+    @Test
+    void it_should_copy_opaque_tiles_at_their_position() throws IOException {
+        // Given a map covered by opaque tiles
+        StaticMap staticMap = new StaticMap(600, 400);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(10);
+        staticMap.addLayer(new ColorTileLayer(BufferedImage.TYPE_INT_RGB));
+
+        // When it is drawn
+        BufferedImage result = render(staticMap);
+
+        // Then each pixel should come from the tile below it
+        assertTilesAt(staticMap, result);
+    }
+
+    @Test
+    void it_should_copy_argb_tiles_without_transparent_pixels() throws IOException {
+        // Given a map covered by ARGB tiles which only hold opaque pixels
+        StaticMap staticMap = new StaticMap(300, 300);
+        staticMap.setLocation(-33.9, 18.4);
+        staticMap.setZoom(7);
+        staticMap.addLayer(new ColorTileLayer(BufferedImage.TYPE_INT_ARGB));
+
+        // When it is drawn
+        BufferedImage result = render(staticMap);
+
+        // Then each pixel should come from the tile below it
+        assertTilesAt(staticMap, result);
+    }
+
+    private static BufferedImage render(StaticMap staticMap) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        staticMap.drawInto(os);
+        return ImageIO.read(new ByteArrayInputStream(os.toByteArray()));
+    }
+
+    private static void assertTilesAt(StaticMap staticMap, BufferedImage result) {
+        int tileSize = staticMap.getProjection().getTileSize();
+        for (int y = 0; y < result.getHeight(); y += 37) {
+            for (int x = 0; x < result.getWidth(); x += 37) {
+                int tileX = (int) Math.floor((x + staticMap.getOffset().x()) / tileSize);
+                int tileY = (int) Math.floor((y + staticMap.getOffset().y()) / tileSize);
+                assertThat(result.getRGB(x, y)).isEqualTo(ColorTileLayer.colorOf(tileX, tileY));
+            }
+        }
+    }
+
+    @Test
+    void it_should_draw_tiles_cached_off_heap() {
+        // Given a map drawing a layer cached off-heap, whose tiles are already cached
+        StaticMap staticMap = new StaticMap(500, 300);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(12);
+        ColorTileLayer layer = new ColorTileLayer(BufferedImage.TYPE_INT_RGB);
+        layer.setTileCache(new OffHeapTileCache(64L * 1024 * 1024));
+        staticMap.addLayer(layer);
+        staticMap.drawInto(new BufferedImage(500, 300, BufferedImage.TYPE_INT_ARGB));
+
+        // When the map is drawn again
+        BufferedImage result = new BufferedImage(500, 300, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(result);
+
+        // Then each pixel should have the color of its tile
+        int tileSize = staticMap.getProjection().getTileSize();
+        for (int y = 0; y < result.getHeight(); y += 37) {
+            for (int x = 0; x < result.getWidth(); x += 37) {
+                int tileX = (int) Math.floor((x + staticMap.getOffset().x()) / tileSize);
+                int tileY = (int) Math.floor((y + staticMap.getOffset().y()) / tileSize);
+                assertThat(result.getRGB(x, y)).isEqualTo(ColorTileLayer.colorOf(tileX, tileY));
+            }
+        }
+    }
+
+    @Test
+    void it_should_keep_loaded_tiles_valid_once_evicted_off_heap() {
+        // Given a layer cached off-heap, in a single slot
+        ColorTileLayer layer = new ColorTileLayer(BufferedImage.TYPE_INT_RGB);
+        layer.setTileCache(new OffHeapTileCache(256 * 256 * 4));
+
+        // When a tile is loaded, then another one taking its slot
+        BufferedImage first = (BufferedImage) layer.loadTile(0, 0, 1);
+        layer.loadTile(1, 0, 1);
+        BufferedImage cached = (BufferedImage) layer.loadTile(0, 0, 1);
+
+        // Then the first tile should keep its pixels
+        assertThat(first.getRGB(10, 10)).isEqualTo(ColorTileLayer.colorOf(0, 0));
+        assertThat(cached.getRGB(10, 10)).isEqualTo(ColorTileLayer.colorOf(0, 0));
+    }
+
+    @Test
+    void it_should_only_limit_tiles_missing_from_the_cache() {
+        // Given a cached layer allowed to fetch a single tile
+        TileRateLimiter limiter = new TileRateLimiter(1000, 10);
+        limiter.setBudget(1);
+        ColorTileLayer layer = new ColorTileLayer(BufferedImage.TYPE_INT_RGB);
+        layer.setTileCache(new MemoryTileCache());
+        layer.setRateLimiter(limiter);
+
+        // When the same tile is loaded twice, then another one
+        layer.loadTile(1, 2, 3);
+        layer.loadTile(1, 2, 3);
+
+        // Then only the new tile should be refused
+        assertThat(limiter.getRequested()).isEqualTo(1);
+        assertThatThrownBy(() -> layer.loadTile(2, 2, 3)).isInstanceOf(TileRateLimitException.class);
+    }
+
+    @Test
+    void it_should_share_decoded_tiles_between_layers_of_the_same_source() {
+        // Given two maps drawing layers of the same source from a shared store
+        SharedTileStore store = new SharedTileStore(64L * 1024 * 1024);
+        ColorTileLayer first = new SourceTileLayer();
+        ColorTileLayer second = new SourceTileLayer();
+        first.setTileCache(store);
+        second.setTileCache(store);
+        StaticMap firstMap = new StaticMap(300, 200);
+        firstMap.setLocation(50.5, 5.5);
+        firstMap.setZoom(12);
+        firstMap.addLayer(first);
+        StaticMap secondMap = new StaticMap(300, 200);
+        secondMap.setLocation(50.5, 5.5);
+        secondMap.setZoom(12);
+        secondMap.addLayer(second);
+
+        // When both maps are drawn
+        firstMap.drawInto(new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB));
+        int size = store.size();
+        secondMap.drawInto(new BufferedImage(300, 200, BufferedImage.TYPE_INT_ARGB));
+
+        // Then the tiles of the first map should be reused by the second one
+        assertThat(size).isPositive();
+        assertThat(store.size()).isEqualTo(size);
+        assertThat(second.loadTile(2110, 1380, 12)).isSameAs(first.loadTile(2110, 1380, 12));
+    }
+
+    @Test
+    void it_should_prefetch_neighbouring_and_parent_tiles() {
+        // Given a cached layer of a map
+        StaticMap staticMap = new StaticMap(500, 300);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(12);
+        CountingTileLayer layer = new CountingTileLayer();
+        layer.setTileCache(new MemoryTileCache());
+        staticMap.addLayer(layer);
+
+        // When its tiles, their first ring and their parents are prefetched
+        PrefetchHint hint = new PrefetchHint().ring(1).parentZooms(1);
+        List<com.hotcoffee.staticmap.geo.Tile> tiles = layer.getPrefetchTiles(staticMap, hint);
+        layer.prefetch(staticMap, hint).join();
+
+        // Then the map, panned or at half its size, should be drawn without fetching tiles
+        int grid = layer.getTiles(staticMap, staticMap.computeOffset(new CenterOffset(0, 0))).size();
+        assertThat(tiles).hasSizeGreaterThan(grid);
+        assertThat(tiles).anyMatch(tile -> tile.z() == 11);
+        assertThat(layer.mFetches.get()).isEqualTo(tiles.size());
+        staticMap.drawInto(new BufferedImage(500, 300, BufferedImage.TYPE_INT_ARGB));
+        staticMap.setLocation(50.5, 5.51);
+        staticMap.drawInto(new BufferedImage(500, 300, BufferedImage.TYPE_INT_ARGB));
+        StaticMap card = new StaticMap(250, 150);
+        card.setLocation(50.5, 5.5);
+        card.setZoom(11);
+        card.addLayer(layer);
+        card.drawInto(new BufferedImage(250, 150, BufferedImage.TYPE_INT_ARGB));
+        assertThat(layer.mFetches.get()).isEqualTo(tiles.size());
+    }
+
+    @Test
+    void it_should_skip_cached_tiles_when_prefetching() {
+        // Given a layer whose cache already holds the tiles of a map
+        StaticMap staticMap = new StaticMap(500, 300);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(12);
+        AtomicInteger cachedTiles = new AtomicInteger();
+        CountingTileLayer layer = new CountingTileLayer() {
+            @Override
+            protected void onCachedTile(TileCache cache, TileKey key) {
+                cachedTiles.incrementAndGet();
+            }
+        };
+        layer.setTileCache(new MemoryTileCache());
+        staticMap.addLayer(layer);
+        layer.prefetch(staticMap, new PrefetchHint()).join();
+        int fetches = layer.mFetches.get();
+
+        // When they are prefetched again
+        layer.prefetch(staticMap, new PrefetchHint()).join();
+
+        // Then they should neither be fetched nor taken from the cache again
+        assertThat(fetches).isPositive();
+        assertThat(layer.mFetches.get()).isEqualTo(fetches);
+        assertThat(cachedTiles.get()).isZero();
+    }
+
+    private static class CountingTileLayer extends ColorTileLayer {
+        private final AtomicInteger mFetches = new AtomicInteger();
+
+        CountingTileLayer() {
+            super(BufferedImage.TYPE_INT_RGB);
+        }
+
+        @Override
+        public Image getTile(int tileX, int tileY, int tileZ) {
+            mFetches.incrementAndGet();
+            return super.getTile(tileX, tileY, tileZ);
+        }
+    }
+
+    private static class SourceTileLayer extends ColorTileLayer {
+        SourceTileLayer() {
+            super(BufferedImage.TYPE_INT_RGB);
+        }
+
+        @Override
+        public String getSourceKey() {
+            return "colors";
+        }
+    }
+
+    private static class ColorTileLayer extends TileLayer {
+        private final int mType;
+
+        ColorTileLayer(int type) {
+            mType = type;
+        }
+
+        static int colorOf(int x, int y) {
+            return 0xFF000000 | ((x * 7919 + y * 104729) & 0xFFFFFF);
+        }
+
+        @Override
+        public Image getTile(int tileX, int tileY, int tileZ) {
+            BufferedImage tile = new BufferedImage(256, 256, mType);
+            Graphics2D graphics = tile.createGraphics();
+            graphics.setColor(new Color(colorOf(tileX, tileY), true));
+            graphics.fillRect(0, 0, 256, 256);
+            graphics.dispose();
+            return tile;
+        }
+    }
+
+}
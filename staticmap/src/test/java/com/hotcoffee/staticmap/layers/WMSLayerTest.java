@@ -0,0 +1,113 @@
+package com.hotcoffee.staticmap.layers;
+
+import com.hotcoffee.staticmap.StaticMap;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WMSLayerTest {
+
+    @Test
+    void it_should_request_one_image_per_metatile() {
+        // Given a map with a WMS layer requesting metatiles of 4 by 4 tiles
+        StaticMap staticMap = new StaticMap(600, 400);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(12);
+        RecordingWMSLayer layer = new RecordingWMSLayer();
+        layer.setMetaTileSize(4);
+        staticMap.addLayer(layer);
+
+        // When the map is drawn
+        BufferedImage image = new BufferedImage(600, 400, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(image);
+
+        // Then far fewer images than tiles should be requested, each covering 4 by 4 tiles
+        int tiles = new RecordingWMSLayer().getTiles(staticMap, staticMap.getOffset()).size();
+        assertThat(layer.mUrls).hasSizeBetween(1, 4).hasSizeLessThan(tiles);
+        assertThat(layer.mUrls).allSatisfy(url -> assertThat(url).contains("&width=1024&height=1024"));
+        assertThat(image.getRGB(300, 200)).isEqualTo(Color.ORANGE.getRGB());
+    }
+
+    @Test
+    void it_should_prefetch_metatiles_inside_the_world() {
+        // Given a map at a zoom level covered by 2 by 2 metatiles of 4 by 4 tiles
+        StaticMap staticMap = new StaticMap(600, 400);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(3);
+        RecordingWMSLayer layer = new RecordingWMSLayer();
+        layer.setMetaTileSize(4);
+
+        // When its metatiles and their rings are listed for a prefetch
+        List<com.hotcoffee.staticmap.geo.Tile> tiles = layer.getPrefetchTiles(staticMap, new PrefetchHint().ring(2));
+
+        // Then only the metatiles of the world should be listed
+        assertThat(tiles).isNotEmpty();
+        assertThat(tiles).allMatch(tile -> tile.x() >= 0 && tile.x() < 2 && tile.y() >= 0 && tile.y() < 2);
+    }
+
+    @Test
+    void it_should_request_metatiles_in_web_mercator() {
+        // Given a WMS layer requesting metatiles of 2 by 2 tiles
+        RecordingWMSLayer layer = new RecordingWMSLayer();
+        layer.setMetaTileSize(2);
+
+        // When the URL of the metatile covering the world at zoom 1 is built
+        String url = layer.buildURL(0, 0, 1, 2);
+
+        // Then it should be requested in EPSG:3857, with the bounds of the world
+        assertThat(url).contains("&SRS=EPSG:3857")
+                       .contains("&BBOX=-20037508.342789244,-20037508.342789244,20037508.342789244,20037508.342789244");
+    }
+
+    @Test
+    void it_should_request_tiles_with_the_bounds_of_the_grid() {
+        // Given a WMS layer requesting one image per tile
+        RecordingWMSLayer layer = new RecordingWMSLayer();
+
+        // When the URL of the north-western tile at zoom 1 is built, before any map is drawn
+        String url = layer.buildURL(0, 0, 1);
+
+        // Then it should be requested in EPSG:4326, from the antimeridian to Greenwich and the equator to the edge of the grid
+        assertThat(url).contains("&SRS=EPSG:4326")
+                       .contains("&BBOX=-180.0,0.0,0.0,85.0511")
+                       .contains("&width=256&height=256");
+    }
+
+    @Test
+    void it_should_not_share_cached_images_between_metatile_sizes() {
+        // Given the same WMS layer with and without metatiles
+        RecordingWMSLayer tiled = new RecordingWMSLayer();
+        RecordingWMSLayer metaTiled = new RecordingWMSLayer();
+        metaTiled.setMetaTileSize(2);
+
+        // When their sources are compared
+        // Then they should differ
+        assertThat(metaTiled.getSourceKey()).isNotEqualTo(tiled.getSourceKey());
+    }
+
+    private static class RecordingWMSLayer extends WMSLayer {
+        private final List<String> mUrls = new CopyOnWriteArrayList<>();
+
+        RecordingWMSLayer() {
+            super("http://localhost/wms", new String[]{"roads"});
+        }
+
+        @Override
+        protected Image requestImage(String url) {
+            mUrls.add(url);
+            int size = getMetaTileSize() * 256;
+            BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setColor(Color.ORANGE);
+            graphics.fillRect(0, 0, size, size);
+            graphics.dispose();
+            return image;
+        }
+    }
+
+}
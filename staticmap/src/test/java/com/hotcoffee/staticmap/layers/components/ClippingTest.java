@@ -0,0 +1,54 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClippingTest {
+
+    @Test
+    void it_should_split_a_polyline_into_visible_runs() {
+        // Given a polyline leaving a 10x10 rectangle and coming back in
+        double[] x = {5, 5, 50, 50, 8};
+        double[] y = {5, 8, 8, 2, 2};
+
+        // When it is clipped
+        Path2D.Double path = new Path2D.Double();
+        Clipping.appendPolyline(path, x, y, x.length, 0, 0, 10, 10);
+
+        // Then it should be made of two runs, cut at the edge of the rectangle
+        assertThat(segments(path)).containsExactly(
+                "M5.0,5.0", "L5.0,8.0", "L10.0,8.0",
+                "M10.0,2.0", "L8.0,2.0");
+    }
+
+    @Test
+    void it_should_drop_polylines_outside_of_the_rectangle() {
+        // Given a polyline around a 10x10 rectangle
+        double[] x = {-5, 15, 15};
+        double[] y = {-5, -5, 15};
+
+        // When it is clipped
+        Path2D.Double path = new Path2D.Double();
+        Clipping.appendPolyline(path, x, y, x.length, 0, 0, 10, 10);
+
+        // Then nothing should remain
+        assertThat(segments(path)).isEmpty();
+    }
+
+    private static List<String> segments(Path2D path) {
+        List<String> segments = new ArrayList<>();
+        double[] coords = new double[6];
+        for (PathIterator it = path.getPathIterator(null); !it.isDone(); it.next()) {
+            int type = it.currentSegment(coords);
+            segments.add((type == PathIterator.SEG_MOVETO ? "M" : "L") + coords[0] + "," + coords[1]);
+        }
+        return segments;
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColorRampTest {
+
+    @Test
+    void it_should_interpolate_colors_between_buckets() {
+        // Given a ramp from black to white in 4 buckets
+        ColorRamp ramp = new ColorRamp(0, 100, 4, Color.BLACK, Color.WHITE);
+
+        // When values are mapped
+        // Then they should fall in the bucket of their quarter, clamped to the range
+        assertThat(ramp.getBucket(10)).isEqualTo(0);
+        assertThat(ramp.getBucket(60)).isEqualTo(2);
+        assertThat(ramp.getBucket(-5)).isEqualTo(0);
+        assertThat(ramp.getBucket(250)).isEqualTo(3);
+        assertThat(ramp.getBucket(Double.NaN)).isEqualTo(-1);
+        assertThat(ramp.getColor(10)).isEqualTo(new Color(32, 32, 32));
+        assertThat(ramp.getColor(90)).isEqualTo(new Color(223, 223, 223));
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.LocationPath;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientLineStringTest {
+
+    @Test
+    void it_should_color_segments_by_value() {
+        // Given a line across the map, slow on its west half and fast on its east half
+        StaticMap staticMap = new StaticMap(200, 200);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(14);
+        LocationPath path = new LocationPath();
+        for (int i = 0; i < 5; i++)
+            path.addLocation(50.5, 5.49 + i * 0.005);
+        ColorRamp ramp = new ColorRamp(0, 10, 2, Color.BLUE, Color.RED);
+        staticMap.addLayer(new GradientLineString(path, new double[]{1, 1, 9, 9, 9}, ramp).outlineWidth(0));
+
+        // When the map is drawn
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(image);
+
+        // Then each half should have the color of its bucket
+        assertThat(image.getRGB(70, 100)).isEqualTo(ramp.getBucketColor(0).getRGB());
+        assertThat(image.getRGB(130, 100)).isEqualTo(ramp.getBucketColor(1).getRGB());
+        assertThat(image.getRGB(100, 130)).isEqualTo(Color.WHITE.getRGB());
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.LocationPath;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeatmapLayerTest {
+
+    @Test
+    void it_should_color_pixels_by_density() {
+        // Given ten tracks along the same street and one along a parallel street
+        StaticMap staticMap = new StaticMap(200, 200);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(14);
+        List<LocationPath> tracks = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            tracks.add(street(50.5));
+        tracks.add(street(50.502));
+        ColorRamp ramp = new ColorRamp(0, 1, 2, Color.BLUE, Color.RED);
+        staticMap.addLayer(new HeatmapLayer().addPaths(tracks).ramp(ramp));
+
+        // When the map is drawn
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(image);
+
+        // Then the busy street should have the densest color, the other one the lightest
+        int busy = (int) Math.floor(staticMap.getProjection().unprojectY(50.5, 14) - staticMap.getOffset().y());
+        int quiet = (int) Math.floor(staticMap.getProjection().unprojectY(50.502, 14) - staticMap.getOffset().y());
+        assertThat(image.getRGB(100, busy)).isEqualTo(ramp.getBucketColor(1).getRGB());
+        assertThat(image.getRGB(100, quiet)).isEqualTo(ramp.getBucketColor(0).getRGB());
+        assertThat(image.getRGB(100, (busy + quiet) / 2)).isEqualTo(Color.WHITE.getRGB());
+    }
+
+    @Test
+    void it_should_count_each_path_once_per_pixel() {
+        // Given an out-and-back track along a street, and two tracks along a parallel street
+        StaticMap staticMap = new StaticMap(200, 200);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(14);
+        LocationPath outAndBack = street(50.5);
+        outAndBack.addLocation(50.5, 5.49);
+        ColorRamp ramp = new ColorRamp(0, 1, 2, Color.BLUE, Color.RED);
+        staticMap.addLayer(new HeatmapLayer().addPaths(List.of(outAndBack, street(50.502), street(50.502))).ramp(ramp));
+
+        // When the map is drawn
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(image);
+
+        // Then the out-and-back track should count once, less than the two tracks
+        int single = (int) Math.floor(staticMap.getProjection().unprojectY(50.5, 14) - staticMap.getOffset().y());
+        int twice = (int) Math.floor(staticMap.getProjection().unprojectY(50.502, 14) - staticMap.getOffset().y());
+        assertThat(image.getRGB(100, single)).isEqualTo(ramp.getBucketColor(0).getRGB());
+        assertThat(image.getRGB(100, twice)).isEqualTo(ramp.getBucketColor(1).getRGB());
+    }
+
+    @Test
+    void it_should_draw_paths_crossing_every_band_without_gaps() {
+        // Given a track crossing the map diagonally, through every band of rows
+        StaticMap staticMap = new StaticMap(200, 200);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(14);
+        LocationPath diagonal = new LocationPath();
+        diagonal.addLocation(50.52, 5.48);
+        diagonal.addLocation(50.48, 5.52);
+        staticMap.addLayer(new HeatmapLayer().addPath(diagonal));
+
+        // When the map is drawn
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(image);
+
+        // Then each row should have been drawn once
+        for (int y = 0; y < 200; y++) {
+            int drawn = 0;
+            for (int x = 0; x < 200; x++) {
+                if (image.getRGB(x, y) != Color.WHITE.getRGB())
+                    drawn++;
+            }
+            assertThat(drawn).as("row %d", y).isPositive();
+        }
+    }
+
+    private static LocationPath street(double latitude) {
+        LocationPath path = new LocationPath();
+        path.addLocation(latitude, 5.49);
+        path.addLocation(latitude, 5.51);
+        return path;
+    }
+
+}
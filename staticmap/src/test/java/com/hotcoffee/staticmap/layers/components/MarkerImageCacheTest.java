@@ -0,0 +1,50 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MarkerImageCacheTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "0, 0",
+            "360, 0",
+            "-90, 270",
+            "45.4, 45",
+            "45.6, 46"
+    })
+    void it_should_round_rotations_to_buckets(float rotation, int expectedBucket) {
+        // Given a cache with one bucket per degree
+        MarkerImageCache cache = new MarkerImageCache(10, 360);
+
+        // When a rotation is bucketed
+        int bucket = cache.getRotationBucket(rotation);
+
+        // Then it should be rounded to the nearest degree
+        assertThat(bucket).isEqualTo(expectedBucket);
+    }
+
+    @Test
+    void it_should_reuse_images_of_the_same_bucket_and_scale() {
+        // Given a cache and a marker image
+        MarkerImageCache cache = new MarkerImageCache(10, 360);
+        BufferedImage source = new BufferedImage(20, 30, BufferedImage.TYPE_INT_ARGB);
+
+        // When rotated images are requested
+        BufferedImage first = cache.get(source, 90.1f, 2f);
+        BufferedImage second = cache.get(source, 89.9f, 2f);
+        BufferedImage otherScale = cache.get(source, 90f, 1f);
+
+        // Then the same bucket and scale should share an image of the scaled size
+        assertThat(second).isSameAs(first);
+        assertThat(otherScale).isNotSameAs(first);
+        assertThat(first.getWidth()).isEqualTo(40);
+        assertThat(first.getHeight()).isEqualTo(60);
+    }
+
+}
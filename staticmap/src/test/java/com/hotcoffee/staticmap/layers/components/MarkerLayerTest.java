@@ -0,0 +1,75 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.Location;
+import com.hotcoffee.staticmap.geo.PointF;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MarkerLayerTest {
+
+    @Test
+    void it_should_draw_visible_markers_anchored_at_their_location() {
+        // Given markers inside and outside of the map
+        StaticMap staticMap = map();
+        MarkerLayer layer = new MarkerLayer();
+        layer.addMarker(marker(new Location(50.5, 5.5), Color.RED));
+        layer.addMarker(marker(new Location(10.0, 60.0), Color.BLUE));
+        for (int i = 0; i < 1000; i++)
+            layer.addMarker(marker(new Location(-40.0 + i * 0.01, -70.0), Color.GREEN));
+        staticMap.addLayer(layer);
+
+        // When the map is drawn
+        BufferedImage image = draw(staticMap);
+
+        // Then only the visible marker should be drawn, centered on the map
+        assertThat(image.getRGB(100, 100)).isEqualTo(Color.RED.getRGB());
+        assertThat(image.getRGB(90, 90)).isEqualTo(Color.WHITE.getRGB());
+    }
+
+    @Test
+    void it_should_skip_markers_overlapping_previous_ones_when_decluttering() {
+        // Given two overlapping markers and a distant one
+        StaticMap staticMap = map();
+        MarkerLayer layer = new MarkerLayer().declutter(true);
+        layer.addMarker(marker(new Location(50.5, 5.5), Color.RED));
+        layer.addMarker(marker(new Location(50.5, 5.5001), Color.BLUE));
+        layer.addMarker(marker(new Location(50.5, 5.51), Color.GREEN));
+        staticMap.addLayer(layer);
+
+        // When the map is drawn
+        BufferedImage image = draw(staticMap);
+
+        // Then the overlapping marker should not be drawn
+        assertThat(image.getRGB(100, 100)).isEqualTo(Color.RED.getRGB());
+        assertThat(image.getRGB(103, 100)).isEqualTo(Color.RED.getRGB());
+        assertThat(image.getRGB(128, 100)).isEqualTo(Color.GREEN.getRGB());
+    }
+
+    private static StaticMap map() {
+        StaticMap staticMap = new StaticMap(200, 200);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(12);
+        return staticMap;
+    }
+
+    private static Marker marker(Location location, Color color) {
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 10, 10);
+        graphics.dispose();
+        return new Marker(location).image(image).anchor(new PointF(5, 5));
+    }
+
+    private static BufferedImage draw(StaticMap staticMap) {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(image);
+        return image;
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.hotcoffee.staticmap.layers.components;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.Location;
+import com.hotcoffee.staticmap.geo.LocationPath;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolygonTest {
+
+    @Test
+    void it_should_fill_a_clipped_polygon_around_its_hole() {
+        // Given a polygon much larger than the map, with a hole in the center of the map
+        StaticMap staticMap = new StaticMap(200, 200);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(14);
+        Polygon polygon = new Polygon(ring(50.5, 5.5, 5.0))
+                .hole(ring(50.5, 5.5, 0.001))
+                .fillColor(Color.BLUE)
+                .strokeColor(null);
+        staticMap.addLayer(polygon);
+
+        // When the map is drawn
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(image);
+
+        // Then the map should be filled but in the hole
+        assertThat(image.getRGB(5, 5)).isEqualTo(Color.BLUE.getRGB());
+        assertThat(image.getRGB(195, 195)).isEqualTo(Color.BLUE.getRGB());
+        assertThat(image.getRGB(100, 100)).isEqualTo(Color.WHITE.getRGB());
+    }
+
+    @Test
+    void it_should_not_draw_parts_outside_of_the_map() {
+        // Given a multipolygon whose only visible part is a hole-less square on the left
+        StaticMap staticMap = new StaticMap(200, 200);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(14);
+        Polygon polygon = new Polygon(ring(-30.0, 100.0, 1.0))
+                .part(ring(50.5, 5.495, 0.002))
+                .fillColor(Color.BLUE)
+                .strokeColor(null);
+        staticMap.addLayer(polygon);
+
+        // When the map is drawn
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(image);
+
+        // Then only the visible part should be filled
+        assertThat(image.getRGB(100 - 58, 100)).isEqualTo(Color.BLUE.getRGB());
+        assertThat(image.getRGB(150, 100)).isEqualTo(Color.WHITE.getRGB());
+    }
+
+    private static LocationPath ring(double lat, double lon, double radius) {
+        LocationPath path = new LocationPath();
+        path.addLocation(new Location(lat - radius, lon - radius));
+        path.addLocation(new Location(lat - radius, lon + radius));
+        path.addLocation(new Location(lat + radius, lon + radius));
+        path.addLocation(new Location(lat + radius, lon - radius));
+        return path;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.hotcoffee.staticmap.layers.vector;
+
+import com.hotcoffee.staticmap.StaticMap;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorTileLayerTest {
+
+    @Test
+    void it_should_decode_features_and_their_properties() {
+        // Given an encoded tile holding a lake
+        byte[] data = lakeTile();
+
+        // When it is decoded
+        VectorTile tile = VectorTile.decode(data);
+
+        // Then the lake should be found with its properties
+        VectorTile.Layer water = tile.getLayer("water");
+        assertThat(water.getExtent()).isEqualTo(4096);
+        assertThat(water.getFeatures()).hasSize(1);
+        VectorTile.Feature lake = water.getFeatures().get(0);
+        assertThat(lake.getType()).isEqualTo(VectorTile.POLYGON);
+        assertThat(lake.getProperty("class")).isEqualTo("lake");
+        assertThat(lake.getProperty("name")).isNull();
+        assertThat(lake.getGeometry().getBounds()).isEqualTo(new Rectangle(0, 0, 4096, 4096));
+    }
+
+    @Test
+    void it_should_draw_styled_features_scaled_past_the_deepest_zoom() {
+        // Given a map zoomed past the deepest zoom of a source made of lakes
+        StaticMap staticMap = new StaticMap(512, 512);
+        staticMap.setLocation(0, 0);
+        staticMap.setZoom(2);
+        AtomicInteger requests = new AtomicInteger();
+        VectorTileSource source = new VectorTileSource() {
+            @Override
+            public byte[] getTile(int tileX, int tileY, int tileZ) {
+                requests.incrementAndGet();
+                return lakeTile();
+            }
+
+            @Override
+            public String getSourceKey() {
+                return "lakes";
+            }
+        };
+        VectorTileLayer layer = new VectorTileLayer(source)
+                .maxZoom(1)
+                .style(new VectorStyle("water").filter("class", "lake").fillColor(Color.BLUE))
+                .style(new VectorStyle("water").filter("class", "sea").fillColor(Color.RED));
+        staticMap.addLayer(layer);
+
+        // When it is drawn twice
+        BufferedImage image = new BufferedImage(512, 512, BufferedImage.TYPE_INT_ARGB);
+        staticMap.drawInto(image);
+        staticMap.drawInto(image);
+
+        // Then the lakes should cover the map, with the tiles of the source fetched once
+        assertThat(image.getRGB(10, 10)).isEqualTo(Color.BLUE.getRGB());
+        assertThat(image.getRGB(500, 500)).isEqualTo(Color.BLUE.getRGB());
+        assertThat(requests.get()).isEqualTo(4);
+    }
+
+    /**
+     * Encodes a tile with a layer "water" holding a square lake covering the tile.
+     */
+    private static byte[] lakeTile() {
+        ByteArrayOutputStream feature = new ByteArrayOutputStream();
+        writePacked(feature, 2, 0, 0);
+        writeVarintField(feature, 3, 3);
+        writePacked(feature, 4, 9, 0, 0, 26, 8192, 0, 0, 8192, 8191, 0, 15);
+
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        writeBytes(value, 1, "lake".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream layer = new ByteArrayOutputStream();
+        writeVarintField(layer, 15, 2);
+        writeBytes(layer, 1, "water".getBytes(StandardCharsets.UTF_8));
+        writeBytes(layer, 2, feature.toByteArray());
+        writeBytes(layer, 3, "class".getBytes(StandardCharsets.UTF_8));
+        writeBytes(layer, 4, value.toByteArray());
+        writeVarintField(layer, 5, 4096);
+
+        ByteArrayOutputStream tile = new ByteArrayOutputStream();
+        writeBytes(tile, 3, layer.toByteArray());
+        return tile.toByteArray();
+    }
+
+    private static void writeVarintField(ByteArrayOutputStream out, int field, long value) {
+        writeVarint(out, (long) field << 3);
+        writeVarint(out, value);
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, int field, byte[] bytes) {
+        writeVarint(out, ((long) field << 3) | 2);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void writePacked(ByteArrayOutputStream out, int field, int... values) {
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        for (int value : values)
+            writeVarint(packed, value);
+        writeBytes(out, field, packed.toByteArray());
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+}
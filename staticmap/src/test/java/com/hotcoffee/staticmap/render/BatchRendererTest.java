@@ -0,0 +1,109 @@
+package com.hotcoffee.staticmap.render;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.layers.CenterOffset;
+import com.hotcoffee.staticmap.layers.TileLayer;
+import com.hotcoffee.staticmap.tiles.MemoryTileCache;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchRendererTest {
+
+    @Test
+    void it_should_fetch_shared_tiles_once() {
+        // Given two maps of the same area, each with its own layer of the same source
+        AtomicInteger fetches = new AtomicInteger();
+        StaticMap first = map(new CountingTileLayer(fetches));
+        StaticMap second = map(new CountingTileLayer(fetches));
+
+        // When they are rendered as a batch
+        List<BatchResult> results;
+        try (BatchRenderer renderer = new BatchRenderer(4)) {
+            results = renderer.render(List.of(first, second));
+        }
+
+        // Then both should be rendered while their tiles were fetched a single time
+        assertThat(results).extracting(BatchResult::map).containsExactly(first, second);
+        assertThat(results).allMatch(BatchResult::isSuccess);
+        TileLayer layer = (TileLayer) first.getLayers().get(0);
+        assertThat(fetches.get()).isEqualTo(layer.getTiles(first, first.computeOffset(new CenterOffset(0, 0))).size());
+        assertThat(layer.getTileCache()).isNull();
+    }
+
+    @Test
+    void it_should_read_and_write_tiles_through_the_layer_cache() {
+        // Given a map whose layer has its own cache
+        AtomicInteger fetches = new AtomicInteger();
+        TileLayer layer = new CountingTileLayer(fetches);
+        MemoryTileCache cache = new MemoryTileCache();
+        layer.setTileCache(cache);
+        StaticMap map = map(layer);
+        int tiles = layer.getTiles(map, map.computeOffset(new CenterOffset(0, 0))).size();
+
+        // When it is rendered in two batches
+        try (BatchRenderer renderer = new BatchRenderer(2)) {
+            renderer.render(List.of(map));
+            renderer.render(List.of(map));
+        }
+
+        // Then the first batch should have filled the cache, and the second one should have read from it
+        assertThat(cache.size()).isEqualTo(tiles);
+        assertThat(fetches.get()).isEqualTo(tiles);
+        assertThat(layer.getTileCache()).isSameAs(cache);
+    }
+
+    @Test
+    void it_should_report_failing_maps() {
+        // Given a map without location next to a valid one
+        AtomicInteger fetches = new AtomicInteger();
+        StaticMap valid = map(new CountingTileLayer(fetches));
+        StaticMap invalid = new StaticMap(100, 100);
+        invalid.addLayer(new CountingTileLayer(fetches));
+
+        // When they are rendered as a batch
+        List<BatchResult> results;
+        try (BatchRenderer renderer = new BatchRenderer(2)) {
+            results = renderer.render(List.of(invalid, valid));
+        }
+
+        // Then only the invalid map should fail
+        assertThat(results.get(0).isSuccess()).isFalse();
+        assertThat(results.get(0).failure()).isNotNull();
+        assertThat(results.get(1).isSuccess()).isTrue();
+        assertThat(results.get(1).image()).isNotEmpty();
+    }
+
+    private static StaticMap map(TileLayer layer) {
+        StaticMap staticMap = new StaticMap(400, 300);
+        staticMap.setLocation(50.5, 5.5);
+        staticMap.setZoom(12);
+        staticMap.addLayer(layer);
+        return staticMap;
+    }
+
+    private static class CountingTileLayer extends TileLayer {
+        private final AtomicInteger mFetches;
+
+        CountingTileLayer(AtomicInteger fetches) {
+            mFetches = fetches;
+        }
+
+        @Override
+        public String getSourceKey() {
+            return "counting";
+        }
+
+        @Override
+        public Image getTile(int tileX, int tileY, int tileZ) {
+            mFetches.incrementAndGet();
+            return new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.hotcoffee.staticmap.render;
+
+import com.hotcoffee.staticmap.StaticMap;
+import com.hotcoffee.staticmap.geo.LocationPath;
+import com.hotcoffee.staticmap.geo.Tile;
+import com.hotcoffee.staticmap.geo.projection.MercatorProjection;
+import com.hotcoffee.staticmap.layers.CenterOffset;
+import com.hotcoffee.staticmap.layers.TileLayer;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteAnimationTest {
+
+    @Test
+    void it_should_scroll_the_map_along_the_route() throws IOException {
+        // Given an animation of 30 frames along a route, without track
+        StaticMap staticMap = map();
+        LocationPath route = route();
+        RouteAnimation animation = new RouteAnimation(staticMap, route)
+                .frameCount(30)
+                .trackColor(null)
+                .positionColor(null);
+
+        // When it is rendered
+        List<BufferedImage> frames = new ArrayList<>();
+        animation.render(frame -> frames.add(copy(frame)));
+
+        // Then the last frame should be the map centered on the end of the route
+        MercatorProjection proj = staticMap.getProjection();
+        int last = route.getSize() - 1;
+        int offsetX = (int) Math.round(proj.unprojectX(route.getLongitude(last), 14) - proj.unprojectX(route.getLongitude(0), 14));
+        int offsetY = (int) Math.round(proj.unprojectY(route.getLatitude(last), 14) - proj.unprojectY(route.getLatitude(0), 14));
+        StaticMap expectedMap = map();
+        expectedMap.setLocation(route.getLatitude(0), route.getLongitude(0));
+        BufferedImage expected = new BufferedImage(200, 150, BufferedImage.TYPE_INT_ARGB);
+        expectedMap.drawInto(expected, new CenterOffset(offsetX, offsetY));
+
+        assertThat(frames).hasSize(30);
+        BufferedImage lastFrame = frames.get(29);
+        for (int y = 0; y < 150; y++) {
+            for (int x = 0; x < 200; x++)
+                assertThat(lastFrame.getRGB(x, y)).isEqualTo(expected.getRGB(x, y));
+        }
+
+        // And the layers should have drawn far less than every frame in full
+        assertThat(animation.getDrawnPixels()).isLessThan(30L * 200 * 150 / 4);
+    }
+
+    @Test
+    void it_should_encode_the_frames_as_a_gif() throws IOException {
+        // Given an animation of 5 frames along a route
+        RouteAnimation animation = new RouteAnimation(map(), route()).frameCount(5);
+
+        // When it is rendered as a GIF
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (GifFrameSink sink = new GifFrameSink(os, 100)) {
+            animation.render(sink);
+        }
+
+        // Then the GIF should hold every frame
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        try (ImageInputStream is = ImageIO.createImageInputStream(new ByteArrayInputStream(os.toByteArray()))) {
+            reader.setInput(is);
+            assertThat(reader.getNumImages(true)).isEqualTo(5);
+            assertThat(reader.read(4).getWidth()).isEqualTo(200);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    void it_should_fetch_each_tile_along_the_route_once() throws IOException {
+        // Given an animation of a map whose layer counts the fetches of each tile
+        Map<Tile, AtomicInteger> fetches = new ConcurrentHashMap<>();
+        TileLayer layer = new GradientTileLayer() {
+            @Override
+            public Image getTile(int tileX, int tileY, int tileZ) {
+                fetches.computeIfAbsent(new Tile(tileX, tileY, tileZ), t -> new AtomicInteger()).incrementAndGet();
+                return super.getTile(tileX, tileY, tileZ);
+            }
+        };
+        StaticMap staticMap = new StaticMap(200, 150);
+        staticMap.setZoom(14);
+        staticMap.addLayer(layer);
+
+        // When it is rendered
+        new RouteAnimation(staticMap, route()).frameCount(30).render(frame -> {
+        });
+
+        // Then every tile should have been fetched once, and the cache of the layer restored
+        assertThat(fetches).isNotEmpty();
+        assertThat(fetches.values()).allMatch(count -> count.get() == 1);
+        assertThat(layer.getTileCache()).isNull();
+    }
+
+    private static StaticMap map() {
+        StaticMap staticMap = new StaticMap(200, 150);
+        staticMap.setZoom(14);
+        staticMap.addLayer(new GradientTileLayer());
+        return staticMap;
+    }
+
+    private static LocationPath route() {
+        LocationPath route = new LocationPath();
+        route.addLocation(50.50, 5.50);
+        route.addLocation(50.51, 5.52);
+        route.addLocation(50.505, 5.54);
+        return route;
+    }
+
+    private static BufferedImage copy(BufferedImage frame) {
+        BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(), frame.getType());
+        copy.setData(frame.getRaster());
+        return copy;
+    }
+
+    /**
+     * Layer whose every pixel has a color depending on its position in the world.
+     */
+    private static class GradientTileLayer extends TileLayer {
+        @Override
+        public Image getTile(int tileX, int tileY, int tileZ) {
+            BufferedImage tile = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < 256; y++) {
+                for (int x = 0; x < 256; x++)
+                    tile.setRGB(x, y, ((tileX * 256 + x) * 7919) ^ ((tileY * 256 + y) * 104729));
+            }
+            return tile;
+        }
+    }
+
+}
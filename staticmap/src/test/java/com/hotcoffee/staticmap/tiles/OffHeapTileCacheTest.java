@@ -0,0 +1,83 @@
+package com.hotcoffee.staticmap.tiles;
+
+import com.hotcoffee.staticmap.canvas.IntBufferDataBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapTileCacheTest {
+
+    private static final long TILE_BYTES = 256 * 256 * 4;
+
+    @Test
+    void it_should_serve_tiles_from_off_heap_memory() {
+        // Given a cache holding a tile
+        OffHeapTileCache cache = new OffHeapTileCache(4 * TILE_BYTES);
+        TileKey key = new TileKey("source", 1, 2, 3);
+        cache.put(key, tile(Color.ORANGE));
+
+        // When the tile is acquired
+        try (TileHandle handle = cache.acquire(key)) {
+            // Then its pixels should be read from an off-heap buffer
+            BufferedImage tile = (BufferedImage) handle.getTile();
+            assertThat(tile.getRaster().getDataBuffer()).isInstanceOf(IntBufferDataBuffer.class);
+            assertThat(tile.getColorModel().hasAlpha()).isFalse();
+            assertThat(tile.getRGB(128, 128)).isEqualTo(Color.ORANGE.getRGB());
+        }
+        assertThat(cache.get(key).getWidth(null)).isEqualTo(256);
+    }
+
+    @Test
+    void it_should_reuse_the_slots_of_evicted_tiles() {
+        // Given a cache holding 2 tiles at most
+        OffHeapTileCache cache = new OffHeapTileCache(2 * TILE_BYTES);
+        TileKey a = new TileKey("source", 0, 0, 1);
+        TileKey b = new TileKey("source", 1, 0, 1);
+        TileKey c = new TileKey("source", 0, 1, 1);
+        cache.put(a, tile(Color.RED));
+        cache.put(b, tile(Color.GREEN));
+
+        // When a third tile is stored
+        cache.put(c, tile(Color.BLUE));
+
+        // Then the least recently used tile should be evicted, without allocating more memory
+        assertThat(cache.acquire(a)).isNull();
+        assertThat(cache.get(b).getWidth(null)).isEqualTo(256);
+        assertThat(((BufferedImage) cache.get(c)).getRGB(0, 0)).isEqualTo(Color.BLUE.getRGB());
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getAllocatedBytes()).isEqualTo(2 * TILE_BYTES);
+    }
+
+    @Test
+    void it_should_not_reuse_the_slots_of_held_tiles() {
+        // Given a cache holding a single tile, currently drawn
+        OffHeapTileCache cache = new OffHeapTileCache(TILE_BYTES);
+        TileKey a = new TileKey("source", 0, 0, 1);
+        TileKey b = new TileKey("source", 1, 0, 1);
+        TileHandle held = cache.acquireOrPut(a, tile(Color.RED));
+
+        // When another tile is loaded
+        TileHandle other = cache.acquireOrPut(b, tile(Color.GREEN));
+
+        // Then it should be drawn from the heap, leaving the drawn tile untouched
+        assertThat(((BufferedImage) other.getTile()).getRaster().getDataBuffer()).isNotInstanceOf(IntBufferDataBuffer.class);
+        assertThat(((BufferedImage) held.getTile()).getRGB(10, 10)).isEqualTo(Color.RED.getRGB());
+        held.close();
+        other.close();
+        cache.put(b, tile(Color.GREEN));
+        assertThat(((BufferedImage) cache.get(b)).getRGB(10, 10)).isEqualTo(Color.GREEN.getRGB());
+    }
+
+    private static BufferedImage tile(Color color) {
+        BufferedImage tile = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = tile.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 256, 256);
+        graphics.dispose();
+        return tile;
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.hotcoffee.staticmap.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScopedTileCacheTest {
+
+    private static final long TILE_WEIGHT = 256 * 256 * 4;
+
+    @Test
+    void it_should_share_the_copy_held_by_the_cache_behind() {
+        // Given a scope in front of a shared store already holding a tile
+        SharedTileStore store = new SharedTileStore(10 * TILE_WEIGHT);
+        TileKey key = new TileKey("source", 1, 2, 3);
+        BufferedImage first = tile();
+        store.acquireOrPut(key, first).close();
+        ScopedTileCache scope = new ScopedTileCache();
+        TileCache view = scope.over(store);
+
+        // When another copy of the same tile is loaded through the scope
+        TileHandle handle = view.acquireOrPut(key, tile());
+
+        // Then the copy of the store should be drawn, without being replaced
+        assertThat(handle.getTile()).isSameAs(first);
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.getWeight()).isEqualTo(TILE_WEIGHT);
+    }
+
+    @Test
+    void it_should_hold_its_tiles_until_released() {
+        // Given a scope holding a tile of a shared store
+        SharedTileStore store = new SharedTileStore(10 * TILE_WEIGHT);
+        TileKey key = new TileKey("source", 1, 2, 3);
+        ScopedTileCache scope = new ScopedTileCache();
+        scope.over(store).acquireOrPut(key, tile()).close();
+
+        // When the store is cleared, before and after the scope releases the tile
+        store.clear();
+        int sizeWhileHeld = store.size();
+        scope.close();
+        store.clear();
+
+        // Then the tile should only be dropped once released
+        assertThat(sizeWhileHeld).isEqualTo(1);
+        assertThat(store.size()).isZero();
+        assertThat(scope.size()).isZero();
+    }
+
+    private static BufferedImage tile() {
+        return new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+    }
+
+}
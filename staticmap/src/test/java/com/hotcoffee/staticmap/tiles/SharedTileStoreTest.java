@@ -0,0 +1,76 @@
+package com.hotcoffee.staticmap.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedTileStoreTest {
+
+    private static final long TILE_WEIGHT = 256 * 256 * 4;
+
+    @Test
+    void it_should_share_the_first_decoded_copy() {
+        // Given a store holding a tile
+        SharedTileStore store = new SharedTileStore(10 * TILE_WEIGHT);
+        TileKey key = new TileKey("source", 1, 2, 3);
+        BufferedImage first = tile();
+        store.acquireOrPut(key, first).close();
+
+        // When another copy of the same tile is stored
+        TileHandle handle = store.acquireOrPut(key, tile());
+
+        // Then the first copy should be returned
+        assertThat(handle.getTile()).isSameAs(first);
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.getWeight()).isEqualTo(TILE_WEIGHT);
+    }
+
+    @Test
+    void it_should_evict_the_least_recently_used_tiles() {
+        // Given a store holding 2 tiles at most, the first one used after the second
+        SharedTileStore store = new SharedTileStore(2 * TILE_WEIGHT);
+        TileKey a = new TileKey("source", 0, 0, 1);
+        TileKey b = new TileKey("source", 1, 0, 1);
+        TileKey c = new TileKey("source", 0, 1, 1);
+        store.put(a, tile());
+        store.put(b, tile());
+        store.get(a);
+
+        // When a third tile is stored
+        store.put(c, tile());
+
+        // Then the second one should be evicted
+        assertThat(store.get(a)).isNotNull();
+        assertThat(store.get(b)).isNull();
+        assertThat(store.get(c)).isNotNull();
+        assertThat(store.getWeight()).isEqualTo(2 * TILE_WEIGHT);
+    }
+
+    @Test
+    void it_should_not_evict_held_tiles() {
+        // Given a store holding a single tile, currently drawn
+        SharedTileStore store = new SharedTileStore(TILE_WEIGHT);
+        TileKey a = new TileKey("source", 0, 0, 1);
+        TileKey b = new TileKey("source", 1, 0, 1);
+        TileHandle handle = store.acquireOrPut(a, tile());
+
+        // When another tile is stored
+        store.acquireOrPut(b, tile()).close();
+
+        // Then the drawn tile should be kept until released
+        assertThat(store.get(a)).isNotNull();
+        assertThat(store.get(b)).isNull();
+        handle.close();
+        handle.close();
+        store.put(b, tile());
+        assertThat(store.get(a)).isNull();
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    private static BufferedImage tile() {
+        return new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+    }
+
+}
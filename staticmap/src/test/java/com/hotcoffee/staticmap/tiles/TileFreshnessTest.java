@@ -0,0 +1,64 @@
+package com.hotcoffee.staticmap.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileFreshnessTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void it_should_take_the_lifetime_from_cache_control() {
+        // Given a response cacheable for an hour
+        Map<String, String> headers = Map.of("ETag", "\"abc\"", "Cache-Control", "public, max-age=3600");
+
+        // When its freshness is computed
+        TileFreshness freshness = TileFreshness.fromHeaders(headers::get, NOW, null);
+
+        // Then it should be stale after an hour
+        assertThat(freshness.etag()).isEqualTo("\"abc\"");
+        assertThat(freshness.isStale(NOW + 3599_000)).isFalse();
+        assertThat(freshness.isStale(NOW + 3600_000)).isTrue();
+    }
+
+    @Test
+    void it_should_estimate_the_lifetime_from_the_last_modification() {
+        // Given a response modified 10 hours before being sent, without explicit lifetime
+        Map<String, String> headers = Map.of(
+                "Date", "Tue, 14 Nov 2023 22:13:20 GMT",
+                "Last-Modified", "Tue, 14 Nov 2023 12:13:20 GMT");
+
+        // When its freshness is computed
+        TileFreshness freshness = TileFreshness.fromHeaders(headers::get, NOW, null);
+
+        // Then it should be fresh for an hour
+        assertThat(freshness.expires()).isEqualTo(NOW + 3600_000);
+    }
+
+    @Test
+    void it_should_keep_the_validators_of_a_revalidated_tile() {
+        // Given a tile revalidated by a response without validators
+        TileFreshness previous = new TileFreshness("\"abc\"", null, NOW - 1000);
+        Map<String, String> headers = Map.of("Cache-Control", "max-age=60");
+
+        // When its freshness is computed
+        TileFreshness freshness = TileFreshness.fromHeaders(headers::get, NOW, previous);
+
+        // Then the previous validators should be kept
+        assertThat(freshness).isEqualTo(new TileFreshness("\"abc\"", null, NOW + 60_000));
+    }
+
+    @Test
+    void it_should_ignore_responses_without_validators_nor_lifetime() {
+        // Given a response without caching headers
+        Map<String, String> headers = Map.of();
+
+        // When its freshness is computed
+        // Then there should be none
+        assertThat(TileFreshness.fromHeaders(headers::get, NOW, null)).isNull();
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.hotcoffee.staticmap.tiles;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TileRateLimiterTest {
+
+    @Test
+    void it_should_fail_instead_of_waiting_too_long() {
+        // Given a limiter whose burst is spent
+        TileRateLimiter limiter = new TileRateLimiter(0.1, 2);
+        limiter.setMaxWait(50);
+        limiter.acquire(TileRateLimiter.Priority.INTERACTIVE);
+        limiter.acquire(TileRateLimiter.Priority.INTERACTIVE);
+
+        // When another request is made
+        // Then it should be refused once the maximum wait is over
+        assertThatThrownBy(() -> limiter.acquire(TileRateLimiter.Priority.INTERACTIVE))
+                .isInstanceOf(TileRateLimitException.class);
+        assertThat(limiter.getRequested()).isEqualTo(2);
+    }
+
+    @Test
+    void it_should_enforce_the_budget() {
+        // Given a limiter allowing 3 tiles in total
+        TileRateLimiter limiter = new TileRateLimiter(1000, 10);
+        limiter.setBudget(3);
+
+        // When the budget is spent
+        for (int i = 0; i < 3; i++)
+            limiter.acquire(TileRateLimiter.Priority.BACKGROUND);
+
+        // Then further requests should fail right away
+        assertThatThrownBy(() -> limiter.acquire(TileRateLimiter.Priority.INTERACTIVE))
+                .isInstanceOf(TileRateLimitException.class)
+                .hasMessageContaining("budget");
+    }
+
+    @Test
+    void it_should_serve_interactive_requests_first() throws InterruptedException {
+        // Given a limiter allowing a request every 100 ms, whose burst is spent
+        TileRateLimiter limiter = new TileRateLimiter(10, 1);
+        limiter.acquire(TileRateLimiter.Priority.INTERACTIVE);
+        List<TileRateLimiter.Priority> served = new CopyOnWriteArrayList<>();
+
+        // When a background request is followed by an interactive one
+        Thread background = new Thread(() -> {
+            limiter.acquire(TileRateLimiter.Priority.BACKGROUND);
+            served.add(TileRateLimiter.Priority.BACKGROUND);
+        });
+        Thread interactive = new Thread(() -> {
+            limiter.acquire(TileRateLimiter.Priority.INTERACTIVE);
+            served.add(TileRateLimiter.Priority.INTERACTIVE);
+        });
+        background.start();
+        Thread.sleep(20);
+        interactive.start();
+        background.join();
+        interactive.join();
+
+        // Then the interactive request should be served first
+        assertThat(served).containsExactly(TileRateLimiter.Priority.INTERACTIVE, TileRateLimiter.Priority.BACKGROUND);
+    }
+
+    @Test
+    void it_should_share_limiters_by_provider() {
+        // Given a limiter registered for a provider
+        TileRateLimiter limiter = TileRateLimiter.forProvider("tile.example.org", 2, 4);
+
+        // When it is looked up again
+        // Then the same limiter should be returned
+        assertThat(TileRateLimiter.forProvider("tile.example.org", 50, 100)).isSameAs(limiter);
+        assertThat(TileRateLimiter.forProvider("tile.example.org")).isSameAs(limiter);
+        assertThat(TileRateLimiter.forProvider("other.example.org")).isNull();
+    }
+
+}